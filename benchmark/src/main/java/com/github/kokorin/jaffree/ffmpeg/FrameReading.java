@@ -0,0 +1,125 @@
+package com.github.kokorin.jaffree.ffmpeg;
+
+import com.github.kokorin.jaffree.nut.BufferPool;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Reads in-memory NUT stream of raw 1080p video with and without buffer pool.
+ * <p>
+ * Run with "-prof gc" to compare allocation rate: with pool only images are allocated, not their data,
+ * with recycled images neither is allocated. Images are recycled per consumer, so the first
+ * frame of every invocation is still allocated.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1000, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+@Fork(1)
+public class FrameReading {
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int FRAME_COUNT = 10;
+
+    private byte[] nut;
+    private BufferPool bufferPool;
+
+    @Setup
+    public void setUp() {
+        nut = writeNut();
+        bufferPool = new BufferPool();
+    }
+
+    @Benchmark
+    public void allocating(Blackhole blackhole) throws IOException {
+        new NutFrameConsumer(new BlackholeConsumer(blackhole), true)
+                .read(new ByteArrayInputStream(nut));
+    }
+
+    @Benchmark
+    public void pooled(Blackhole blackhole) throws IOException {
+        new NutFrameConsumer(new BlackholeConsumer(blackhole), true, bufferPool)
+                .read(new ByteArrayInputStream(nut));
+    }
+
+    @Benchmark
+    public void recycledImages(Blackhole blackhole) throws IOException {
+        new NutFrameConsumer(new BlackholeConsumer(blackhole), true, null, true)
+                .read(new ByteArrayInputStream(nut));
+    }
+
+    private static byte[] writeNut() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new NutFrameSupplier(new FrameProducer() {
+            private int frameNo = 0;
+
+            @Override
+            public List<Stream> produceStreams() {
+                return Collections.singletonList(new Stream()
+                        .setId(0)
+                        .setType(Stream.Type.VIDEO)
+                        .setTimebase(30L)
+                        .setWidth(WIDTH)
+                        .setHeight(HEIGHT));
+            }
+
+            @Override
+            public Frame produce() {
+                if (frameNo >= FRAME_COUNT) {
+                    return null;
+                }
+
+                BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_4BYTE_ABGR);
+                byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = (byte) (i + frameNo);
+                }
+
+                return new Frame(0, frameNo++, image);
+            }
+        }, true).supplyAndClose(output);
+
+        return output.toByteArray();
+    }
+
+    private static class BlackholeConsumer implements FrameConsumer {
+        private final Blackhole blackhole;
+
+        BlackholeConsumer(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void consumeStreams(List<Stream> streams) {
+            blackhole.consume(streams);
+        }
+
+        @Override
+        public void consume(Frame frame) {
+            blackhole.consume(frame);
+            if (frame != null) {
+                frame.release();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Main.main(new String[]{FrameReading.class.getSimpleName(), "-prof", "gc"});
+    }
+}
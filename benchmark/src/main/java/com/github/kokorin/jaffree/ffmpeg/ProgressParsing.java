@@ -0,0 +1,77 @@
+package com.github.kokorin.jaffree.ffmpeg;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Compares regex-based and single-pass parsing of recorded ffmpeg stderr.
+ * <p>
+ * Every line is parsed the way FFmpegResultReader does it: first as progress, then as result.
+ * Run with "-prof gc" to compare allocation rate.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 500, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = MILLISECONDS)
+@Fork(1)
+public class ProgressParsing {
+    static final String[] LINES = readLines("/ffmpeg_stderr.txt");
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        for (String line : LINES) {
+            FFmpegProgress progress = LegacyFFmpegOutputParser.parseProgress(line);
+            if (progress != null) {
+                blackhole.consume(progress);
+                continue;
+            }
+            blackhole.consume(LegacyFFmpegOutputParser.parseResult(line));
+        }
+    }
+
+    @Benchmark
+    public void singlePass(Blackhole blackhole) {
+        for (String line : LINES) {
+            FFmpegProgress progress = FFmpegOutputParser.parseProgress(line);
+            if (progress != null) {
+                blackhole.consume(progress);
+                continue;
+            }
+            blackhole.consume(FFmpegOutputParser.parseResult(line));
+        }
+    }
+
+    static String[] readLines(String resource) {
+        List<String> result = new ArrayList<>();
+        try (InputStream input = ProgressParsing.class.getResourceAsStream(resource);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.add(line);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read " + resource, e);
+        }
+
+        return result.toArray(new String[0]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Main.main(args);
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Compares nibble-table CRC32 with slicing-by-8 one, and NutReader throughput with and without
+ * checksum verification.
+ * <p>
+ * "reading" benchmark reads in-memory NUT stream of small frames, so frame and syncpoint headers
+ * (which are covered by checksums) make up noticeable part of it.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1000, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+@Fork(1)
+public class ChecksumCalculation {
+    private static final int DATA_SIZE = 1024 * 1024;
+    private static final int FRAME_COUNT = 10_000;
+
+    private byte[] data;
+
+    @Setup
+    public void setUp() {
+        data = new byte[DATA_SIZE];
+        new Random(42).nextBytes(data);
+    }
+
+    @Benchmark
+    public long nibbleTable() {
+        LegacyCRC32 crc32 = new LegacyCRC32();
+        crc32.update(data);
+        return crc32.getValue();
+    }
+
+    @Benchmark
+    public long sliceByEight() {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        return crc32.getValue();
+    }
+
+    @Benchmark
+    public int reading(NutState state) throws IOException {
+        NutReader reader = new NutReader(new NutInputStream(new ByteArrayInputStream(state.nut)));
+        reader.setVerifyChecksums(state.verify);
+
+        int count = 0;
+        while (reader.readFrame() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    @State(Scope.Benchmark)
+    public static class NutState {
+        @Param({"false", "true"})
+        public boolean verify;
+
+        private byte[] nut;
+
+        @Setup
+        public void setUp() throws Exception {
+            nut = writeNut();
+        }
+    }
+
+    private static byte[] writeNut() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NutWriter writer = new NutWriter(new NutOutputStream(output));
+
+        FrameCode[] frameCodes = new FrameCode[256];
+        frameCodes[0] = FrameCode.INVALID;
+        frameCodes[1] = new FrameCode(EnumSet.of(FrameCode.Flag.CODED_FLAGS), 0, 1, 0, 0, 0, 0, 0);
+        for (int i = 2; i < frameCodes.length; i++) {
+            frameCodes[i] = FrameCode.INVALID;
+        }
+
+        Rational[] timebases = {new Rational(1, 48000)};
+        writer.setMainHeader(1, Short.MAX_VALUE, timebases, frameCodes);
+        writer.setStreamHeaders(new StreamHeader[]{
+                new StreamHeader(0, StreamHeader.Type.USER_DATA, new byte[]{'T', 'E', 'S', 'T'}, 0, 0,
+                        60_000, 0, EnumSet.noneOf(StreamHeader.Flag.class), new byte[0], null, null)
+        });
+        writer.setInfos(new Info[0]);
+
+        byte[] frameData = new byte[256];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            writer.writeFrame(new NutFrame(0, i * 1024L, frameData, null, null, true, false));
+        }
+        writer.writeFooter();
+
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.EnumSet;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Scans NUT file with raw 1080p video from disk (page cache, in fact): with stream and pooled arrays,
+ * memory-mapped with frame data slices, and memory-mapped with partitions read in parallel.
+ * <p>
+ * Every page of frame data is touched, so all variants actually read the data.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1000, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+@Fork(1)
+public class FileReading {
+    private static final int FRAME_SIZE = 1920 * 1080 * 4;
+    private static final int FRAME_COUNT = 30;
+    private static final int PAGE_SIZE = 4096;
+
+    private File file;
+    private BufferPool bufferPool;
+
+    @Setup
+    public void setUp() throws Exception {
+        file = File.createTempFile("jaffree", ".nut");
+        bufferPool = new BufferPool();
+
+        try (NutOutputStream output = new NutOutputStream(new FileOutputStream(file))) {
+            NutWriter writer = new NutWriter(output);
+
+            FrameCode[] frameCodes = new FrameCode[256];
+            frameCodes[0] = FrameCode.INVALID;
+            frameCodes[1] = new FrameCode(EnumSet.of(FrameCode.Flag.CODED_FLAGS), 0, 1, 0, 0, 0, 0, 0);
+            for (int i = 2; i < frameCodes.length; i++) {
+                frameCodes[i] = FrameCode.INVALID;
+            }
+
+            writer.setMainHeader(1, Short.MAX_VALUE, new Rational[]{new Rational(1, 30)}, frameCodes);
+            writer.setStreamHeaders(new StreamHeader[]{
+                    new StreamHeader(0, StreamHeader.Type.USER_DATA, new byte[]{'T', 'E', 'S', 'T'}, 0, 0,
+                            60_000, 0, EnumSet.noneOf(StreamHeader.Flag.class), new byte[0], null, null)
+            });
+            writer.setInfos(new Info[0]);
+
+            byte[] data = new byte[FRAME_SIZE];
+            for (int i = 0; i < FRAME_COUNT; i++) {
+                data[0] = (byte) i;
+                writer.writeFrame(new NutFrame(0, i, data, null, null, true, false));
+            }
+            writer.writeFooter();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public long stream() throws IOException {
+        long result = 0;
+        try (NutInputStream input = new NutInputStream(new FileInputStream(file))) {
+            NutReader reader = new NutReader(input, bufferPool);
+            NutFrame frame;
+            while ((frame = reader.readFrame()) != null) {
+                for (int i = 0; i < frame.data.length; i += PAGE_SIZE) {
+                    result += frame.data[i];
+                }
+                bufferPool.release(frame.data);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long mapped() throws IOException {
+        long result = 0;
+        try (NutInputStream input = NutInputStream.map(FileChannel.open(file.toPath()))) {
+            NutReader reader = new NutReader(input);
+            reader.setSliceFrameData(true);
+            NutFrame frame;
+            while ((frame = reader.readFrame()) != null) {
+                ByteBuffer buffer = frame.buffer;
+                for (int i = buffer.position(); i < buffer.limit(); i += PAGE_SIZE) {
+                    result += buffer.get(i);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long mappedParallel() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            ParallelNutReader reader = new ParallelNutReader(channel);
+            return reader.read(Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool(),
+                    new ParallelNutReader.PartitionReader<Long>() {
+                        @Override
+                        public Long read(NutReader reader) throws IOException {
+                            reader.setSliceFrameData(true);
+                            long result = 0;
+                            NutFrame frame;
+                            while ((frame = reader.readFrame()) != null) {
+                                ByteBuffer buffer = frame.buffer;
+                                for (int i = buffer.position(); i < buffer.limit(); i += PAGE_SIZE) {
+                                    result += buffer.get(i);
+                                }
+                            }
+                            return result;
+                        }
+                    },
+                    new ParallelNutReader.Merger<Long>() {
+                        @Override
+                        public Long merge(Long first, Long second) {
+                            return first + second;
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Compares sorted list and heap frame ordering buffers on interleaved audio and video frames.
+ * <p>
+ * Video (30 fps) is produced ahead of audio (44100 Hz, 1024 samples per frame) by 100 millis,
+ * as it happens when video frames are rendered faster than audio. Run with "-prof gc" to compare allocation rate.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1000, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+@Fork(1)
+public class FrameOrdering {
+    private static final int SECONDS = 60;
+    private static final Rational[] TIMEBASES = {new Rational(1, 30), new Rational(1, 44100)};
+
+    @Param({"200", "2000"})
+    public long bufferMillis;
+
+    private NutFrame[] frames;
+    private long[] ticks;
+    private long windowTicks;
+
+    @Setup
+    public void setUp() {
+        List<NutFrame> result = new ArrayList<>();
+        int audioFrame = 0;
+        for (int videoFrame = 0; videoFrame < SECONDS * 30; videoFrame++) {
+            result.add(new NutFrame(0, videoFrame, new byte[1], null, null, true, false));
+            // audio lags behind video by 100 millis
+            while ((audioFrame * 1024L + 4410) * 30 < videoFrame * 44100L) {
+                result.add(new NutFrame(1, audioFrame * 1024L, new byte[1], null, null, true, false));
+                audioFrame++;
+            }
+        }
+        frames = result.toArray(new NutFrame[0]);
+
+        // common timebase 1/44100
+        ticks = new long[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            ticks[i] = frames[i].streamId == 0 ? frames[i].pts * 1470 : frames[i].pts;
+        }
+        windowTicks = bufferMillis * 44100 / 1000;
+    }
+
+    @Benchmark
+    public void sortedList(Blackhole blackhole) {
+        List<TsFrame> buffer = new ArrayList<>();
+        for (NutFrame frame : frames) {
+            Rational timestamp = TIMEBASES[frame.streamId].multiply(frame.pts);
+            buffer.add(new TsFrame(timestamp, frame));
+            Collections.sort(buffer, TsFrame.COMPARATOR);
+
+            Rational lastFrameTimestamp = buffer.get(buffer.size() - 1).timestamp;
+            Iterator<TsFrame> frameIterator = buffer.iterator();
+            while (frameIterator.hasNext()) {
+                TsFrame tsFrame = frameIterator.next();
+                if (lastFrameTimestamp.subtract(tsFrame.timestamp).lessThanOrEqual(new Rational(bufferMillis, 1000))) {
+                    break;
+                }
+
+                blackhole.consume(tsFrame.frame);
+                frameIterator.remove();
+            }
+        }
+        for (TsFrame tsFrame : buffer) {
+            blackhole.consume(tsFrame.frame);
+        }
+    }
+
+    @Benchmark
+    public void heap(Blackhole blackhole) {
+        FrameOrderingQueue buffer = new FrameOrderingQueue();
+        long maxTicks = Long.MIN_VALUE;
+        for (int i = 0; i < frames.length; i++) {
+            buffer.add(ticks[i], frames[i]);
+            maxTicks = Math.max(maxTicks, ticks[i]);
+
+            while (maxTicks - buffer.peekTimestamp() > windowTicks) {
+                blackhole.consume(buffer.poll());
+            }
+        }
+        NutFrame frame;
+        while ((frame = buffer.poll()) != null) {
+            blackhole.consume(frame);
+        }
+    }
+
+    /**
+     * Whole NutWriter, frames are written to nowhere.
+     */
+    @Benchmark
+    public void writer() throws Exception {
+        NutWriter writer = new NutWriter(new NutOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+
+        FrameCode[] frameCodes = new FrameCode[256];
+        frameCodes[0] = FrameCode.INVALID;
+        frameCodes[1] = new FrameCode(EnumSet.of(FrameCode.Flag.CODED_FLAGS), 0, 1, 0, 0, 0, 0, 0);
+        for (int i = 2; i < frameCodes.length; i++) {
+            frameCodes[i] = FrameCode.INVALID;
+        }
+        StreamHeader[] streamHeaders = new StreamHeader[TIMEBASES.length];
+        for (int i = 0; i < TIMEBASES.length; i++) {
+            streamHeaders[i] = new StreamHeader(i, StreamHeader.Type.USER_DATA, new byte[]{'T', 'E', 'S', 'T'}, i, 0,
+                    60_000, 0, EnumSet.noneOf(StreamHeader.Flag.class), new byte[0], null, null);
+        }
+
+        writer.setMainHeader(TIMEBASES.length, Short.MAX_VALUE, TIMEBASES, frameCodes);
+        writer.setStreamHeaders(streamHeaders);
+        writer.setInfos(new Info[0]);
+        writer.setFrameOrderingBufferMillis(bufferMillis);
+        for (NutFrame frame : frames) {
+            writer.writeFrame(frame);
+        }
+        writer.writeFooter();
+    }
+
+    /**
+     * Frame ordering buffer entry as it was used by NutWriter before the heap.
+     */
+    private static class TsFrame {
+        final Rational timestamp;
+        final NutFrame frame;
+
+        static final Comparator<TsFrame> COMPARATOR = new Comparator<TsFrame>() {
+            @Override
+            public int compare(TsFrame o1, TsFrame o2) {
+                return o1.timestamp.compareTo(o2.timestamp);
+            }
+        };
+
+        TsFrame(Rational timestamp, NutFrame frame) {
+            this.timestamp = timestamp;
+            this.frame = frame;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.EnumSet;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Measures frames per second written by NutWriter with tiny frames, so frame header emission dominates.
+ * <p>
+ * "single" frame code table contains one CODED_FLAGS frame code, as Jaffree uses for ffmpeg input,
+ * "full" table has 254 valid frame codes for fixed stream ids, pts deltas and sizes, like ffmpeg's default one.
+ * Run with "-prof gc" to compare allocation rate.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1000, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+@Fork(1)
+public class FrameWriting {
+    private static final int FRAME_COUNT = 10_000;
+    private static final Rational[] TIMEBASES = {new Rational(1, 30), new Rational(1, 44100)};
+
+    @Param({"single", "full"})
+    public String frameCodeTable;
+
+    private FrameCode[] frameCodes;
+    private NutFrame[] frames;
+
+    @Setup
+    public void setUp() {
+        frameCodes = new FrameCode[256];
+        frameCodes[0] = FrameCode.INVALID;
+        frameCodes[1] = new FrameCode(EnumSet.of(FrameCode.Flag.CODED_FLAGS), 0, 1, 0, 0, 0, 0, 0);
+        for (int i = 2; i < frameCodes.length; i++) {
+            if (frameCodeTable.equals("full") && i < 255) {
+                int streamId = i % 2;
+                frameCodes[i] = new FrameCode(EnumSet.of(FrameCode.Flag.KEYFRAME), streamId, 1, i / 2,
+                        streamId == 0 ? 1 : 1024, 0, 0, 0);
+            } else {
+                frameCodes[i] = FrameCode.INVALID;
+            }
+        }
+
+        frames = new NutFrame[FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            int streamId = i % 2;
+            long pts = streamId == 0 ? i / 2 : (i / 2) * 1470L;
+            frames[i] = new NutFrame(streamId, pts, new byte[(i % 200) + 1], null, null, true, false);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAME_COUNT)
+    public void writer() throws Exception {
+        NutWriter writer = new NutWriter(new NutOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+
+        StreamHeader[] streamHeaders = new StreamHeader[TIMEBASES.length];
+        for (int i = 0; i < TIMEBASES.length; i++) {
+            streamHeaders[i] = new StreamHeader(i, StreamHeader.Type.USER_DATA, new byte[]{'T', 'E', 'S', 'T'}, i, 0,
+                    60_000, 0, EnumSet.noneOf(StreamHeader.Flag.class), new byte[0], null, null);
+        }
+
+        writer.setMainHeader(TIMEBASES.length, Short.MAX_VALUE, TIMEBASES, frameCodes);
+        writer.setStreamHeaders(streamHeaders);
+        writer.setInfos(new Info[0]);
+        writer.setFrameOrderingBufferMillis(0);
+        for (NutFrame frame : frames) {
+            writer.writeFrame(frame);
+        }
+        writer.writeFooter();
+    }
+}
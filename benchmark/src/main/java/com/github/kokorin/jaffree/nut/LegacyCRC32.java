@@ -0,0 +1,35 @@
+package com.github.kokorin.jaffree.nut;
+
+/**
+ * Nibble-table CRC32 which was used in NUT before byte-wise and slicing-by-8 tables, kept for comparison.
+ */
+class LegacyCRC32 {
+    private int crc = 0;
+
+    private static int[] table = {
+            0x00000000, 0x04C11DB7, 0x09823B6E, 0x0D4326D9,
+            0x130476DC, 0x17C56B6B, 0x1A864DB2, 0x1E475005,
+            0x2608EDB8, 0x22C9F00F, 0x2F8AD6D6, 0x2B4BCB61,
+            0x350C9B64, 0x31CD86D3, 0x3C8EA00A, 0x384FBDBD,
+    };
+
+    public void reset() {
+        crc = 0;
+    }
+
+    public void update(int value) {
+        crc ^= value << 24;
+        crc = (crc << 4) ^ table[crc >>> 28];
+        crc = (crc << 4) ^ table[crc >>> 28];
+    }
+
+    public void update(byte[] data) {
+        for (int value : data) {
+            update(value);
+        }
+    }
+
+    public long getValue() {
+        return (long) crc & 0xffffffffL;
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Compares Rational-based timestamp arithmetic with primitive {@link Rescale}.
+ * <p>
+ * "maxTimestamp" benchmarks find the latest of per-stream timestamps, as NutWriter does for every frame
+ * and syncpoint, "convert" benchmarks convert timestamps between timebases as NutReader does at syncpoints.
+ * Run with "-prof gc" to compare allocation rate.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1000, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+@Fork(1)
+public class TimestampRescaling {
+    private static final int COUNT = 1024;
+    private static final Rational[] TIMEBASES = {
+            new Rational(1001, 30000), new Rational(1, 48000), new Rational(1, 90000), new Rational(1, 1000)
+    };
+
+    private long[] pts;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        pts = new long[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            // up to 24 hours in 1/90000 timebase
+            pts[i] = random.nextInt(90_000 * 3600) * 24L;
+        }
+    }
+
+    @Benchmark
+    public void maxTimestampRational(Blackhole blackhole) {
+        for (int i = 0; i + TIMEBASES.length <= COUNT; i += TIMEBASES.length) {
+            Rational maxTs = Rational.ZERO;
+            for (int j = 0; j < TIMEBASES.length; j++) {
+                Rational ts = TIMEBASES[j].multiply(pts[i + j]);
+                if (ts.greaterThan(maxTs)) {
+                    maxTs = ts;
+                }
+            }
+            blackhole.consume(maxTs);
+        }
+    }
+
+    @Benchmark
+    public void maxTimestampRescale(Blackhole blackhole) {
+        for (int i = 0; i + TIMEBASES.length <= COUNT; i += TIMEBASES.length) {
+            int maxJ = 0;
+            for (int j = 1; j < TIMEBASES.length; j++) {
+                if (Rescale.compare(pts[i + j], TIMEBASES[j], pts[i + maxJ], TIMEBASES[maxJ]) > 0) {
+                    maxJ = j;
+                }
+            }
+            blackhole.consume(maxJ);
+        }
+    }
+
+    @Benchmark
+    public void convertSpecFormula(Blackhole blackhole) {
+        for (int i = 0; i < COUNT; i++) {
+            Rational from = TIMEBASES[i % TIMEBASES.length];
+            Rational to = TIMEBASES[(i + 1) % TIMEBASES.length];
+            // convert_ts formula from NUT specification, as Util.convertTimestamp computed it before
+            long ln = from.numerator * pts[i];
+            long sn = to.denominator;
+            long d1 = from.denominator;
+            long d2 = to.numerator;
+            blackhole.consume((ln / d1 * sn + ln % d1 * sn / d1) / d2);
+        }
+    }
+
+    @Benchmark
+    public void convertRescale(Blackhole blackhole) {
+        for (int i = 0; i < COUNT; i++) {
+            Rational from = TIMEBASES[i % TIMEBASES.length];
+            Rational to = TIMEBASES[(i + 1) % TIMEBASES.length];
+            blackhole.consume(Rescale.rescale(pts[i], from, to, Rescale.Rounding.ZERO));
+        }
+    }
+}
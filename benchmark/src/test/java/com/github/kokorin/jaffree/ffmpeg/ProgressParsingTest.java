@@ -0,0 +1,66 @@
+package com.github.kokorin.jaffree.ffmpeg;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProgressParsingTest {
+
+    @Test
+    public void singlePassParserMatchesLegacy() {
+        int progressCount = 0;
+        int resultCount = 0;
+
+        for (String line : ProgressParsing.LINES) {
+            FFmpegProgress expectedProgress = LegacyFFmpegOutputParser.parseProgress(line);
+            FFmpegProgress actualProgress = FFmpegOutputParser.parseProgress(line);
+            assertProgressEquals(line, expectedProgress, actualProgress);
+            if (expectedProgress != null) {
+                progressCount++;
+                continue;
+            }
+
+            FFmpegResult expectedResult = LegacyFFmpegOutputParser.parseResult(line);
+            FFmpegResult actualResult = FFmpegOutputParser.parseResult(line);
+            assertResultEquals(line, expectedResult, actualResult);
+            if (expectedResult != null) {
+                resultCount++;
+            }
+        }
+
+        Assert.assertTrue(progressCount > 10);
+        Assert.assertEquals(1, resultCount);
+    }
+
+    private static void assertProgressEquals(String line, FFmpegProgress expected, FFmpegProgress actual) {
+        if (expected == null) {
+            Assert.assertNull(line, actual);
+            return;
+        }
+
+        Assert.assertNotNull(line, actual);
+        Assert.assertEquals(line, expected.getFrame(), actual.getFrame());
+        Assert.assertEquals(line, expected.getFps(), actual.getFps());
+        Assert.assertEquals(line, expected.getQ(), actual.getQ());
+        Assert.assertEquals(line, expected.getSize(), actual.getSize());
+        Assert.assertEquals(line, expected.getTimeMillis(), actual.getTimeMillis());
+        Assert.assertEquals(line, expected.getDup(), actual.getDup());
+        Assert.assertEquals(line, expected.getDrop(), actual.getDrop());
+        Assert.assertEquals(line, expected.getBitrate(), actual.getBitrate());
+        Assert.assertEquals(line, expected.getSpeed(), actual.getSpeed());
+    }
+
+    private static void assertResultEquals(String line, FFmpegResult expected, FFmpegResult actual) {
+        if (expected == null) {
+            Assert.assertNull(line, actual);
+            return;
+        }
+
+        Assert.assertNotNull(line, actual);
+        Assert.assertEquals(line, expected.getVideoSize(), actual.getVideoSize());
+        Assert.assertEquals(line, expected.getAudioSize(), actual.getAudioSize());
+        Assert.assertEquals(line, expected.getSubtitleSize(), actual.getSubtitleSize());
+        Assert.assertEquals(line, expected.getOtherStreamsSize(), actual.getOtherStreamsSize());
+        Assert.assertEquals(line, expected.getGlobalHeadersSize(), actual.getGlobalHeadersSize());
+        Assert.assertEquals(line, expected.getMuxingOverheadRatio(), actual.getMuxingOverheadRatio());
+    }
+}
@@ -109,8 +109,9 @@ public abstract class CaptureInput<T extends CaptureInput<T>> extends BaseInput<
     public abstract CaptureInput<T> setCaptureCursor(boolean captureCursor);
 
     // TODO check static method references
+    @SuppressWarnings("unchecked")
     public static <T extends CaptureInput<T>> CaptureInput<T> fromDesktop1() {
-        CaptureInput<T> result = null;
+        CaptureInput<?> result = null;
         if (OS.IS_LINUX) {
             result = LinuxX11Grab.fromDesktop();
         } else if (OS.IS_MAC) {
@@ -123,7 +124,7 @@ public abstract class CaptureInput<T extends CaptureInput<T>> extends BaseInput<
             throw new RuntimeException("Could not detect OS");
         }
 
-        return result;
+        return (CaptureInput<T>) result;
     }
 
     /**
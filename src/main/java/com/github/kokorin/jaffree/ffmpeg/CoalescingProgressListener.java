@@ -0,0 +1,160 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * {@link ProgressListener} which passes progress to delegate listener in another executor.
+ * <p>
+ * ffmpeg output is read in the same thread which invokes ProgressListener. Slow listener (e.g. one
+ * which updates DB) makes ffmpeg block on writing to stderr. This listener returns immediately and
+ * keeps only the latest progress if delegate falls behind, so delegate always sees the most recent state.
+ * <p>
+ * Delegate is never invoked concurrently. With non-zero minimum interval dispatching task waits
+ * in executor thread until the interval has elapsed since previous invocation, so the last progress
+ * is always delivered.
+ */
+public class CoalescingProgressListener implements ProgressListener {
+    private final ProgressListener delegate;
+    private final Executor executor;
+    private final long minIntervalNanos;
+
+    private final AtomicReference<FFmpegProgress> pending = new AtomicReference<>();
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile long lastDeliveryNanos;
+
+    private final Runnable dispatch = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingProgressListener.class);
+
+    /**
+     * Creates listener without minimum interval: delegate is invoked as soon as possible.
+     *
+     * @param delegate listener to pass progress to
+     * @param executor executor to invoke delegate in
+     */
+    public CoalescingProgressListener(ProgressListener delegate, Executor executor) {
+        this(delegate, executor, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param delegate    listener to pass progress to
+     * @param executor    executor to invoke delegate in
+     * @param minInterval minimum interval between delegate invocations
+     * @param unit        interval unit
+     */
+    public CoalescingProgressListener(ProgressListener delegate, Executor executor, long minInterval, TimeUnit unit) {
+        if (delegate == null || executor == null) {
+            throw new IllegalArgumentException("Delegate and executor must be specified");
+        }
+        if (minInterval < 0) {
+            throw new IllegalArgumentException("Minimum interval must not be negative: " + minInterval);
+        }
+
+        this.delegate = delegate;
+        this.executor = executor;
+        this.minIntervalNanos = unit.toNanos(minInterval);
+        this.lastDeliveryNanos = System.nanoTime() - minIntervalNanos;
+    }
+
+    @Override
+    public void onProgress(FFmpegProgress progress) {
+        FFmpegProgress replaced = pending.getAndSet(progress);
+        if (replaced != null) {
+            droppedCount.incrementAndGet();
+        }
+
+        scheduleDispatch();
+    }
+
+    /**
+     * @return number of progress events which were replaced by newer ones or rejected by executor
+     * and never reached delegate
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void scheduleDispatch() {
+        if (!dispatching.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(dispatch);
+        } catch (RejectedExecutionException e) {
+            dispatching.set(false);
+            if (pending.getAndSet(null) != null) {
+                droppedCount.incrementAndGet();
+            }
+            LOGGER.warn("Executor rejected progress dispatching, progress is dropped");
+        }
+    }
+
+    private void dispatch() {
+        do {
+            try {
+                waitForInterval();
+            } catch (InterruptedException e) {
+                LOGGER.warn("Interrupted while waiting to dispatch progress");
+                Thread.currentThread().interrupt();
+            }
+
+            FFmpegProgress progress = pending.getAndSet(null);
+            if (progress != null) {
+                deliver(progress);
+            }
+
+            dispatching.set(false);
+            // Progress may have been set after getAndSet(null) but before dispatching flag was reset:
+            // its onProgress() hasn't scheduled dispatch, so it must be delivered by this task
+        } while (pending.get() != null && dispatching.compareAndSet(false, true));
+    }
+
+    private void waitForInterval() throws InterruptedException {
+        long waitNanos = lastDeliveryNanos + minIntervalNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void deliver(FFmpegProgress progress) {
+        try {
+            delegate.onProgress(progress);
+        } catch (Exception e) {
+            LOGGER.warn("Ignoring exception thrown by progress listener", e);
+        } finally {
+            lastDeliveryNanos = System.nanoTime();
+        }
+    }
+}
@@ -19,13 +19,16 @@ package com.github.kokorin.jaffree.ffmpeg;
 
 import com.github.kokorin.jaffree.LogLevel;
 import com.github.kokorin.jaffree.StreamType;
+import com.github.kokorin.jaffree.process.HelperExecutors;
 import com.github.kokorin.jaffree.process.LoggingStdReader;
 import com.github.kokorin.jaffree.process.ProcessHandler;
+import com.github.kokorin.jaffree.process.ProcessTimingsListener;
 import com.github.kokorin.jaffree.process.StdReader;
 import com.github.kokorin.jaffree.process.Stopper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -33,8 +36,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.FutureTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public class FFmpeg {
     private final List<Input> inputs = new ArrayList<>();
@@ -43,7 +46,10 @@ public class FFmpeg {
     private boolean overwriteOutput;
     private ProgressListener progressListener;
     private OutputListener outputListener;
-    //-progress url (global)
+    private boolean machineReadableProgress = false;
+    private boolean hideBannerAndStats = false;
+    private int outputTailLines = FFmpegResultReader.DEFAULT_TAIL_LINES;
+    private int outputTailChars = FFmpegResultReader.DEFAULT_TAIL_CHARS;
     //-filter_threads nb_threads (global)
     //-debug_ts (global)
     private FilterGraph complexFilter;
@@ -55,6 +61,8 @@ public class FFmpeg {
 
     private LogLevel logLevel = null;
     private String contextName = null;
+    private Executor helperExecutor = null;
+    private ProcessTimingsListener timingsListener = null;
 
     private final Path executable;
 
@@ -187,6 +195,35 @@ public class FFmpeg {
         return this;
     }
 
+    /**
+     * Whether to receive progress via ffmpeg {@code -progress} option instead of parsing stderr. False by default.
+     * <p>
+     * Jaffree opens loopback TCP endpoint which ffmpeg writes key=value progress blocks to.
+     * Unlike stderr progress, it doesn't depend on log level and ffmpeg output format.
+     *
+     * @param machineReadableProgress true to receive progress via loopback TCP endpoint
+     * @return this
+     * @see #setProgressListener(ProgressListener)
+     */
+    public FFmpeg setMachineReadableProgress(boolean machineReadableProgress) {
+        this.machineReadableProgress = machineReadableProgress;
+        return this;
+    }
+
+    /**
+     * Whether to pass {@code -nostats -hide_banner} to ffmpeg. False by default.
+     * <p>
+     * With this option stderr carries mostly warnings and errors, which reduces log volume and
+     * parsing work. Progress can be received only with {@link #setMachineReadableProgress(boolean)}.
+     *
+     * @param hideBannerAndStats true to hide banner and periodic statistics
+     * @return this
+     */
+    public FFmpeg setHideBannerAndStats(boolean hideBannerAndStats) {
+        this.hideBannerAndStats = hideBannerAndStats;
+        return this;
+    }
+
     /**
      * Supply custom OutputListener to receive ffmpeg output.
      *
@@ -198,6 +235,22 @@ public class FFmpeg {
         return this;
     }
 
+    /**
+     * Set how much of the last ffmpeg output (excluding progress) to keep and to attach
+     * to {@link FFmpegException} if ffmpeg fails.
+     * <p>
+     * With output tail there is no need to log every ffmpeg output line to diagnose failures.
+     *
+     * @param maxLines max number of lines
+     * @param maxChars max total length of lines
+     * @return this
+     */
+    public FFmpeg setOutputTail(int maxLines, int maxChars) {
+        this.outputTailLines = maxLines;
+        this.outputTailChars = maxChars;
+        return this;
+    }
+
     public FFmpeg setLogLevel(LogLevel logLevel) {
         this.logLevel = logLevel;
         return this;
@@ -214,57 +267,151 @@ public class FFmpeg {
         return this;
     }
 
+    /**
+     * Set backend to run helper tasks (reading ffmpeg output, feeding inputs and consuming outputs).
+     * <p>
+     * JVM-wide default backend is used if not set.
+     *
+     * @param helperExecutor backend
+     * @return this
+     * @see HelperExecutors
+     */
+    public FFmpeg setHelperExecutor(Executor helperExecutor) {
+        this.helperExecutor = helperExecutor;
+        return this;
+    }
+
+    /**
+     * Supply listener to receive ffmpeg process latencies: spawn-to-exit and exit-to-return.
+     *
+     * @param timingsListener listener
+     * @return this
+     */
+    public FFmpeg setTimingsListener(ProcessTimingsListener timingsListener) {
+        this.timingsListener = timingsListener;
+        return this;
+    }
+
     public FFmpegResult execute() {
         ProcessHandler<FFmpegResult> processHandler = createProcessHandler();
         return processHandler.execute();
     }
 
     /**
-     * Runs ffmpeg in separate Thread.
+     * Starts ffmpeg and returns immediately.
      * <p>
+     * Result future is completed in the helper thread which finished last.
      *
      * @return ffmpeg result future
+     * @see #executeAsync(Executor)
      */
     public FFmpegResultFuture executeAsync() {
-        final ProcessHandler<FFmpegResult> processHandler = createProcessHandler();
+        return executeAsync(null);
+    }
+
+    /**
+     * Starts ffmpeg and returns immediately.
+     * <p>
+     * No thread is dedicated to wait for ffmpeg: result future is completed when ffmpeg has exited
+     * and all helper tasks have finished. Use {@link FFmpegResultFuture#toCompletableFuture()} to compose
+     * ffmpeg execution with other asynchronous tasks.
+     *
+     * @param executor executor to complete result future in (and to run dependent stages),
+     *                 if null future is completed in the helper thread which finished last
+     * @return ffmpeg result future
+     */
+    public FFmpegResultFuture executeAsync(Executor executor) {
+        ProcessHandler<FFmpegResult> processHandler = createProcessHandler();
         Stopper stopper = createStopper();
         processHandler.setStopper(stopper);
 
-        FutureTask<FFmpegResult> resultFuture = new FutureTask<>(new Callable<FFmpegResult>() {
-            @Override
-            public FFmpegResult call() throws Exception {
-                return processHandler.execute();
-            }
-        });
-
-        Thread runner = new Thread(resultFuture, "FFmpeg-async-runner");
-        runner.setDaemon(true);
-        runner.start();
+        CompletableFuture<FFmpegResult> resultFuture = processHandler.executeAsync(executor);
 
         return new FFmpegResultFuture(resultFuture, stopper);
     }
 
     protected ProcessHandler<FFmpegResult> createProcessHandler() {
         List<Runnable> helpers = new ArrayList<>();
+        List<String> arguments = buildArguments();
+        StdReader<FFmpegResult> stdErrReader = createStdErrReader();
+
+        ProgressChannel progressChannel = null;
+        if (machineReadableProgress && progressListener != null) {
+            progressChannel = new ProgressChannel(progressListener);
+            helpers.add(progressChannel);
+            stdErrReader = progressChannel.closeAfter(stdErrReader);
+            // -progress is a global option, so it's safe to pass it before any input
+            arguments.addAll(0, Arrays.asList("-progress", progressChannel.getUrl()));
+        }
 
-        for (Input input : inputs) {
-            Runnable helper = input.helperThread();
-            if (helper != null) {
-                helpers.add(helper);
+        // Progress socket is closed by its helper or stderr reader, which don't run if setup fails
+        try {
+            final List<FrameOrderingStats> frameOrderingStats = new ArrayList<>();
+            for (Input input : inputs) {
+                if (input instanceof FrameInput) {
+                    // Supplier is created by helperThread(), so executor must be passed before
+                    ((FrameInput) input).setHelperExecutor(helperExecutor);
+                }
+                Runnable helper = input.helperThread();
+                if (helper != null) {
+                    helpers.add(helper);
+                }
+                if (input instanceof FrameInput) {
+                    frameOrderingStats.add(((FrameInput) input).getFrameOrderingStats());
+                }
             }
-        }
-        for (Output output : outputs) {
-            Runnable helper = output.helperThread();
-            if (helper != null) {
-                helpers.add(helper);
+            if (!frameOrderingStats.isEmpty()) {
+                // Statistics are complete by the time result is returned: all helpers have finished
+                final StdReader<FFmpegResult> resultReader = stdErrReader;
+                stdErrReader = new StdReader<FFmpegResult>() {
+                    @Override
+                    public FFmpegResult read(InputStream stdErr) {
+                        FFmpegResult result = resultReader.read(stdErr);
+                        if (result == null) {
+                            return null;
+                        }
+                        return new FFmpegResult(result, frameOrderingStats);
+                    }
+                };
+            }
+            for (Output output : outputs) {
+                Runnable helper = output.helperThread();
+                if (helper != null) {
+                    helpers.add(helper);
+                }
+            }
+
+            return newProcessHandler(progressChannel)
+                    .setStdErrReader(stdErrReader)
+                    .setStdOutReader(createStdOutReader())
+                    .setRunnables(helpers)
+                    .setHelperExecutor(helperExecutor)
+                    .setTimingsListener(timingsListener)
+                    .setArguments(arguments);
+        } catch (RuntimeException e) {
+            if (progressChannel != null) {
+                progressChannel.close();
             }
+            throw e;
+        }
+    }
+
+    private ProcessHandler<FFmpegResult> newProcessHandler(final ProgressChannel progressChannel) {
+        if (progressChannel == null) {
+            return new ProcessHandler<>(executable, contextName);
         }
 
-        return new ProcessHandler<FFmpegResult>(executable, contextName)
-                .setStdErrReader(createStdErrReader())
-                .setStdOutReader(createStdOutReader())
-                .setRunnables(helpers)
-                .setArguments(buildArguments());
+        return new ProcessHandler<FFmpegResult>(executable, contextName) {
+            @Override
+            protected Process startProcess() {
+                try {
+                    return super.startProcess();
+                } catch (RuntimeException e) {
+                    progressChannel.close();
+                    throw e;
+                }
+            }
+        };
     }
 
     protected Stopper createStopper() {
@@ -272,7 +419,9 @@ public class FFmpeg {
     }
 
     protected StdReader<FFmpegResult> createStdErrReader() {
-        return new FFmpegResultReader(progressListener, outputListener);
+        // Progress is reported by ProgressChannel, stderr contains only final statistics
+        ProgressListener stdErrProgressListener = machineReadableProgress ? null : progressListener;
+        return new FFmpegResultReader(stdErrProgressListener, outputListener, outputTailLines, outputTailChars);
     }
 
     protected StdReader<FFmpegResult> createStdOutReader() {
@@ -281,14 +430,22 @@ public class FFmpeg {
 
     protected List<String> buildArguments() {
         List<String> result = new ArrayList<>();
+        boolean stdErrProgress = progressListener != null && !machineReadableProgress;
 
         if (logLevel != null) {
-            if (progressListener != null && logLevel.code() < LogLevel.INFO.code()) {
+            if (stdErrProgress && logLevel.code() < LogLevel.INFO.code()) {
                 throw new RuntimeException("Specified log level " + logLevel + " hides ffmpeg progress output");
             }
             result.addAll(Arrays.asList("-loglevel", Integer.toString(logLevel.code())));
         }
 
+        if (hideBannerAndStats) {
+            if (stdErrProgress) {
+                throw new RuntimeException("-nostats hides ffmpeg progress output, use machine-readable progress");
+            }
+            result.addAll(Arrays.asList("-nostats", "-hide_banner"));
+        }
+
         for (Input input : inputs) {
             result.addAll(input.buildArguments());
         }
@@ -0,0 +1,52 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import java.util.List;
+
+/**
+ * Thrown when ffmpeg reports an error. Contains the last lines of ffmpeg output, excluding progress.
+ */
+public class FFmpegException extends RuntimeException {
+    private final List<String> outputTail;
+
+    public FFmpegException(String message, List<String> outputTail) {
+        super(buildMessage(message, outputTail));
+        this.outputTail = outputTail;
+    }
+
+    /**
+     * @return the last lines of ffmpeg output (progress lines are not included)
+     */
+    public List<String> getOutputTail() {
+        return outputTail;
+    }
+
+    private static String buildMessage(String message, List<String> outputTail) {
+        if (outputTail.isEmpty()) {
+            return message;
+        }
+
+        StringBuilder result = new StringBuilder(message).append("\nLast ffmpeg output:");
+        for (String line : outputTail) {
+            result.append("\n").append(line);
+        }
+
+        return result.toString();
+    }
+}
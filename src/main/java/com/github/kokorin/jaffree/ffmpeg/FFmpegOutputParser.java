@@ -0,0 +1,491 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import com.github.kokorin.jaffree.SizeUnit;
+
+/**
+ * Single-pass parser of ffmpeg progress and result lines.
+ * <p>
+ * Parses values in place (by index) without regular expressions, substrings or intermediate maps.
+ * Numbers are parsed to exactly the same values as {@link Long#parseLong(String)} and
+ * {@link Double#parseDouble(String)} would produce.
+ */
+final class FFmpegOutputParser {
+    private static final SizeUnit[] SIZE_UNITS = SizeUnit.values();
+
+    private static final String OTHER_STREAMS = "other streams";
+    private static final String GLOBAL_HEADERS = "global headers";
+    private static final String MUXING_OVERHEAD = "muxing overhead";
+
+    // Powers of ten which are exactly representable as double
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // Integers up to 2^53 are exactly representable as double
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private FFmpegOutputParser() {
+    }
+
+    /**
+     * Parses line like:
+     * <pre>
+     * frame=  495 fps= 89 q=28.0 Lsize=     124kB time=00:00:20.15 bitrate=  50.3kbits/s dup=1 drop=0 speed=3.63x
+     * </pre>
+     *
+     * @param line ffmpeg output line
+     * @return progress or null if line doesn't contain progress
+     */
+    static FFmpegProgress parseProgress(String line) {
+        if (line == null) {
+            return null;
+        }
+
+        Long frame = null;
+        Double fps = null;
+        Double q = null;
+        Long size = null;
+        Long timeMillis = null;
+        Long dup = null;
+        Long drop = null;
+        Double bitrate = null;
+        Double speed = null;
+
+        final int length = line.length();
+        int pos = 0;
+        while (pos < length) {
+            pos = skipWhitespace(line, pos, length);
+            if (pos == length) {
+                break;
+            }
+
+            int keyStart = pos;
+            while (pos < length && line.charAt(pos) != '=' && !isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+            if (pos == length || line.charAt(pos) != '=') {
+                // Token without value
+                continue;
+            }
+            int keyEnd = pos;
+
+            // ffmpeg pads values with spaces: "frame=  495"
+            pos++;
+            while (pos < length && line.charAt(pos) == ' ') {
+                pos++;
+            }
+
+            int valueStart = pos;
+            boolean hasSeparator = false;
+            while (pos < length && !isWhitespace(line.charAt(pos))) {
+                hasSeparator |= line.charAt(pos) == '=';
+                pos++;
+            }
+            int valueEnd = pos;
+
+            if (valueStart == valueEnd || hasSeparator) {
+                continue;
+            }
+
+            if (keyEquals(line, keyStart, keyEnd, "frame")) {
+                frame = parseLong(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, "fps")) {
+                fps = parseDouble(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, "q")) {
+                q = parseDouble(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, "Lsize")) {
+                size = parseSizeInBytes(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, "time")) {
+                timeMillis = parseTimeInMillis(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, "dup")) {
+                dup = parseLong(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, "drop")) {
+                drop = parseLong(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, "bitrate")) {
+                bitrate = parseDouble(line, valueStart, stripSuffix(line, valueStart, valueEnd, "kbits/s"));
+            } else if (keyEquals(line, keyStart, keyEnd, "speed")) {
+                speed = parseDouble(line, valueStart, stripSuffix(line, valueStart, valueEnd, "x"));
+            }
+        }
+
+        if (frame == null && fps == null && q == null && size == null && timeMillis == null
+                && dup == null && drop == null && bitrate == null && speed == null) {
+            return null;
+        }
+
+        return new FFmpegProgress(frame, fps, q, size, timeMillis, dup, drop, bitrate, speed);
+    }
+
+    /**
+     * Parses line like:
+     * <pre>
+     * video:1417kB audio:113kB subtitle:0kB other streams:0kB global headers:0kB muxing overhead: unknown
+     * </pre>
+     *
+     * @param line ffmpeg output line
+     * @return result or null if line doesn't contain result
+     */
+    static FFmpegResult parseResult(String line) {
+        if (line == null || line.isEmpty()) {
+            return null;
+        }
+
+        Long videoSize = null;
+        Long audioSize = null;
+        Long subtitleSize = null;
+        Long otherStreamsSize = null;
+        Long globalHeadersSize = null;
+        Double muxOverhead = null;
+
+        final int length = line.length();
+        int pos = 0;
+        while (pos < length) {
+            pos = skipWhitespace(line, pos, length);
+            if (pos == length) {
+                break;
+            }
+
+            int keyStart = pos;
+            int keyEnd;
+            if (line.startsWith(OTHER_STREAMS, pos)) {
+                keyEnd = pos + OTHER_STREAMS.length();
+            } else if (line.startsWith(GLOBAL_HEADERS, pos)) {
+                keyEnd = pos + GLOBAL_HEADERS.length();
+            } else if (line.startsWith(MUXING_OVERHEAD, pos)) {
+                keyEnd = pos + MUXING_OVERHEAD.length();
+            } else {
+                while (pos < length && line.charAt(pos) != ':' && !isWhitespace(line.charAt(pos))) {
+                    pos++;
+                }
+                keyEnd = pos;
+            }
+            pos = keyEnd;
+
+            if (pos == length || line.charAt(pos) != ':') {
+                // Token without value
+                while (pos < length && !isWhitespace(line.charAt(pos))) {
+                    pos++;
+                }
+                continue;
+            }
+
+            // "muxing overhead: unknown"
+            pos = skipWhitespace(line, pos + 1, length);
+
+            int valueStart = pos;
+            boolean hasSeparator = false;
+            while (pos < length && !isWhitespace(line.charAt(pos))) {
+                hasSeparator |= line.charAt(pos) == ':';
+                pos++;
+            }
+            int valueEnd = pos;
+
+            if (valueStart == valueEnd || hasSeparator) {
+                continue;
+            }
+
+            if (keyEquals(line, keyStart, keyEnd, "video")) {
+                videoSize = parseSizeInBytes(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, "audio")) {
+                audioSize = parseSizeInBytes(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, "subtitle")) {
+                subtitleSize = parseSizeInBytes(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, OTHER_STREAMS)) {
+                otherStreamsSize = parseSizeInBytes(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, GLOBAL_HEADERS)) {
+                globalHeadersSize = parseSizeInBytes(line, valueStart, valueEnd);
+            } else if (keyEquals(line, keyStart, keyEnd, MUXING_OVERHEAD)) {
+                muxOverhead = parseRatio(line, valueStart, valueEnd);
+            }
+        }
+
+        if (videoSize == null && audioSize == null && subtitleSize == null && otherStreamsSize == null
+                && globalHeadersSize == null && muxOverhead == null) {
+            return null;
+        }
+
+        return new FFmpegResult(videoSize, audioSize, subtitleSize, otherStreamsSize, globalHeadersSize, muxOverhead);
+    }
+
+    static Long parseLong(String value, int start, int end) {
+        if (start >= end) {
+            return null;
+        }
+
+        boolean negative = false;
+        int pos = start;
+        char first = value.charAt(pos);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            pos++;
+            if (pos == end) {
+                return null;
+            }
+        }
+
+        // Accumulate negative value: its range is larger than positive one
+        long result = 0;
+        for (; pos < end; pos++) {
+            int digit = value.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                return null;
+            }
+            if (result < (Long.MIN_VALUE + digit) / 10) {
+                // Overflow
+                return null;
+            }
+            result = result * 10 - digit;
+        }
+
+        if (!negative) {
+            if (result == Long.MIN_VALUE) {
+                return null;
+            }
+            result = -result;
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses decimal number without allocation if it has at most 15 significant digits and small exponent.
+     * Otherwise falls back to {@link Double#parseDouble(String)}.
+     */
+    static Double parseDouble(String value, int start, int end) {
+        if (start >= end) {
+            return null;
+        }
+
+        int pos = start;
+        boolean negative = false;
+        char first = value.charAt(pos);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            pos++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; pos < end; pos++) {
+            char c = value.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa == 0 && c == '0') {
+                    // Leading zeros are not significant
+                    if (seenPoint) {
+                        exponent--;
+                    }
+                    continue;
+                }
+                if (digits >= 18) {
+                    return parseDoubleFallback(value, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (seenPoint) {
+                    exponent--;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+
+        if (!seenDigit) {
+            return parseDoubleFallback(value, start, end);
+        }
+
+        if (pos < end) {
+            char c = value.charAt(pos);
+            if (c != 'e' && c != 'E') {
+                return parseDoubleFallback(value, start, end);
+            }
+            pos++;
+
+            boolean negativeExponent = false;
+            if (pos < end && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+                negativeExponent = value.charAt(pos) == '-';
+                pos++;
+            }
+            if (pos == end) {
+                return null;
+            }
+
+            int explicitExponent = 0;
+            for (; pos < end; pos++) {
+                int digit = value.charAt(pos) - '0';
+                if (digit < 0 || digit > 9 || explicitExponent > 1000) {
+                    return parseDoubleFallback(value, start, end);
+                }
+                explicitExponent = explicitExponent * 10 + digit;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+
+        double result;
+        if (mantissa == 0) {
+            result = 0;
+        } else if (mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            // Both operands are exact, so IEEE division/multiplication rounds correctly
+            // and result is equal to the one of Double.parseDouble
+            if (exponent < 0) {
+                result = mantissa / POWERS_OF_TEN[-exponent];
+            } else {
+                result = mantissa * POWERS_OF_TEN[exponent];
+            }
+        } else {
+            return parseDoubleFallback(value, start, end);
+        }
+
+        return negative ? -result : result;
+    }
+
+    private static Double parseDoubleFallback(String value, int start, int end) {
+        try {
+            return Double.parseDouble(value.substring(start, end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static Long parseSizeInBytes(String value, int start, int end) {
+        int numberEnd = start;
+        boolean hasPoint = false;
+        while (numberEnd < end) {
+            char c = value.charAt(numberEnd);
+            if ((c < '0' || c > '9') && c != '.') {
+                break;
+            }
+            hasPoint |= c == '.';
+            numberEnd++;
+        }
+
+        if (hasPoint) {
+            // Only integer sizes are reported by ffmpeg
+            return null;
+        }
+
+        Long number = parseLong(value, start, numberEnd);
+        if (number == null) {
+            return null;
+        }
+
+        SizeUnit unit = parseSizeUnit(value, numberEnd, end);
+        if (unit == null) {
+            return null;
+        }
+
+        return toBytes(number, unit);
+    }
+
+    private static SizeUnit parseSizeUnit(String value, int start, int end) {
+        int length = end - start;
+        for (SizeUnit unit : SIZE_UNITS) {
+            String name = unit.name();
+            if (name.length() == length && value.regionMatches(true, start, name, 0, length)) {
+                return unit;
+            }
+        }
+
+        return null;
+    }
+
+    private static long toBytes(long value, SizeUnit unit) {
+        long bitsInByte = SizeUnit.B.multiplier();
+        try {
+            long bits = Math.multiplyExact(value, unit.multiplier());
+            // Value is non-negative, ceiling division
+            return (bits + bitsInByte - 1) / bitsInByte;
+        } catch (ArithmeticException e) {
+            return unit.convertTo(value, SizeUnit.B);
+        }
+    }
+
+    private static Long parseTimeInMillis(String value, int start, int end) {
+        int firstColon = value.indexOf(':', start);
+        if (firstColon < 0 || firstColon >= end) {
+            return null;
+        }
+        int secondColon = value.indexOf(':', firstColon + 1);
+        if (secondColon < 0 || secondColon >= end) {
+            return null;
+        }
+        int thirdColon = value.indexOf(':', secondColon + 1);
+        if (thirdColon >= 0 && thirdColon < end) {
+            return null;
+        }
+
+        Long hours = parseLong(value, start, firstColon);
+        Long minutes = parseLong(value, firstColon + 1, secondColon);
+        Double seconds = parseDouble(value, secondColon + 1, end);
+
+        if (hours == null || minutes == null || seconds == null) {
+            return null;
+        }
+
+        return (long) (((hours * 60 + minutes) * 60 + seconds) * 1000);
+    }
+
+    private static Double parseRatio(String value, int start, int end) {
+        double multiplier = 1;
+        if (value.charAt(end - 1) == '%') {
+            end--;
+            multiplier = 1. / 100;
+        }
+
+        Double result = parseDouble(value, start, end);
+        if (result == null) {
+            return null;
+        }
+
+        return multiplier * result;
+    }
+
+    private static int stripSuffix(String value, int start, int end, String suffix) {
+        int suffixStart = end - suffix.length();
+        if (suffixStart >= start && value.startsWith(suffix, suffixStart)) {
+            return suffixStart;
+        }
+
+        return end;
+    }
+
+    private static boolean keyEquals(String value, int start, int end, String key) {
+        return end - start == key.length() && value.startsWith(key, start);
+    }
+
+    private static int skipWhitespace(String value, int pos, int end) {
+        while (pos < end && isWhitespace(value.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Same characters as "\\s" regular expression.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -17,6 +17,9 @@
 
 package com.github.kokorin.jaffree.ffmpeg;
 
+import java.util.Collections;
+import java.util.List;
+
 public class FFmpegResult {
     private final Long videoSize;
     private final Long audioSize;
@@ -24,6 +27,7 @@ public class FFmpegResult {
     private final Long otherStreamsSize;
     private final Long globalHeadersSize;
     private final Double muxingOverheadRatio;
+    private final List<FrameOrderingStats> frameOrderingStats;
 
     public FFmpegResult(Long videoSize, Long audioSize, Long subtitleSize, Long otherStreamsSize, Long globalHeadersSize, Double muxingOverheadRatio) {
         this.videoSize = videoSize;
@@ -32,6 +36,20 @@ public class FFmpegResult {
         this.otherStreamsSize = otherStreamsSize;
         this.globalHeadersSize = globalHeadersSize;
         this.muxingOverheadRatio = muxingOverheadRatio;
+        this.frameOrderingStats = Collections.emptyList();
+    }
+
+    /**
+     * Creates copy of result with frame ordering statistics of {@link FrameInput}s.
+     */
+    FFmpegResult(FFmpegResult result, List<FrameOrderingStats> frameOrderingStats) {
+        this.videoSize = result.videoSize;
+        this.audioSize = result.audioSize;
+        this.subtitleSize = result.subtitleSize;
+        this.otherStreamsSize = result.otherStreamsSize;
+        this.globalHeadersSize = result.globalHeadersSize;
+        this.muxingOverheadRatio = result.muxingOverheadRatio;
+        this.frameOrderingStats = Collections.unmodifiableList(frameOrderingStats);
     }
 
     /**
@@ -75,4 +93,11 @@ public class FFmpegResult {
     public Double getMuxingOverheadRatio() {
         return muxingOverheadRatio;
     }
+
+    /**
+     * @return frame ordering buffer statistics of every {@link FrameInput} in the order inputs were added
+     */
+    public List<FrameOrderingStats> getFrameOrderingStats() {
+        return frameOrderingStats;
+    }
 }
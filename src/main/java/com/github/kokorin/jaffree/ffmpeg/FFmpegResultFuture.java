@@ -20,16 +20,16 @@ package com.github.kokorin.jaffree.ffmpeg;
 import com.github.kokorin.jaffree.process.Stopper;
 
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 public class FFmpegResultFuture {
-    private final Future<FFmpegResult> resultFuture;
+    private final CompletableFuture<FFmpegResult> resultFuture;
     private final Stopper stopper;
 
-    public FFmpegResultFuture(Future<FFmpegResult> resultFuture, Stopper stopper) {
+    public FFmpegResultFuture(CompletableFuture<FFmpegResult> resultFuture, Stopper stopper) {
         this.resultFuture = resultFuture;
         this.stopper = stopper;
     }
@@ -111,6 +111,18 @@ public class FFmpegResultFuture {
         return resultFuture.get(timeout, unit);
     }
 
+    /**
+     * Returns {@link CompletableFuture} to compose ffmpeg execution with other asynchronous tasks.
+     * <p>
+     * <b>Note</b>: {@link CompletableFuture#cancel(boolean)} stops ffmpeg process, gracefully
+     * if mayInterruptIfRunning is false and forcefully otherwise.
+     *
+     * @return completable future
+     */
+    public CompletableFuture<FFmpegResult> toCompletableFuture() {
+        return resultFuture;
+    }
+
     // TODO check if required or replace with more suitable method
     public boolean isCancelled() {
         return resultFuture.isCancelled();
@@ -0,0 +1,440 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import com.github.kokorin.jaffree.ffprobe.FFprobe;
+import com.github.kokorin.jaffree.ffprobe.FFprobeResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded job queue which limits number of concurrently running ffmpeg and ffprobe processes.
+ * <p>
+ * Jobs with higher priority are started first. Jobs with the same priority are started
+ * in round-robin order across tenants, and in submission order within a tenant.
+ * <p>
+ * Scheduler doesn't own any thread: processes are started with asynchronous API
+ * ({@link FFmpeg#executeAsync(Executor)}, {@link FFprobe#executeAsync(Executor)}), next queued job is started
+ * in the thread which submits a job or which completes a running one (unless another thread is already
+ * starting jobs).
+ */
+public class FFmpegScheduler {
+    public static final int DEFAULT_PRIORITY = 0;
+    public static final String DEFAULT_TENANT = "";
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private final int maxRunning;
+    private final int queueCapacity;
+    private final Executor completionExecutor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    // priority (highest first) -> tenant (in round-robin order) -> jobs
+    private final TreeMap<Integer, LinkedHashMap<String, Deque<ScheduledJob<?>>>> queue =
+            new TreeMap<>(Collections.<Integer>reverseOrder());
+    private int queuedCount = 0;
+    private int runningCount = 0;
+    // Only one thread starts jobs at a time, others leave queued jobs to it
+    private boolean dispatching = false;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FFmpegScheduler.class);
+
+    /**
+     * Creates scheduler which runs as many processes as there are available processors.
+     */
+    public FFmpegScheduler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY, null);
+    }
+
+    /**
+     * @param maxRunning         max number of concurrently running processes
+     * @param queueCapacity      max number of jobs waiting in the queue
+     * @param completionExecutor executor to complete job results in, if null results are completed
+     *                           in helper threads
+     */
+    public FFmpegScheduler(int maxRunning, int queueCapacity, Executor completionExecutor) {
+        if (maxRunning <= 0) {
+            throw new IllegalArgumentException("maxRunning must be positive: " + maxRunning);
+        }
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+        }
+
+        this.maxRunning = maxRunning;
+        this.queueCapacity = queueCapacity;
+        this.completionExecutor = completionExecutor;
+    }
+
+    /**
+     * Submits ffmpeg job with default priority and tenant, blocks while the queue is full.
+     *
+     * @param ffmpeg ffmpeg to execute
+     * @return job result
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    public ScheduledJob<FFmpegResult> submit(FFmpeg ffmpeg) throws InterruptedException {
+        return submit(ffmpeg, DEFAULT_PRIORITY, DEFAULT_TENANT);
+    }
+
+    /**
+     * Submits ffmpeg job, blocks while the queue is full.
+     *
+     * @param ffmpeg   ffmpeg to execute
+     * @param priority job priority, higher is started first
+     * @param tenant   tenant to share capacity fairly with other tenants of the same priority
+     * @return job result
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    public ScheduledJob<FFmpegResult> submit(FFmpeg ffmpeg, int priority, String tenant)
+            throws InterruptedException {
+        return submit(ffmpegStarter(ffmpeg), priority, tenant, -1);
+    }
+
+    /**
+     * Submits ffmpeg job if there is space in the queue.
+     *
+     * @param ffmpeg   ffmpeg to execute
+     * @param priority job priority, higher is started first
+     * @param tenant   tenant to share capacity fairly with other tenants of the same priority
+     * @return job result, or null if the queue is full
+     */
+    public ScheduledJob<FFmpegResult> trySubmit(FFmpeg ffmpeg, int priority, String tenant) {
+        return trySubmit(ffmpegStarter(ffmpeg), priority, tenant);
+    }
+
+    /**
+     * Submits ffprobe job with default priority and tenant, blocks while the queue is full.
+     *
+     * @param ffprobe ffprobe to execute
+     * @return job result
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    public ScheduledJob<FFprobeResult> submit(FFprobe ffprobe) throws InterruptedException {
+        return submit(ffprobe, DEFAULT_PRIORITY, DEFAULT_TENANT);
+    }
+
+    /**
+     * Submits ffprobe job, blocks while the queue is full.
+     *
+     * @param ffprobe  ffprobe to execute
+     * @param priority job priority, higher is started first
+     * @param tenant   tenant to share capacity fairly with other tenants of the same priority
+     * @return job result
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    public ScheduledJob<FFprobeResult> submit(FFprobe ffprobe, int priority, String tenant)
+            throws InterruptedException {
+        return submit(ffprobeStarter(ffprobe), priority, tenant, -1);
+    }
+
+    /**
+     * Submits ffprobe job if there is space in the queue.
+     *
+     * @param ffprobe  ffprobe to execute
+     * @param priority job priority, higher is started first
+     * @param tenant   tenant to share capacity fairly with other tenants of the same priority
+     * @return job result, or null if the queue is full
+     */
+    public ScheduledJob<FFprobeResult> trySubmit(FFprobe ffprobe, int priority, String tenant) {
+        return trySubmit(ffprobeStarter(ffprobe), priority, tenant);
+    }
+
+    /**
+     * @return number of jobs waiting in the queue
+     */
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queuedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of running processes
+     */
+    public int getRunningCount() {
+        lock.lock();
+        try {
+            return runningCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    <T> ScheduledJob<T> trySubmit(ScheduledJob.Starter<T> starter, int priority, String tenant) {
+        try {
+            return submit(starter, priority, tenant, 0);
+        } catch (InterruptedException e) {
+            // Can't happen: trySubmit never waits
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * @param timeoutNanos negative to wait until there is space in the queue, 0 to not wait at all
+     * @return job, or null if the queue is still full after timeout
+     */
+    <T> ScheduledJob<T> submit(ScheduledJob.Starter<T> starter, int priority, String tenant, long timeoutNanos)
+            throws InterruptedException {
+        if (tenant == null) {
+            tenant = DEFAULT_TENANT;
+        }
+
+        ScheduledJob<T> job = new ScheduledJob<>(this, starter, priority, tenant);
+
+        lock.lockInterruptibly();
+        try {
+            while (queuedCount >= queueCapacity) {
+                if (timeoutNanos == 0) {
+                    LOGGER.debug("Queue is full, rejecting job");
+                    return null;
+                }
+                if (timeoutNanos < 0) {
+                    notFull.await();
+                } else {
+                    timeoutNanos = notFull.awaitNanos(timeoutNanos);
+                    if (timeoutNanos <= 0) {
+                        return null;
+                    }
+                }
+            }
+
+            enqueue(job);
+        } finally {
+            lock.unlock();
+        }
+
+        dispatch();
+        return job;
+    }
+
+    void cancel(ScheduledJob<?> job, boolean mayInterruptIfRunning) {
+        lock.lock();
+        try {
+            if (remove(job)) {
+                LOGGER.debug("Queued job has been cancelled");
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Job is running or is being started, in the latter case execution is cancelled after start
+        CompletableFuture<?> execution = job.getExecution();
+        if (execution != null) {
+            execution.cancel(mayInterruptIfRunning);
+        }
+    }
+
+    /**
+     * Starts queued jobs while there are free slots.
+     * <p>
+     * Jobs may fail to start or complete immediately, and finished job invokes dispatch() again in the same thread.
+     * Instead of recursion such nested invocation returns at once and the loop of outer invocation starts
+     * next jobs.
+     */
+    private void dispatch() {
+        lock.lock();
+        try {
+            if (dispatching) {
+                return;
+            }
+            dispatching = true;
+        } finally {
+            lock.unlock();
+        }
+
+        boolean drained = false;
+        try {
+            ScheduledJob<?> job;
+            while ((job = pollToStart()) != null) {
+                start(job);
+            }
+            drained = true;
+        } finally {
+            if (!drained) {
+                lock.lock();
+                try {
+                    dispatching = false;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return next job to start, or null if there are no free slots or no queued jobs
+     */
+    private ScheduledJob<?> pollToStart() {
+        lock.lock();
+        try {
+            if (runningCount >= maxRunning || queuedCount == 0) {
+                // Reset under the same lock, so jobs queued or finished after the check aren't left behind
+                dispatching = false;
+                return null;
+            }
+            runningCount++;
+            return poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> void start(final ScheduledJob<T> job) {
+        final CompletableFuture<T> execution;
+        try {
+            execution = job.start(completionExecutor);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to start job: {}", e.getMessage());
+            job.markFinished();
+            job.completeExceptionally(e);
+            onFinished();
+            return;
+        }
+
+        if (job.isCancelled()) {
+            execution.cancel(true);
+        }
+
+        execution.whenComplete(new BiConsumer<T, Throwable>() {
+            @Override
+            public void accept(T result, Throwable throwable) {
+                job.markFinished();
+                LOGGER.debug("Job has finished, queue wait: {} ms, run: {} ms",
+                        job.getQueueWaitMillis(), job.getRunMillis());
+
+                // Starting next job may take a while, result must not wait for it
+                if (throwable != null) {
+                    job.completeExceptionally(throwable);
+                } else {
+                    job.complete(result);
+                }
+                onFinished();
+            }
+        });
+    }
+
+    private void onFinished() {
+        lock.lock();
+        try {
+            runningCount--;
+        } finally {
+            lock.unlock();
+        }
+
+        dispatch();
+    }
+
+    private void enqueue(ScheduledJob<?> job) {
+        LinkedHashMap<String, Deque<ScheduledJob<?>>> tenants = queue.get(job.getPriority());
+        if (tenants == null) {
+            tenants = new LinkedHashMap<>();
+            queue.put(job.getPriority(), tenants);
+        }
+
+        Deque<ScheduledJob<?>> jobs = tenants.get(job.getTenant());
+        if (jobs == null) {
+            jobs = new ArrayDeque<>();
+            tenants.put(job.getTenant(), jobs);
+        }
+
+        jobs.addLast(job);
+        queuedCount++;
+    }
+
+    private ScheduledJob<?> poll() {
+        Map.Entry<Integer, LinkedHashMap<String, Deque<ScheduledJob<?>>>> highest = queue.firstEntry();
+        LinkedHashMap<String, Deque<ScheduledJob<?>>> tenants = highest.getValue();
+
+        // Take the first tenant in rotation and move it to the end, if it has more jobs
+        Iterator<Map.Entry<String, Deque<ScheduledJob<?>>>> iterator = tenants.entrySet().iterator();
+        Map.Entry<String, Deque<ScheduledJob<?>>> first = iterator.next();
+        iterator.remove();
+
+        Deque<ScheduledJob<?>> jobs = first.getValue();
+        ScheduledJob<?> result = jobs.pollFirst();
+        if (!jobs.isEmpty()) {
+            tenants.put(first.getKey(), jobs);
+        }
+        if (tenants.isEmpty()) {
+            queue.remove(highest.getKey());
+        }
+
+        queuedCount--;
+        notFull.signal();
+        return result;
+    }
+
+    private boolean remove(ScheduledJob<?> job) {
+        LinkedHashMap<String, Deque<ScheduledJob<?>>> tenants = queue.get(job.getPriority());
+        if (tenants == null) {
+            return false;
+        }
+
+        Deque<ScheduledJob<?>> jobs = tenants.get(job.getTenant());
+        if (jobs == null || !jobs.remove(job)) {
+            return false;
+        }
+
+        if (jobs.isEmpty()) {
+            tenants.remove(job.getTenant());
+        }
+        if (tenants.isEmpty()) {
+            queue.remove(job.getPriority());
+        }
+
+        queuedCount--;
+        notFull.signal();
+        return true;
+    }
+
+    private static ScheduledJob.Starter<FFmpegResult> ffmpegStarter(final FFmpeg ffmpeg) {
+        return new ScheduledJob.Starter<FFmpegResult>() {
+            @Override
+            public CompletableFuture<FFmpegResult> start(Executor completionExecutor) {
+                return ffmpeg.executeAsync(completionExecutor).toCompletableFuture();
+            }
+        };
+    }
+
+    private static ScheduledJob.Starter<FFprobeResult> ffprobeStarter(final FFprobe ffprobe) {
+        return new ScheduledJob.Starter<FFprobeResult>() {
+            @Override
+            public CompletableFuture<FFprobeResult> start(Executor completionExecutor) {
+                return ffprobe.executeAsync(completionExecutor);
+            }
+        };
+    }
+}
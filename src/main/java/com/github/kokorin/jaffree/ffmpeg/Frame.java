@@ -18,6 +18,7 @@
 package com.github.kokorin.jaffree.ffmpeg;
 
 import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Represents video/audio data to be encoded or has been decoded.
@@ -31,6 +32,10 @@ public class Frame {
     private final long pts;
     private final BufferedImage image;
     private final int[] samples;
+    private final RawImage rawImage;
+    private final RawSamples rawSamples;
+    private final Runnable releaseAction;
+    private final AtomicBoolean released = new AtomicBoolean();
 
     /**
      * Constructor which creates Video Frame, samples are set to null
@@ -53,17 +58,54 @@ public class Frame {
     }
 
     public Frame(int streamId, long pts, BufferedImage image, int[] samples) {
-        if (image != null && samples != null) {
-            throw new IllegalArgumentException("Only one of image and samples parameters may be non null");
+        this(streamId, pts, image, samples, null, null, null);
+    }
+
+    /**
+     * Constructor which creates Video Frame with raw image in explicit pixel format
+     * @param streamId streamId
+     * @param pts pts
+     * @param rawImage raw image
+     */
+    public Frame(int streamId, long pts, RawImage rawImage) {
+        this(streamId, pts, null, null, rawImage, null, null);
+    }
+
+    /**
+     * Constructor which creates Audio Frame with raw samples in explicit sample format
+     * @param streamId streamId
+     * @param pts pts
+     * @param rawSamples raw samples
+     */
+    public Frame(int streamId, long pts, RawSamples rawSamples) {
+        this(streamId, pts, null, null, null, rawSamples, null);
+    }
+
+    /**
+     * Creates Frame which may be backed by pooled memory
+     *
+     * @param releaseAction action to return memory to pool, invoked at most once
+     */
+    Frame(int streamId, long pts, BufferedImage image, int[] samples, RawImage rawImage, RawSamples rawSamples,
+          Runnable releaseAction) {
+        int nonNull = (image != null ? 1 : 0) + (samples != null ? 1 : 0)
+                + (rawImage != null ? 1 : 0) + (rawSamples != null ? 1 : 0);
+        if (nonNull > 1) {
+            throw new IllegalArgumentException("Only one of image, samples, rawImage and rawSamples parameters "
+                    + "may be non null");
         }
-        if (image == null && samples == null) {
-            throw new IllegalArgumentException("One of image and samples parameters must be non null");
+        if (nonNull == 0) {
+            throw new IllegalArgumentException("One of image, samples, rawImage and rawSamples parameters "
+                    + "must be non null");
         }
 
         this.streamId = streamId;
         this.pts = pts;
         this.image = image;
         this.samples = samples;
+        this.rawImage = rawImage;
+        this.rawSamples = rawSamples;
+        this.releaseAction = releaseAction;
     }
 
     public int getStreamId() {
@@ -88,6 +130,33 @@ public class Frame {
         return samples;
     }
 
+    /**
+     * @return raw image, if frame is consumed or produced in explicit {@link PixelFormat}
+     */
+    public RawImage getRawImage() {
+        return rawImage;
+    }
+
+    /**
+     * @return raw samples, if frame is consumed or produced in explicit {@link SampleFormat}
+     */
+    public RawSamples getRawSamples() {
+        return rawSamples;
+    }
+
+    /**
+     * Returns memory backing this frame to the pool it was taken from, so it can be reused for subsequent frames.
+     * <p>
+     * Neither frame nor its image may be used after release. Does nothing if frame isn't backed
+     * by pooled memory (see {@link FrameOutput#setBufferPool(com.github.kokorin.jaffree.nut.BufferPool)}
+     * and {@link FrameOutput#setRecycleImages(boolean)}) or has been released already.
+     */
+    public void release() {
+        if (releaseAction != null && released.compareAndSet(false, true)) {
+            releaseAction.run();
+        }
+    }
+
     @Override
     public String toString() {
         return "Frame{" +
@@ -95,6 +164,8 @@ public class Frame {
                 ", pts=" + pts +
                 ", image?=" + (image != null) +
                 ", samples?=" + (samples != null) +
+                ", rawImage?=" + (rawImage != null) +
+                ", rawSamples?=" + (rawSamples != null) +
                 '}';
     }
 }
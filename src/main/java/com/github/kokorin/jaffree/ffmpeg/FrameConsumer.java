@@ -25,6 +25,9 @@ public interface FrameConsumer {
     /**
      * Called for every frame in video file. When there is no more frame this method is called one more time
      * with {@code}null{@code} to notify consumer about EOF.
+     * <p>
+     * If frames are read with buffer pool, consumer should invoke {@link Frame#release()}
+     * once frame isn't needed anymore, otherwise every frame is allocated.
      * @param frame
      */
     void consume(Frame frame);
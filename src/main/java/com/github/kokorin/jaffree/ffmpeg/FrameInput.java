@@ -21,6 +21,7 @@ package com.github.kokorin.jaffree.ffmpeg;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -30,6 +31,12 @@ public class FrameInput extends TcpInput<FrameInput> implements Input {
     private boolean alpha;
     private boolean frameRateSet;
     private Long frameOrderingBufferMillis;
+    private Long frameOrderingBufferMaxBytes;
+    private FrameOrderingStats frameOrderingStats;
+    private SampleFormat sampleFormat;
+    private int pipelineDepth = 0;
+    private FramePipelineMetrics pipelineMetrics;
+    private Executor helperExecutor;
 
     private final FrameProducer producer;
 
@@ -88,13 +95,96 @@ public class FrameInput extends TcpInput<FrameInput> implements Input {
         return this;
     }
 
+    /**
+     * Limits memory held by frame ordering buffer. Buffer keeps references to whole images,
+     * so time-based limit alone may require a lot of memory for high resolutions.
+     * <p>
+     * When the limit is exceeded, the earliest frames are written to ffmpeg immediately, and producer
+     * is blocked until ffmpeg reads them. Frames produced later with earlier timestamps cause failure.
+     *
+     * @param maxBytes max size of image and sample data in frame ordering buffer
+     * @return this
+     * @see #getFrameOrderingStats()
+     */
+    public FrameInput setFrameOrderingBufferMaxBytes(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Max bytes must be positive: " + maxBytes);
+        }
+        frameOrderingBufferMaxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * @return frame ordering buffer statistics of the last execution, null if input hasn't been used yet
+     * @see FFmpegResult#getFrameOrderingStats()
+     */
+    public FrameOrderingStats getFrameOrderingStats() {
+        return frameOrderingStats;
+    }
+
+    /**
+     * Sample format of produced audio streams, which don't specify {@link Stream#setSampleFormat(SampleFormat)}.
+     * If set, producer must supply audio frames with {@link RawSamples} in this format.
+     *
+     * @param sampleFormat sample format
+     * @return this
+     */
+    public FrameInput setSampleFormat(SampleFormat sampleFormat) {
+        this.sampleFormat = sampleFormat;
+        return this;
+    }
+
+    /**
+     * Invoke {@link FrameProducer} in a separate thread, so frames are produced while previous ones
+     * are being written to ffmpeg.
+     * <p>
+     * Producer is still invoked by a single thread. Produced frames wait in a queue of specified depth,
+     * when the queue is full producer is blocked until ffmpeg reads next frame.
+     *
+     * @param depth max number of produced frames waiting to be written, 0 (default) disables pipelining
+     * @return this
+     * @see #getPipelineMetrics()
+     */
+    public FrameInput setPipelineDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Pipeline depth must not be negative: " + depth);
+        }
+        this.pipelineDepth = depth;
+        this.pipelineMetrics = depth > 0 ? new FramePipelineMetrics() : null;
+        return this;
+    }
+
+    /**
+     * @return metrics of pipelined frame production, null if pipelining is disabled
+     * @see #setPipelineDepth(int)
+     */
+    public FramePipelineMetrics getPipelineMetrics() {
+        return pipelineMetrics;
+    }
+
+    /**
+     * Executor of the FFmpeg execution, it runs pipelined frame producer along with other helpers.
+     *
+     * @param helperExecutor executor, {@link com.github.kokorin.jaffree.process.HelperExecutors#getDefault()}
+     *                       is used if null
+     * @return this
+     * @see FFmpeg#setHelperExecutor(Executor)
+     */
+    FrameInput setHelperExecutor(Executor helperExecutor) {
+        this.helperExecutor = helperExecutor;
+        return this;
+    }
+
     @Override
     protected Supplier supplier() {
         if (!frameRateSet) {
             LOGGER.warn("It's strongly recommended to specify video frame rate, " +
                     "otherwise video encoding may be slower (by 20-50 times) and may produce corrupted video");
         }
-        return new NutFrameSupplier(producer, alpha, frameOrderingBufferMillis);
+        frameOrderingStats = new FrameOrderingStats();
+        return new NutFrameSupplier(producer, alpha, frameOrderingBufferMillis, sampleFormat)
+                .setPipeline(pipelineDepth, pipelineMetrics, helperExecutor)
+                .setFrameOrderingBuffer(frameOrderingBufferMaxBytes, frameOrderingStats);
     }
 
     public static FrameInput withProducer(FrameProducer producer) {
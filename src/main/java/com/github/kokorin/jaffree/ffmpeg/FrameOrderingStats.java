@@ -0,0 +1,68 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+/**
+ * Statistics of {@link FrameInput} frame ordering buffer, helps to choose heap size and buffer limits.
+ * <p>
+ * Values are final once ffmpeg execution has completed.
+ *
+ * @see FrameInput#setFrameOrderingBuffer(long)
+ * @see FrameInput#setFrameOrderingBufferMaxBytes(long)
+ */
+public class FrameOrderingStats {
+    private volatile long peakBufferedBytes;
+    private volatile int peakBufferedFrames;
+    private volatile long forcedFlushCount;
+
+    /**
+     * @return max size of frame data (image and sample bytes) kept in the buffer at the same time
+     */
+    public long getPeakBufferedBytes() {
+        return peakBufferedBytes;
+    }
+
+    /**
+     * @return max number of frames kept in the buffer at the same time
+     */
+    public int getPeakBufferedFrames() {
+        return peakBufferedFrames;
+    }
+
+    /**
+     * @return number of frames written before their time because buffer size limit was exceeded
+     */
+    public long getForcedFlushCount() {
+        return forcedFlushCount;
+    }
+
+    void set(long peakBufferedBytes, int peakBufferedFrames, long forcedFlushCount) {
+        this.peakBufferedBytes = peakBufferedBytes;
+        this.peakBufferedFrames = peakBufferedFrames;
+        this.forcedFlushCount = forcedFlushCount;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameOrderingStats{" +
+                "peakBufferedBytes=" + peakBufferedBytes +
+                ", peakBufferedFrames=" + peakBufferedFrames +
+                ", forcedFlushCount=" + forcedFlushCount +
+                '}';
+    }
+}
@@ -18,22 +18,123 @@
 package com.github.kokorin.jaffree.ffmpeg;
 
 import com.github.kokorin.jaffree.StreamType;
+import com.github.kokorin.jaffree.nut.BufferPool;
+
+import java.util.concurrent.Executor;
 
 public class FrameOutput extends TcpOutput<FrameOutput> implements Output {
     private final FrameConsumer consumer;
     private final boolean alpha;
+    private final PixelFormat rawPixelFormat;
+    private BufferPool bufferPool;
+    private boolean recycleImages;
+    private SampleFormat sampleFormat;
+    private Executor conversionExecutor;
+    private int maxFramesInFlight;
+    private boolean verifyChecksums;
+
+    // Codec of int samples, see NutFrameConsumer
+    private static final String INT_SAMPLES_CODEC = "pcm_s32be";
 
     public FrameOutput(FrameConsumer consumer, boolean alpha) {
+        this(consumer, alpha, null);
+    }
+
+    /**
+     * Creates output which passes video frames to consumer as {@link RawImage}s in specified pixel format.
+     *
+     * @param consumer    frame consumer
+     * @param pixelFormat pixel format
+     */
+    public FrameOutput(FrameConsumer consumer, PixelFormat pixelFormat) {
+        this(consumer, false, pixelFormat);
+    }
+
+    private FrameOutput(FrameConsumer consumer, boolean alpha, PixelFormat rawPixelFormat) {
         this.consumer = consumer;
         this.alpha = alpha;
+        this.rawPixelFormat = rawPixelFormat;
         setFormat("nut");
 
         // default arguments
         setCodec(StreamType.VIDEO, "rawvideo");
         String pixelFormat = alpha ? "abgr" : "bgr24";
+        if (rawPixelFormat != null) {
+            pixelFormat = rawPixelFormat.getFfmpegName();
+        }
         setPixelFormat(pixelFormat);
 
-        setCodec(StreamType.AUDIO, "pcm_s32be");
+        setCodec(StreamType.AUDIO, INT_SAMPLES_CODEC);
+    }
+
+    /**
+     * Read frames into arrays taken from the pool instead of allocating them for every frame.
+     * <p>
+     * Consumer must invoke {@link Frame#release()} for every frame once it isn't needed,
+     * otherwise pooling has no effect.
+     *
+     * @param bufferPool buffer pool
+     * @return this
+     */
+    public FrameOutput setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        return this;
+    }
+
+    /**
+     * Reuse whole images (with their rasters and data) of released frames for subsequent frames.
+     * Overrides {@link #setBufferPool(BufferPool)}.
+     * <p>
+     * Consumer must invoke {@link Frame#release()} for every frame once it isn't needed,
+     * otherwise recycling has no effect.
+     *
+     * @param recycleImages true to recycle images
+     * @return this
+     */
+    public FrameOutput setRecycleImages(boolean recycleImages) {
+        this.recycleImages = recycleImages;
+        return this;
+    }
+
+    /**
+     * Pass audio frames to consumer as {@link RawSamples} in specified sample format
+     * instead of int samples. Sets corresponding PCM audio codec.
+     *
+     * @param sampleFormat sample format, null to pass int samples (default)
+     * @return this
+     */
+    public FrameOutput setSampleFormat(SampleFormat sampleFormat) {
+        this.sampleFormat = sampleFormat;
+        return setCodec(StreamType.AUDIO, sampleFormat != null ? sampleFormat.getCodec() : INT_SAMPLES_CODEC);
+    }
+
+    /**
+     * Convert read data to Frames (images and samples) with provided executor, so conversion
+     * of subsequent frames runs in parallel. Frames are still passed to consumer one by one in stream order.
+     *
+     * @param executor          executor to convert frames with, null to convert in reading thread (default)
+     * @param maxFramesInFlight max number of frames being converted at the same time
+     * @return this
+     */
+    public FrameOutput setConversionExecutor(Executor executor, int maxFramesInFlight) {
+        // Fail fast: NutFrameConsumer is created only after ffmpeg has been started
+        if (executor != null && maxFramesInFlight <= 0) {
+            throw new IllegalArgumentException("maxFramesInFlight must be positive: " + maxFramesInFlight);
+        }
+        this.conversionExecutor = executor;
+        this.maxFramesInFlight = maxFramesInFlight;
+        return this;
+    }
+
+    /**
+     * Verify checksums of NUT headers and frame headers produced by ffmpeg, fail on mismatch.
+     *
+     * @param verifyChecksums true to verify checksums
+     * @return this
+     */
+    public FrameOutput setVerifyChecksums(boolean verifyChecksums) {
+        this.verifyChecksums = verifyChecksums;
+        return this;
     }
 
     public FrameConsumer getConsumer() {
@@ -42,7 +143,17 @@ public class FrameOutput extends TcpOutput<FrameOutput> implements Output {
 
     @Override
     protected Consumer consumer() {
-        return new NutFrameConsumer(consumer, alpha);
+        if (rawPixelFormat != null) {
+            return new NutFrameConsumer(consumer, rawPixelFormat, bufferPool)
+                    .setSampleFormat(sampleFormat)
+                    .setConversionExecutor(conversionExecutor, maxFramesInFlight)
+                    .setVerifyChecksums(verifyChecksums);
+        }
+
+        return new NutFrameConsumer(consumer, alpha, bufferPool, recycleImages)
+                .setSampleFormat(sampleFormat)
+                .setConversionExecutor(conversionExecutor, maxFramesInFlight)
+                .setVerifyChecksums(verifyChecksums);
     }
 
     public static FrameOutput withConsumer(FrameConsumer consumer) {
@@ -52,4 +163,8 @@ public class FrameOutput extends TcpOutput<FrameOutput> implements Output {
     public static FrameOutput withConsumerAlpha(FrameConsumer consumer) {
         return new FrameOutput(consumer, true);
     }
+
+    public static FrameOutput withConsumer(FrameConsumer consumer, PixelFormat pixelFormat) {
+        return new FrameOutput(consumer, pixelFormat);
+    }
 }
@@ -0,0 +1,122 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of pipelined frame production, see {@link FrameInput#setPipelineDepth(int)}.
+ * <p>
+ * Producer blocked time grows when ffmpeg can't keep up with the producer (queue is full),
+ * writer blocked time grows when the producer can't keep up with ffmpeg (queue is empty).
+ */
+public class FramePipelineMetrics {
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong queueSizeSum = new AtomicLong();
+    private final AtomicLong producerBlockedNanos = new AtomicLong();
+    private final AtomicLong writerBlockedNanos = new AtomicLong();
+    private volatile int queueDepth;
+    private volatile int queueSize;
+    private volatile int maxQueueSize;
+
+    /**
+     * @return capacity of frame queue
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return number of frames in the queue at the moment
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return max observed number of frames in the queue
+     */
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * @return average number of frames in the queue, sampled when writer takes a frame
+     */
+    public double getAverageQueueSize() {
+        long count = frameCount.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        return (double) queueSizeSum.get() / count;
+    }
+
+    /**
+     * @return number of frames passed from producer to writer
+     */
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    /**
+     * @return time producer spent waiting for free space in the queue, in millis
+     */
+    public long getProducerBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(producerBlockedNanos.get());
+    }
+
+    /**
+     * @return time writer spent waiting for produced frames, in millis
+     */
+    public long getWriterBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(writerBlockedNanos.get());
+    }
+
+    void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    void onPut(int size, long blockedNanos) {
+        queueSize = size;
+        if (size > maxQueueSize) {
+            maxQueueSize = size;
+        }
+        producerBlockedNanos.addAndGet(blockedNanos);
+    }
+
+    void onTake(int sizeBeforeTake, long blockedNanos) {
+        queueSize = Math.max(sizeBeforeTake - 1, 0);
+        frameCount.incrementAndGet();
+        queueSizeSum.addAndGet(sizeBeforeTake);
+        writerBlockedNanos.addAndGet(blockedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "FramePipelineMetrics{" +
+                "queueDepth=" + queueDepth +
+                ", frameCount=" + getFrameCount() +
+                ", maxQueueSize=" + maxQueueSize +
+                ", averageQueueSize=" + getAverageQueueSize() +
+                ", producerBlockedMillis=" + getProducerBlockedMillis() +
+                ", writerBlockedMillis=" + getWriterBlockedMillis() +
+                '}';
+    }
+}
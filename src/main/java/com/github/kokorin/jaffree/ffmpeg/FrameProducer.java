@@ -27,7 +27,11 @@ public interface FrameProducer {
      * <p>
      * Method must return video frames with {@link java.awt.image.BufferedImage BufferedImage}s either in
      * {@link java.awt.image.BufferedImage#TYPE_4BYTE_ABGR TYPE_4BYTE_ABGR},
-     * or {@link java.awt.image.BufferedImage#TYPE_3BYTE_BGR TYPE_3BYTE_BGR} formats
+     * or {@link java.awt.image.BufferedImage#TYPE_3BYTE_BGR TYPE_3BYTE_BGR} formats,
+     * or with {@link RawImage}s if {@link Stream#setPixelFormat(PixelFormat) pixel format} is set for the stream.
+     * <p>
+     * Audio frames must contain int samples,
+     * or {@link RawSamples} if {@link Stream#setSampleFormat(SampleFormat) sample format} is set for the stream
      *
      * @return Frame
      */
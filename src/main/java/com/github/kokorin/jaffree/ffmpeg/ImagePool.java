@@ -0,0 +1,95 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import com.github.kokorin.jaffree.nut.BufferPool;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link BufferPool} which recycles released images together with their data.
+ * <p>
+ * When there is released image with data of requested size, its data is handed out to read the next
+ * frame into, and the image itself can be taken with {@link #takeImage(byte[])}.
+ * Arrays must be acquired and images taken in the same (reading) thread, images may be released in any thread.
+ */
+final class ImagePool extends BufferPool {
+    private final int maxImagesPerSize;
+    private final ConcurrentMap<Integer, BlockingQueue<BufferedImage>> images = new ConcurrentHashMap<>();
+    private BufferedImage acquiredImage;
+
+    ImagePool() {
+        this(DEFAULT_MAX_BUFFERS_PER_SIZE);
+    }
+
+    ImagePool(int maxImagesPerSize) {
+        super(maxImagesPerSize);
+        this.maxImagesPerSize = maxImagesPerSize;
+    }
+
+    @Override
+    public byte[] acquire(int size) {
+        BlockingQueue<BufferedImage> queue = images.get(size);
+        acquiredImage = queue != null ? queue.poll() : null;
+        if (acquiredImage != null) {
+            return getData(acquiredImage);
+        }
+
+        return super.acquire(size);
+    }
+
+    /**
+     * Returns recycled image if passed in data was acquired from it.
+     *
+     * @param data data returned by the last {@link #acquire(int)}
+     * @return image backed by data, or null
+     */
+    BufferedImage takeImage(byte[] data) {
+        BufferedImage result = acquiredImage;
+        acquiredImage = null;
+        if (result != null && getData(result) == data) {
+            return result;
+        }
+
+        return null;
+    }
+
+    void releaseImage(BufferedImage image) {
+        int size = getData(image).length;
+        BlockingQueue<BufferedImage> queue = images.get(size);
+        if (queue == null) {
+            BlockingQueue<BufferedImage> created = new ArrayBlockingQueue<>(maxImagesPerSize);
+            queue = images.putIfAbsent(size, created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+
+        // Image is left for GC if pool is full
+        queue.offer(image);
+    }
+
+    private static byte[] getData(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+}
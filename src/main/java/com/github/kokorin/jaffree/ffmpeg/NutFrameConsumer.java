@@ -30,18 +30,129 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class NutFrameConsumer implements TcpOutput.Consumer {
     private final FrameConsumer frameConsumer;
     private final boolean alpha;
+    private final PixelFormat pixelFormat;
+    private final BufferPool bufferPool;
+    private final ImagePool imagePool;
+    private SampleModel[] sampleModels;
+    private PixelFormat[] pixelFormats;
+    private SampleFormat sampleFormat;
+    private SampleFormat[] sampleFormats;
+    private Executor conversionExecutor;
+    private int maxFramesInFlight;
+    private boolean verifyChecksums;
+
+    // ColorModels are immutable and depend only on pixel format
+    private static final ColorModel BGR_COLOR_MODEL = new ComponentColorModel(
+            ColorSpace.getInstance(ColorSpace.CS_sRGB), new int[]{8, 8, 8}, false, false,
+            Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+    private static final ColorModel ABGR_COLOR_MODEL = new ComponentColorModel(
+            ColorSpace.getInstance(ColorSpace.CS_sRGB), new int[]{8, 8, 8, 8}, true, false,
+            Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NutFrameConsumer.class);
 
     public NutFrameConsumer(FrameConsumer frameConsumer, boolean alpha) {
+        this(frameConsumer, alpha, null);
+    }
+
+    /**
+     * @param frameConsumer frame consumer
+     * @param alpha         whether video has alpha channel
+     * @param bufferPool    pool to read frame data to, if null data is allocated for every frame
+     * @see Frame#release()
+     */
+    public NutFrameConsumer(FrameConsumer frameConsumer, boolean alpha, BufferPool bufferPool) {
+        this(frameConsumer, alpha, bufferPool, false);
+    }
+
+    /**
+     * @param frameConsumer frame consumer
+     * @param alpha         whether video has alpha channel
+     * @param bufferPool    pool to read frame data to, if null data is allocated for every frame
+     * @param recycleImages whether to reuse images of released frames, overrides bufferPool
+     * @see Frame#release()
+     */
+    public NutFrameConsumer(FrameConsumer frameConsumer, boolean alpha, BufferPool bufferPool, boolean recycleImages) {
+        this(frameConsumer, alpha, null, bufferPool, recycleImages);
+    }
+
+    /**
+     * Creates consumer which passes video frames as {@link RawImage}s instead of BufferedImages.
+     *
+     * @param frameConsumer frame consumer
+     * @param pixelFormat   pixel format requested from ffmpeg
+     * @param bufferPool    pool to read frame data to, if null data is allocated for every frame
+     * @see Frame#release()
+     */
+    public NutFrameConsumer(FrameConsumer frameConsumer, PixelFormat pixelFormat, BufferPool bufferPool) {
+        this(frameConsumer, false, pixelFormat, bufferPool, false);
+    }
+
+    private NutFrameConsumer(FrameConsumer frameConsumer, boolean alpha, PixelFormat pixelFormat,
+                             BufferPool bufferPool, boolean recycleImages) {
         this.frameConsumer = frameConsumer;
         this.alpha = alpha;
+        this.pixelFormat = pixelFormat;
+        if (recycleImages) {
+            this.imagePool = new ImagePool();
+            this.bufferPool = imagePool;
+        } else {
+            this.imagePool = null;
+            this.bufferPool = bufferPool;
+        }
+    }
+
+    /**
+     * Pass audio frames as {@link RawSamples} backed by frame data instead of int samples.
+     *
+     * @param sampleFormat sample format requested from ffmpeg, null to pass int samples
+     * @return this
+     */
+    public NutFrameConsumer setSampleFormat(SampleFormat sampleFormat) {
+        this.sampleFormat = sampleFormat;
+        return this;
+    }
+
+    /**
+     * Convert NutFrames to Frames (wrap pixels and samples) with provided executor, while
+     * the reading thread parses next NutFrames. Frames are passed to FrameConsumer in stream order,
+     * by the reading thread.
+     *
+     * @param executor          executor to convert frames with, null to convert in reading thread
+     * @param maxFramesInFlight max number of frames being converted, reading blocks when it's reached
+     * @return this
+     */
+    public NutFrameConsumer setConversionExecutor(Executor executor, int maxFramesInFlight) {
+        if (executor != null && maxFramesInFlight <= 0) {
+            throw new IllegalArgumentException("maxFramesInFlight must be positive: " + maxFramesInFlight);
+        }
+        this.conversionExecutor = executor;
+        this.maxFramesInFlight = maxFramesInFlight;
+        return this;
+    }
+
+    /**
+     * @param verifyChecksums true to fail on NUT checksum mismatch
+     * @return this
+     * @see NutReader#setVerifyChecksums(boolean)
+     */
+    public NutFrameConsumer setVerifyChecksums(boolean verifyChecksums) {
+        this.verifyChecksums = verifyChecksums;
+        return this;
     }
 
     @Override
@@ -55,31 +166,107 @@ public class NutFrameConsumer implements TcpOutput.Consumer {
 
     void read(InputStream input) throws IOException {
         NutInputStream stream = new NutInputStream(input);
-        NutReader nutReader = new NutReader(stream);
+        NutReader nutReader = new NutReader(stream, bufferPool);
+        nutReader.setVerifyChecksums(verifyChecksums);
 
         MainHeader mainHeader = nutReader.getMainHeader();
         StreamHeader[] streamHeaders = nutReader.getStreamHeaders();
         List<Stream> streams = parseTracks(mainHeader, streamHeaders);
+        if (pixelFormat == null) {
+            sampleModels = createSampleModels(streamHeaders);
+        } else {
+            pixelFormats = detectPixelFormats(streamHeaders);
+        }
+        if (sampleFormat != null) {
+            sampleFormats = detectSampleFormats(streamHeaders);
+        }
         frameConsumer.consumeStreams(streams);
 
         LOGGER.debug("Streams: {}", (Object) streamHeaders);
 
-        NutFrame nutFrame;
-        while ((nutFrame = nutReader.readFrame()) != null) {
-            LOGGER.trace("NutFrame: {}", nutFrame);
+        if (conversionExecutor == null) {
+            NutFrame nutFrame;
+            while ((nutFrame = nutReader.readFrame()) != null) {
+                LOGGER.trace("NutFrame: {}", nutFrame);
+                consume(convert(streamHeaders[nutFrame.streamId], nutFrame, takeRecycledImage(nutFrame)));
+            }
+        } else {
+            readInParallel(nutReader, streamHeaders);
+        }
+
+        frameConsumer.consume(null);
+    }
 
-            int trackNo = nutFrame.streamId;
-            Frame frame = parseFrame(streamHeaders[trackNo], nutFrame);
-            LOGGER.trace("Parsed frame: {}", frame);
+    /**
+     * Converts NutFrames with conversion executor. Conversion tasks are kept in the order NutFrames
+     * have been read, so frames are passed to FrameConsumer in the same order regardless of
+     * which task completes first.
+     */
+    private void readInParallel(NutReader nutReader, StreamHeader[] streamHeaders) throws IOException {
+        Deque<Conversion> inFlight = new ArrayDeque<>();
 
-            if (frame == null) {
-                continue;
+        try {
+            NutFrame nutFrame;
+            while ((nutFrame = nutReader.readFrame()) != null) {
+                LOGGER.trace("NutFrame: {}", nutFrame);
+
+                // Recycled image must be taken in reading thread, see ImagePool
+                Conversion conversion = new Conversion(streamHeaders[nutFrame.streamId], nutFrame,
+                        takeRecycledImage(nutFrame));
+                inFlight.add(conversion);
+                conversionExecutor.execute(conversion.task);
+
+                // Reading blocks only if max number of frames is being converted
+                while (inFlight.size() >= maxFramesInFlight
+                        || !inFlight.isEmpty() && inFlight.peek().task.isDone()) {
+                    consume(await(inFlight.poll().task));
+                }
+            }
+
+            while (!inFlight.isEmpty()) {
+                consume(await(inFlight.poll().task));
+            }
+        } finally {
+            // Reading failed or consumer stopped it: frames which won't be consumed are returned to pool
+            for (Conversion conversion : inFlight) {
+                conversion.discard();
             }
+        }
+    }
 
+    private static Frame await(FutureTask<Frame> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while waiting for frame conversion", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Frame conversion failed", e.getCause());
+        }
+    }
+
+    private void consume(Frame frame) {
+        if (frame != null) {
             frameConsumer.consume(frame);
         }
+    }
 
-        frameConsumer.consume(null);
+    private BufferedImage takeRecycledImage(NutFrame nutFrame) {
+        if (imagePool == null || nutFrame.data == null) {
+            return null;
+        }
+
+        return imagePool.takeImage(nutFrame.data);
+    }
+
+    private Frame convert(StreamHeader streamHeader, NutFrame nutFrame, BufferedImage recycledImage) {
+        Frame frame = parseFrame(streamHeader, nutFrame, recycledImage);
+        LOGGER.trace("Parsed frame: {}", frame);
+
+        if (frame == null) {
+            release(nutFrame);
+        }
+
+        return frame;
     }
 
     private static List<Stream> parseTracks(MainHeader mainHeader, StreamHeader[] streamHeaders) {
@@ -115,15 +302,90 @@ public class NutFrameConsumer implements TcpOutput.Consumer {
         return result;
     }
 
-    private Frame parseFrame(StreamHeader track, NutFrame frame) {
+    private SampleModel[] createSampleModels(StreamHeader[] streamHeaders) {
+        SampleModel[] result = new SampleModel[streamHeaders.length];
+
+        for (StreamHeader streamHeader : streamHeaders) {
+            if (streamHeader.streamType != StreamHeader.Type.VIDEO) {
+                continue;
+            }
+
+            int width = streamHeader.video.width;
+            int height = streamHeader.video.height;
+            if (!alpha) {
+                result[streamHeader.streamId] = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE,
+                        width, height, 3, width * 3, new int[]{2, 1, 0});
+            } else {
+                result[streamHeader.streamId] = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE,
+                        width, height, 4, width * 4, new int[]{3, 2, 1, 0});
+            }
+        }
+
+        return result;
+    }
+
+    private PixelFormat[] detectPixelFormats(StreamHeader[] streamHeaders) {
+        PixelFormat[] result = new PixelFormat[streamHeaders.length];
+
+        for (StreamHeader streamHeader : streamHeaders) {
+            if (streamHeader.streamType != StreamHeader.Type.VIDEO) {
+                continue;
+            }
+
+            PixelFormat detected = PixelFormat.fromFourcc(streamHeader.fourcc);
+            if (detected == null) {
+                throw new RuntimeException("Unsupported video fourcc: " + Arrays.toString(streamHeader.fourcc));
+            }
+            if (detected != pixelFormat) {
+                LOGGER.warn("Stream {} has pixel format {}, but {} was requested",
+                        streamHeader.streamId, detected, pixelFormat);
+            }
+            result[streamHeader.streamId] = detected;
+        }
+
+        return result;
+    }
+
+    private SampleFormat[] detectSampleFormats(StreamHeader[] streamHeaders) {
+        SampleFormat[] result = new SampleFormat[streamHeaders.length];
+
+        for (StreamHeader streamHeader : streamHeaders) {
+            if (streamHeader.streamType != StreamHeader.Type.AUDIO) {
+                continue;
+            }
+
+            SampleFormat detected = SampleFormat.fromFourcc(streamHeader.fourcc);
+            if (detected == null) {
+                throw new RuntimeException("Unsupported audio fourcc: " + Arrays.toString(streamHeader.fourcc));
+            }
+            if (detected != sampleFormat) {
+                LOGGER.warn("Stream {} has sample format {}, but {} was requested",
+                        streamHeader.streamId, detected, sampleFormat);
+            }
+            result[streamHeader.streamId] = detected;
+        }
+
+        return result;
+    }
+
+    private Frame parseFrame(StreamHeader track, NutFrame frame, BufferedImage recycledImage) {
         if (frame == null || frame.data == null || frame.data.length == 0 || frame.eor) {
             return null;
         }
 
-        BufferedImage image = null;
-        int[] samples = null;
+        if (track.streamType == StreamHeader.Type.VIDEO && pixelFormat != null) {
+            PixelFormat streamPixelFormat = pixelFormats[track.streamId];
+            int width = track.video.width;
+            int height = track.video.height;
+
+            if (streamPixelFormat.getFrameSize(width, height) != frame.data.length) {
+                return null;
+            }
 
-        if (track.streamType == StreamHeader.Type.VIDEO) {
+            RawImage rawImage = RawImage.wrap(streamPixelFormat, width, height, ByteBuffer.wrap(frame.data));
+            return new Frame(track.streamId, frame.pts, null, null, rawImage, null,
+                    createReleaseAction(null, frame.data));
+        } else if (track.streamType == StreamHeader.Type.VIDEO) {
             int width = track.video.width;
             int height = track.video.height;
 
@@ -133,47 +395,151 @@ public class NutFrameConsumer implements TcpOutput.Consumer {
                 return null;
             }
 
-            DataBuffer buffer = new DataBufferByte(frame.data, frame.data.length);
-            ColorSpace cs = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+            // Images are recycled by data size, so recycled image may belong to another stream
+            // with the same frame size but different dimensions
+            BufferedImage image = recycledImage;
+            SampleModel sampleModel = sampleModels[track.streamId];
+            if (image == null || !sampleModel.equals(image.getSampleModel())) {
+                image = createImage(sampleModel, frame.data);
+            }
 
-            final ColorModel colorModel;
-            final WritableRaster raster;
+            // Image is backed by frame data, it's returned to pool with Frame.release()
+            return new Frame(track.streamId, frame.pts, image, null, null, null,
+                    createReleaseAction(image, frame.data));
+        } else if (track.streamType == StreamHeader.Type.AUDIO && sampleFormat != null) {
+            SampleFormat streamSampleFormat = sampleFormats[track.streamId];
+            int channels = track.audio.channelCount;
+            if (frame.data.length % (streamSampleFormat.getBytesPerSample() * channels) != 0) {
+                return null;
+            }
 
-            if (!alpha) {
-                int[] nBits = {8, 8, 8};
-                int[] bOffs = {2, 1, 0};
-                colorModel = new ComponentColorModel(cs, nBits, false, false,
-                        Transparency.OPAQUE,
-                        DataBuffer.TYPE_BYTE);
-                raster = Raster.createInterleavedRaster(buffer,
-                        width, height,
-                        width * 3, 3,
-                        bOffs, null);
-            } else {
-                int[] nBits = {8, 8, 8, 8};
-                int[] bOffs = {3, 2, 1, 0};
-                colorModel = new ComponentColorModel(cs, nBits, true, false,
-                        Transparency.TRANSLUCENT,
-                        DataBuffer.TYPE_BYTE);
-                raster = Raster.createInterleavedRaster(buffer,
-                        width, height,
-                        width * 4, 4,
-                        bOffs, null);
-            }
-
-            image = new BufferedImage(colorModel, raster, false, null);
+            // Samples are viewed in place, frame data is returned to pool with Frame.release()
+            RawSamples rawSamples = new RawSamples(streamSampleFormat, channels, ByteBuffer.wrap(frame.data));
+            return new Frame(track.streamId, frame.pts, null, null, null, rawSamples,
+                    createReleaseAction(null, frame.data));
         } else if (track.streamType == StreamHeader.Type.AUDIO) {
             ByteBuffer data = ByteBuffer.wrap(frame.data);
 
             IntBuffer intData = data.asIntBuffer();
-            samples = new int[intData.limit()];
+            int[] samples = new int[intData.limit()];
             intData.get(samples);
+            // Samples have been copied, frame data isn't needed anymore
+            release(frame);
+
+            return new Frame(track.streamId, frame.pts, samples);
         }
 
-        if (image != null || samples != null) {
-            return new Frame(track.streamId, frame.pts, image, samples);
+        return null;
+    }
+
+    private BufferedImage createImage(SampleModel sampleModel, byte[] data) {
+        DataBuffer buffer = new DataBufferByte(data, data.length);
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, buffer, null);
+        ColorModel colorModel = alpha ? ABGR_COLOR_MODEL : BGR_COLOR_MODEL;
+
+        return new BufferedImage(colorModel, raster, false, null);
+    }
+
+    private Runnable createReleaseAction(final BufferedImage image, final byte[] data) {
+        if (imagePool != null && image != null) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    imagePool.releaseImage(image);
+                }
+            };
+        }
+
+        if (bufferPool != null) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    bufferPool.release(data);
+                }
+            };
         }
 
         return null;
     }
+
+    private void release(NutFrame frame) {
+        if (bufferPool != null) {
+            bufferPool.release(frame.data);
+        }
+    }
+
+    /**
+     * Conversion of NutFrame in executor, which can be discarded before, while or after it runs.
+     * In any case memory taken for discarded frame is returned to pool exactly once.
+     */
+    private final class Conversion implements Callable<Frame> {
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int COMPLETED = 2;
+        private static final int DISCARDED = 3;
+
+        private final StreamHeader streamHeader;
+        private final NutFrame nutFrame;
+        private final BufferedImage recycledImage;
+        private final AtomicInteger state = new AtomicInteger(NEW);
+        private final FutureTask<Frame> task = new FutureTask<>(this);
+
+        Conversion(StreamHeader streamHeader, NutFrame nutFrame, BufferedImage recycledImage) {
+            this.streamHeader = streamHeader;
+            this.nutFrame = nutFrame;
+            this.recycledImage = recycledImage;
+        }
+
+        @Override
+        public Frame call() {
+            if (!state.compareAndSet(NEW, RUNNING)) {
+                return null;
+            }
+
+            Frame frame;
+            try {
+                frame = convert(streamHeader, nutFrame, recycledImage);
+            } catch (RuntimeException e) {
+                // Nothing else releases data of failed conversion, whether it's discarded or not
+                state.set(DISCARDED);
+                releaseUnconverted();
+                throw e;
+            }
+
+            if (!state.compareAndSet(RUNNING, COMPLETED)) {
+                // Discarded while running
+                if (frame != null) {
+                    frame.release();
+                }
+                return null;
+            }
+
+            return frame;
+        }
+
+        void discard() {
+            if (state.compareAndSet(NEW, DISCARDED)) {
+                releaseUnconverted();
+            } else if (!state.compareAndSet(RUNNING, DISCARDED)) {
+                // Completed, result is about to be set if it isn't yet
+                try {
+                    Frame frame = await(task);
+                    if (frame != null) {
+                        frame.release();
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to release discarded frame", e);
+                }
+            }
+        }
+
+        private void releaseUnconverted() {
+            if (recycledImage != null) {
+                // Recycled image is backed by frame data
+                imagePool.releaseImage(recycledImage);
+            } else {
+                release(nutFrame);
+            }
+        }
+    }
 }
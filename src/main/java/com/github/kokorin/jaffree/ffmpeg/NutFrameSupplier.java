@@ -31,11 +31,18 @@ import java.nio.ByteBuffer;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 public class NutFrameSupplier implements TcpInput.Supplier {
     private final FrameProducer producer;
     private final boolean alpha;
     private final Long frameOrderingBufferMillis;
+    private final SampleFormat sampleFormat;
+    private int pipelineDepth = 0;
+    private FramePipelineMetrics pipelineMetrics;
+    private Executor pipelineExecutor;
+    private Long frameOrderingBufferMaxBytes;
+    private FrameOrderingStats frameOrderingStats;
 
     private static final byte[] FOURCC_ABGR = {'A', 'B', 'G', 'R'};
     private static final byte[] FOURCC_BGR24 = {'B', 'G', 'R', 24};
@@ -50,9 +57,54 @@ public class NutFrameSupplier implements TcpInput.Supplier {
     }
 
     public NutFrameSupplier(FrameProducer producer, boolean alpha, Long frameOrderingBufferMillis) {
+        this(producer, alpha, frameOrderingBufferMillis, null);
+    }
+
+    /**
+     * @param producer                  frame producer
+     * @param alpha                     whether video has alpha channel
+     * @param frameOrderingBufferMillis frame ordering buffer, may be null
+     * @param sampleFormat              sample format of audio streams without explicit one, if null
+     *                                  int samples are expected
+     */
+    public NutFrameSupplier(FrameProducer producer, boolean alpha, Long frameOrderingBufferMillis,
+                            SampleFormat sampleFormat) {
         this.producer = producer;
         this.alpha = alpha;
         this.frameOrderingBufferMillis = frameOrderingBufferMillis;
+        this.sampleFormat = sampleFormat;
+    }
+
+    /**
+     * Produce frames in a separate thread while previous frames are written to ffmpeg.
+     *
+     * @param depth    max number of produced frames waiting to be written, 0 to produce and write
+     *                 frames in the same thread
+     * @param metrics  metrics to update, may be null
+     * @param executor executor to run producer with,
+     *                 {@link com.github.kokorin.jaffree.process.HelperExecutors#getDefault()} is used if null
+     * @return this
+     */
+    public NutFrameSupplier setPipeline(int depth, FramePipelineMetrics metrics, Executor executor) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("Pipeline depth must not be negative: " + depth);
+        }
+        this.pipelineDepth = depth;
+        this.pipelineMetrics = metrics;
+        this.pipelineExecutor = executor;
+        return this;
+    }
+
+    /**
+     * @param maxBytes max size of frame data in frame ordering buffer, null for no limit
+     * @param stats    statistics to update when writing is finished, may be null
+     * @return this
+     * @see NutWriter#setFrameOrderingBufferMaxBytes(long)
+     */
+    public NutFrameSupplier setFrameOrderingBuffer(Long maxBytes, FrameOrderingStats stats) {
+        this.frameOrderingBufferMaxBytes = maxBytes;
+        this.frameOrderingStats = stats;
+        return this;
     }
 
     @Override
@@ -62,8 +114,20 @@ public class NutFrameSupplier implements TcpInput.Supplier {
             if (frameOrderingBufferMillis != null) {
                 writer.setFrameOrderingBufferMillis(frameOrderingBufferMillis);
             }
-            write(writer);
-            writer.writeFooter();
+            if (frameOrderingBufferMaxBytes != null) {
+                writer.setFrameOrderingBufferMaxBytes(frameOrderingBufferMaxBytes);
+            }
+            try {
+                write(writer);
+                writer.writeFooter();
+            } finally {
+                // Stats must be set before ffmpeg gets end of input, otherwise they may be not ready
+                // when ffmpeg execution completes
+                if (frameOrderingStats != null) {
+                    frameOrderingStats.set(writer.getPeakBufferedBytes(), writer.getPeakBufferedFrames(),
+                            writer.getForcedFlushCount());
+                }
+            }
         } catch (Exception e) {
             throw new RuntimeException("Write failed", e);
         }
@@ -71,11 +135,30 @@ public class NutFrameSupplier implements TcpInput.Supplier {
 
     // package private for test
     void write(NutWriter writer) throws IOException {
+        if (pipelineDepth == 0) {
+            write(writer, producer);
+            return;
+        }
+
+        FramePipelineMetrics metrics = pipelineMetrics;
+        if (metrics == null) {
+            metrics = new FramePipelineMetrics();
+        }
+        try (PipelinedFrameProducer pipeline = new PipelinedFrameProducer(producer, pipelineDepth, metrics,
+                pipelineExecutor)) {
+            write(writer, pipeline);
+        }
+        LOGGER.debug("Pipeline: {}", metrics);
+    }
+
+    private void write(NutWriter writer, FrameProducer producer) throws IOException {
         List<Stream> tracks = producer.produceStreams();
         LOGGER.debug("Streams: {}", tracks.toArray());
 
         StreamHeader[] streamHeaders = new StreamHeader[tracks.size()];
         Rational[] timebases = new Rational[tracks.size()];
+        PixelFormat[] pixelFormats = new PixelFormat[tracks.size()];
+        SampleFormat[] sampleFormats = new SampleFormat[tracks.size()];
 
         for (int i = 0; i < streamHeaders.length; i++) {
             Stream stream = tracks.get(i);
@@ -91,10 +174,15 @@ public class NutFrameSupplier implements TcpInput.Supplier {
                 case VIDEO:
                     Objects.requireNonNull(stream.getWidth(), "Width must be specified");
                     Objects.requireNonNull(stream.getHeight(), "Height must be specified");
+                    pixelFormats[i] = stream.getPixelFormat();
+                    byte[] fourcc = alpha ? FOURCC_ABGR : FOURCC_BGR24;
+                    if (pixelFormats[i] != null) {
+                        fourcc = pixelFormats[i].getFourcc();
+                    }
                     streamHeader = new StreamHeader(
                             stream.getId(),
                             StreamHeader.Type.VIDEO,
-                            alpha ? FOURCC_ABGR : FOURCC_BGR24,
+                            fourcc,
                             i,
                             0,
                             60_000,
@@ -114,10 +202,14 @@ public class NutFrameSupplier implements TcpInput.Supplier {
                 case AUDIO:
                     Objects.requireNonNull(stream.getSampleRate(), "Samplerate must be specified");
                     Objects.requireNonNull(stream.getChannels(), "Number of channels must be specified");
+                    sampleFormats[i] = stream.getSampleFormat();
+                    if (sampleFormats[i] == null) {
+                        sampleFormats[i] = sampleFormat;
+                    }
                     streamHeader = new StreamHeader(
                             stream.getId(),
                             StreamHeader.Type.AUDIO,
-                            FOURCC_PCM_S32BE,
+                            sampleFormats[i] != null ? sampleFormats[i].getFourcc() : FOURCC_PCM_S32BE,
                             i,
                             0,
                             60_000,
@@ -168,6 +260,12 @@ public class NutFrameSupplier implements TcpInput.Supplier {
             StreamHeader streamHeader = streamHeaders[frame.getStreamId()];
             switch (streamHeader.streamType) {
                 case VIDEO:
+                    PixelFormat pixelFormat = pixelFormats[frame.getStreamId()];
+                    if (pixelFormat != null) {
+                        data = toNutData(frame.getRawImage(), pixelFormat, streamHeader.video);
+                        break;
+                    }
+
                     BufferedImage image = frame.getImage();
 
                     if (alpha && BufferedImage.TYPE_4BYTE_ABGR != image.getType()) {
@@ -181,6 +279,12 @@ public class NutFrameSupplier implements TcpInput.Supplier {
                     break;
 
                 case AUDIO:
+                    SampleFormat streamSampleFormat = sampleFormats[frame.getStreamId()];
+                    if (streamSampleFormat != null) {
+                        data = toNutData(frame.getRawSamples(), streamSampleFormat, streamHeader.audio);
+                        break;
+                    }
+
                     data = new byte[frame.getSamples().length * 4];
                     ByteBuffer.wrap(data).asIntBuffer().put(frame.getSamples());
                     break;
@@ -203,4 +307,70 @@ public class NutFrameSupplier implements TcpInput.Supplier {
             writer.writeFrame(nutFrame);
         }
     }
+
+    /**
+     * Returns RawImage planes tightly packed one after another as ffmpeg expects them.
+     * Buffer content is copied unless it's already packed and backed by array of exact size.
+     */
+    static byte[] toNutData(RawImage rawImage, PixelFormat pixelFormat, StreamHeader.Video video) {
+        if (rawImage == null) {
+            throw new RuntimeException("Frame must contain RawImage in " + pixelFormat);
+        }
+        if (rawImage.getPixelFormat() != pixelFormat) {
+            throw new RuntimeException("Pixel format of RawImage must be " + pixelFormat + ": " + rawImage);
+        }
+        if (rawImage.getWidth() != video.width || rawImage.getHeight() != video.height) {
+            throw new RuntimeException("RawImage dimensions must be " + video.width + "x" + video.height
+                    + ": " + rawImage);
+        }
+
+        ByteBuffer buffer = rawImage.getBuffer();
+        int frameSize = pixelFormat.getFrameSize(video.width, video.height);
+        if (rawImage.isPacked() && buffer.hasArray() && buffer.arrayOffset() == 0
+                && buffer.array().length == frameSize) {
+            return buffer.array();
+        }
+
+        byte[] result = new byte[frameSize];
+        int position = 0;
+        for (int plane = 0; plane < pixelFormat.getPlaneCount(); plane++) {
+            int rowBytes = pixelFormat.getPlaneRowBytes(plane, video.width);
+            int rows = pixelFormat.getPlaneHeight(plane, video.height);
+            ByteBuffer source = buffer.duplicate();
+            for (int row = 0; row < rows; row++) {
+                int rowStart = rawImage.getOffset(plane) + row * rawImage.getStride(plane);
+                source.limit(rowStart + rowBytes);
+                source.position(rowStart);
+                source.get(result, position, rowBytes);
+                position += rowBytes;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns RawSamples content as ffmpeg expects it.
+     * Buffer content is copied unless it's backed by array of exact size.
+     */
+    static byte[] toNutData(RawSamples rawSamples, SampleFormat sampleFormat, StreamHeader.Audio audio) {
+        if (rawSamples == null) {
+            throw new RuntimeException("Frame must contain RawSamples in " + sampleFormat);
+        }
+        if (rawSamples.getSampleFormat() != sampleFormat) {
+            throw new RuntimeException("Sample format of RawSamples must be " + sampleFormat + ": " + rawSamples);
+        }
+        if (rawSamples.getChannels() != audio.channelCount) {
+            throw new RuntimeException("RawSamples must have " + audio.channelCount + " channels: " + rawSamples);
+        }
+
+        ByteBuffer buffer = rawSamples.getBuffer();
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.remaining()) {
+            return buffer.array();
+        }
+
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        return result;
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the last lines of ffmpeg output bounded both by line count and by total length.
+ * <p>
+ * Lines are kept by reference: they have already been decoded to be parsed, so nothing is copied
+ * until {@link #getLines()} is invoked.
+ */
+final class OutputTail {
+    private final String[] lines;
+    private final int maxChars;
+
+    private int first = 0;
+    private int count = 0;
+    private int chars = 0;
+
+    OutputTail(int maxLines, int maxChars) {
+        if (maxLines <= 0 || maxChars <= 0) {
+            throw new IllegalArgumentException("Tail size must be positive: " + maxLines + " lines, " + maxChars + " chars");
+        }
+
+        this.lines = new String[maxLines];
+        this.maxChars = maxChars;
+    }
+
+    void add(String line) {
+        if (line.length() > maxChars) {
+            line = line.substring(line.length() - maxChars);
+        }
+
+        while (count == lines.length || chars + line.length() > maxChars) {
+            chars -= lines[first].length();
+            lines[first] = null;
+            first = (first + 1) % lines.length;
+            count--;
+        }
+
+        lines[(first + count) % lines.length] = line;
+        count++;
+        chars += line.length();
+    }
+
+    List<String> getLines() {
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(lines[(first + i) % lines.length]);
+        }
+
+        return result;
+    }
+}
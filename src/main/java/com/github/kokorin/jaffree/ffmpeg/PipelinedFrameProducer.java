@@ -0,0 +1,168 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import com.github.kokorin.jaffree.process.HelperExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs wrapped {@link FrameProducer} in a separate thread, so frames are produced while previous ones
+ * are written to ffmpeg. Frames are passed through a bounded queue.
+ * <p>
+ * Wrapped producer is still invoked by a single thread, so it doesn't have to be thread-safe.
+ */
+class PipelinedFrameProducer implements FrameProducer, Closeable {
+    private final FrameProducer producer;
+    private final BlockingQueue<Object> queue;
+    private final FramePipelineMetrics metrics;
+    private final Executor executor;
+
+    private boolean started = false;
+    private boolean ended = false;
+    private volatile boolean closed = false;
+
+    private static final Object END_OF_FRAMES = new Object();
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelinedFrameProducer.class);
+
+    /**
+     * @param producer   producer to run in separate thread
+     * @param queueDepth max number of produced frames waiting to be written
+     * @param metrics    metrics to update
+     * @param executor   executor to run producer with, {@link HelperExecutors#getDefault()} is used if null
+     */
+    PipelinedFrameProducer(FrameProducer producer, int queueDepth, FramePipelineMetrics metrics,
+                           Executor executor) {
+        if (queueDepth <= 0) {
+            throw new IllegalArgumentException("Queue depth must be positive: " + queueDepth);
+        }
+
+        this.producer = producer;
+        this.queue = new ArrayBlockingQueue<>(queueDepth);
+        this.metrics = metrics;
+        if (executor == null) {
+            executor = HelperExecutors.getDefault();
+        }
+        this.executor = executor;
+        metrics.setQueueDepth(queueDepth);
+    }
+
+    @Override
+    public List<Stream> produceStreams() {
+        return producer.produceStreams();
+    }
+
+    @Override
+    public Frame produce() {
+        if (ended) {
+            return null;
+        }
+        if (!started) {
+            started = true;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runProducer();
+                }
+            });
+        }
+
+        int size = queue.size();
+        long blockedNanos = 0;
+        Object item = queue.poll();
+        if (item == null) {
+            long start = System.nanoTime();
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Interrupted while waiting for produced frame", e);
+            }
+            blockedNanos = System.nanoTime() - start;
+            size = 1;
+        }
+
+        if (item == END_OF_FRAMES) {
+            ended = true;
+            return null;
+        }
+        if (item instanceof Throwable) {
+            ended = true;
+            throw new RuntimeException("Frame producer failed", (Throwable) item);
+        }
+
+        metrics.onTake(size, blockedNanos);
+        return (Frame) item;
+    }
+
+    /**
+     * Stops producing thread, frames which haven't been written yet are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+    }
+
+    private void runProducer() {
+        try {
+            Frame frame;
+            do {
+                frame = producer.produce();
+                if (!put(frame != null ? frame : END_OF_FRAMES)) {
+                    LOGGER.debug("Pipeline has been closed, stopping frame production");
+                    return;
+                }
+            } while (frame != null);
+        } catch (Throwable e) {
+            // Writer must be notified, otherwise it waits for frames forever
+            put(e);
+        }
+    }
+
+    private boolean put(Object item) {
+        if (queue.offer(item)) {
+            metrics.onPut(queue.size(), 0);
+            return true;
+        }
+
+        long start = System.nanoTime();
+        try {
+            // Writer may fail and never take frames again, so closed flag is checked periodically
+            while (!closed) {
+                if (queue.offer(item, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    metrics.onPut(queue.size(), System.nanoTime() - start);
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for free space in frame queue");
+            Thread.currentThread().interrupt();
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import java.util.Arrays;
+
+/**
+ * Raw video pixel formats which can be passed to and from ffmpeg via NUT.
+ * <p>
+ * Planes are stored one after another without padding, chroma planes of planar YUV formats
+ * are subsampled by {@code 1 << chromaShift} with width and height rounded up.
+ */
+public enum PixelFormat {
+    BGR24("bgr24", new int[]{3}, 0, 0, fourcc('B', 'G', 'R', 24)),
+    RGB24("rgb24", new int[]{3}, 0, 0, fourcc('R', 'G', 'B', 24)),
+    ABGR("abgr", new int[]{4}, 0, 0, fourcc('A', 'B', 'G', 'R')),
+    ARGB("argb", new int[]{4}, 0, 0, fourcc('A', 'R', 'G', 'B')),
+    RGBA("rgba", new int[]{4}, 0, 0, fourcc('R', 'G', 'B', 'A')),
+    BGRA("bgra", new int[]{4}, 0, 0, fourcc('B', 'G', 'R', 'A')),
+    GRAY8("gray", new int[]{1}, 0, 0,
+            fourcc('Y', '1', 0, 8), fourcc('Y', '8', '0', '0'), fourcc('Y', '8', ' ', ' '), fourcc('G', 'R', 'E', 'Y')),
+    YUV420P("yuv420p", new int[]{1, 1, 1}, 1, 1,
+            fourcc('Y', '3', 11, 8), fourcc('I', '4', '2', '0'), fourcc('I', 'Y', 'U', 'V')),
+    YUV422P("yuv422p", new int[]{1, 1, 1}, 1, 0,
+            fourcc('Y', '3', 10, 8), fourcc('4', '2', '2', 'P')),
+    YUV444P("yuv444p", new int[]{1, 1, 1}, 0, 0,
+            fourcc('Y', '3', 0, 8), fourcc('4', '4', '4', 'P')),
+    NV12("nv12", new int[]{1, 2}, 1, 1, fourcc('N', 'V', '1', '2'));
+
+    private final String ffmpegName;
+    private final int[] bytesPerPixel;
+    private final int chromaShiftX;
+    private final int chromaShiftY;
+    private final byte[][] fourccs;
+
+    PixelFormat(String ffmpegName, int[] bytesPerPixel, int chromaShiftX, int chromaShiftY, byte[]... fourccs) {
+        this.ffmpegName = ffmpegName;
+        this.bytesPerPixel = bytesPerPixel;
+        this.chromaShiftX = chromaShiftX;
+        this.chromaShiftY = chromaShiftY;
+        this.fourccs = fourccs;
+    }
+
+    /**
+     * @return name to pass to ffmpeg with -pix_fmt
+     */
+    public String getFfmpegName() {
+        return ffmpegName;
+    }
+
+    /**
+     * @return fourcc which is written to NUT stream header
+     */
+    public byte[] getFourcc() {
+        return fourccs[0].clone();
+    }
+
+    public int getPlaneCount() {
+        return bytesPerPixel.length;
+    }
+
+    /**
+     * @param plane plane index
+     * @param width image width in pixels
+     * @return length of one row of the plane in bytes (without padding)
+     */
+    public int getPlaneRowBytes(int plane, int width) {
+        int shift = plane == 0 ? 0 : chromaShiftX;
+        return ceilShift(width, shift) * bytesPerPixel[plane];
+    }
+
+    /**
+     * @param plane  plane index
+     * @param height image height in pixels
+     * @return number of rows in the plane
+     */
+    public int getPlaneHeight(int plane, int height) {
+        int shift = plane == 0 ? 0 : chromaShiftY;
+        return ceilShift(height, shift);
+    }
+
+    /**
+     * @param width  image width in pixels
+     * @param height image height in pixels
+     * @return size of tightly packed image in bytes
+     */
+    public int getFrameSize(int width, int height) {
+        int result = 0;
+        for (int plane = 0; plane < bytesPerPixel.length; plane++) {
+            result += getPlaneRowBytes(plane, width) * getPlaneHeight(plane, height);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param fourcc NUT stream fourcc
+     * @return pixel format or null if fourcc is unknown
+     */
+    public static PixelFormat fromFourcc(byte[] fourcc) {
+        for (PixelFormat pixelFormat : values()) {
+            for (byte[] candidate : pixelFormat.fourccs) {
+                if (Arrays.equals(candidate, fourcc)) {
+                    return pixelFormat;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static int ceilShift(int value, int shift) {
+        return -((-value) >> shift);
+    }
+
+    private static byte[] fourcc(int a, int b, int c, int d) {
+        return new byte[]{(byte) a, (byte) b, (byte) c, (byte) d};
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import com.github.kokorin.jaffree.process.StdReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loopback TCP endpoint for ffmpeg {@code -progress} option.
+ * <p>
+ * ffmpeg connects to it and periodically writes blocks of key=value lines, each block ends
+ * with {@code progress=continue} or {@code progress=end}. Every block is reported
+ * to {@link ProgressListener} as {@link FFmpegProgress}.
+ */
+final class ProgressChannel implements Runnable {
+    private final ProgressListener progressListener;
+    private final ServerSocket serverSocket;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProgressChannel.class);
+
+    ProgressChannel(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        try {
+            this.serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to allocate socket", e);
+        }
+    }
+
+    /**
+     * @return URL to pass to ffmpeg with {@code -progress} option
+     */
+    String getUrl() {
+        return "tcp://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        LOGGER.debug("Accepting progress connection: {}", serverSocket);
+        try (ServerSocket toClose = serverSocket;
+             Socket socket = toClose.accept();
+             InputStream input = socket.getInputStream()) {
+            read(input);
+        } catch (SocketException e) {
+            // ffmpeg exited without connecting (e.g. due to bad arguments)
+            // and server socket was closed by closeAfter()
+            LOGGER.debug("Progress channel has been closed: {}", e.getMessage());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read ffmpeg progress", e);
+        }
+    }
+
+    /**
+     * Closes server socket once ffmpeg stderr has been read, which means ffmpeg has exited.
+     * <p>
+     * Otherwise {@link #run()} would block forever if ffmpeg exited before connecting.
+     *
+     * @param stdErrReader reader to wrap
+     * @return wrapped reader
+     */
+    StdReader<FFmpegResult> closeAfter(final StdReader<FFmpegResult> stdErrReader) {
+        return new StdReader<FFmpegResult>() {
+            @Override
+            public FFmpegResult read(InputStream stdOut) {
+                try {
+                    return stdErrReader.read(stdOut);
+                } finally {
+                    close();
+                }
+            }
+        };
+    }
+
+    void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close progress socket: {}", e.getMessage());
+        }
+    }
+
+    void read(InputStream input) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        Long frame = null;
+        Double fps = null;
+        Double q = null;
+        Long size = null;
+        Long timeMicros = null;
+        Long dup = null;
+        Long drop = null;
+        Double bitrate = null;
+        Double speed = null;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int eq = line.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            int end = line.length();
+            int valueStart = eq + 1;
+
+            if (keyEquals(line, eq, "progress")) {
+                FFmpegProgress progress = new FFmpegProgress(frame, fps, q, size,
+                        timeMicros != null ? timeMicros / 1000 : null, dup, drop, bitrate, speed);
+                if (progressListener != null) {
+                    progressListener.onProgress(progress);
+                }
+                if (keyEquals(line, valueStart, end, "end")) {
+                    // Final block, ffmpeg closes connection after it
+                    return;
+                }
+
+                frame = null;
+                fps = null;
+                q = null;
+                size = null;
+                timeMicros = null;
+                dup = null;
+                drop = null;
+                bitrate = null;
+                speed = null;
+            } else if (keyEquals(line, eq, "frame")) {
+                frame = FFmpegOutputParser.parseLong(line, valueStart, end);
+            } else if (keyEquals(line, eq, "fps")) {
+                fps = FFmpegOutputParser.parseDouble(line, valueStart, end);
+            } else if (keyEquals(line, eq, "total_size")) {
+                size = FFmpegOutputParser.parseLong(line, valueStart, end);
+            } else if (keyEquals(line, eq, "out_time_us") || keyEquals(line, eq, "out_time_ms")) {
+                // out_time_ms is actually in microseconds, it's kept by ffmpeg for compatibility
+                timeMicros = FFmpegOutputParser.parseLong(line, valueStart, end);
+            } else if (keyEquals(line, eq, "dup_frames")) {
+                dup = FFmpegOutputParser.parseLong(line, valueStart, end);
+            } else if (keyEquals(line, eq, "drop_frames")) {
+                drop = FFmpegOutputParser.parseLong(line, valueStart, end);
+            } else if (keyEquals(line, eq, "bitrate")) {
+                bitrate = FFmpegOutputParser.parseDouble(line, valueStart, stripSuffix(line, valueStart, end, "kbits/s"));
+            } else if (keyEquals(line, eq, "speed")) {
+                speed = FFmpegOutputParser.parseDouble(line, valueStart, stripSuffix(line, valueStart, end, "x"));
+            } else if (q == null && line.startsWith("stream_") && line.startsWith("_q", eq - 2)) {
+                // stream_<file>_<stream>_q, the first output stream is reported like in stderr
+                q = FFmpegOutputParser.parseDouble(line, valueStart, end);
+            }
+        }
+    }
+
+    private static boolean keyEquals(String line, int eq, String key) {
+        return keyEquals(line, 0, eq, key);
+    }
+
+    private static boolean keyEquals(String line, int start, int end, String key) {
+        return end - start == key.length() && line.startsWith(key, start);
+    }
+
+    private static int stripSuffix(String line, int start, int end, String suffix) {
+        int suffixStart = end - suffix.length();
+        if (suffixStart >= start && line.startsWith(suffix, suffixStart)) {
+            return suffixStart;
+        }
+
+        return end;
+    }
+}
@@ -21,6 +21,9 @@ public interface ProgressListener {
     /**
      * Attention: this method is not thread safe and may be invoked in different thread.
      * Consider using synchronization.
+     * <p>
+     * It's invoked in the thread which reads ffmpeg output, slow listener blocks ffmpeg.
+     * Consider using {@link CoalescingProgressListener}.
      *
      * @param progress ffmpeg progress
      */
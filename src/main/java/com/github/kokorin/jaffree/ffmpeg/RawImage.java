@@ -0,0 +1,161 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Video frame data in one of {@link PixelFormat}s, without AWT.
+ * <p>
+ * All planes share one {@link ByteBuffer} (either heap or direct), every plane is described by its offset
+ * from the beginning of the buffer and its stride (distance between rows in bytes), which may include padding.
+ */
+public class RawImage {
+    private final PixelFormat pixelFormat;
+    private final int width;
+    private final int height;
+    private final ByteBuffer buffer;
+    private final int[] strides;
+    private final int[] offsets;
+
+    public RawImage(PixelFormat pixelFormat, int width, int height, ByteBuffer buffer, int[] strides, int[] offsets) {
+        int planeCount = pixelFormat.getPlaneCount();
+        if (strides.length != planeCount || offsets.length != planeCount) {
+            throw new IllegalArgumentException(pixelFormat + " requires " + planeCount + " strides and offsets");
+        }
+
+        for (int plane = 0; plane < planeCount; plane++) {
+            int rowBytes = pixelFormat.getPlaneRowBytes(plane, width);
+            int rows = pixelFormat.getPlaneHeight(plane, height);
+            if (strides[plane] < rowBytes) {
+                throw new IllegalArgumentException("Stride of plane " + plane + " is less than row length: "
+                        + strides[plane] + " < " + rowBytes);
+            }
+            if (offsets[plane] < 0 || (long) offsets[plane] + (long) strides[plane] * (rows - 1) + rowBytes > buffer.limit()) {
+                throw new IllegalArgumentException("Plane " + plane + " doesn't fit into buffer");
+            }
+        }
+
+        this.pixelFormat = pixelFormat;
+        this.width = width;
+        this.height = height;
+        this.buffer = buffer;
+        this.strides = strides.clone();
+        this.offsets = offsets.clone();
+    }
+
+    public PixelFormat getPixelFormat() {
+        return pixelFormat;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return buffer with all planes, plane offsets are absolute (independent of buffer position)
+     */
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getStride(int plane) {
+        return strides[plane];
+    }
+
+    public int getOffset(int plane) {
+        return offsets[plane];
+    }
+
+    /**
+     * @param plane plane index
+     * @return buffer which shares content with this image and spans exactly specified plane
+     */
+    public ByteBuffer getPlane(int plane) {
+        int rows = pixelFormat.getPlaneHeight(plane, height);
+        int length = strides[plane] * (rows - 1) + pixelFormat.getPlaneRowBytes(plane, width);
+
+        ByteBuffer result = buffer.duplicate();
+        result.limit(offsets[plane] + length);
+        result.position(offsets[plane]);
+        return result.slice();
+    }
+
+    /**
+     * @return true if planes follow each other from the beginning of the buffer without any padding
+     */
+    public boolean isPacked() {
+        int expectedOffset = 0;
+        for (int plane = 0; plane < strides.length; plane++) {
+            if (offsets[plane] != expectedOffset || strides[plane] != pixelFormat.getPlaneRowBytes(plane, width)) {
+                return false;
+            }
+            expectedOffset += strides[plane] * pixelFormat.getPlaneHeight(plane, height);
+        }
+
+        return true;
+    }
+
+    /**
+     * Wraps buffer containing tightly packed planes
+     *
+     * @param pixelFormat pixel format
+     * @param width       width
+     * @param height      height
+     * @param buffer      buffer
+     * @return raw image
+     */
+    public static RawImage wrap(PixelFormat pixelFormat, int width, int height, ByteBuffer buffer) {
+        int planeCount = pixelFormat.getPlaneCount();
+        int[] strides = new int[planeCount];
+        int[] offsets = new int[planeCount];
+
+        int offset = 0;
+        for (int plane = 0; plane < planeCount; plane++) {
+            strides[plane] = pixelFormat.getPlaneRowBytes(plane, width);
+            offsets[plane] = offset;
+            offset += strides[plane] * pixelFormat.getPlaneHeight(plane, height);
+        }
+
+        return new RawImage(pixelFormat, width, height, buffer, strides, offsets);
+    }
+
+    public static RawImage allocate(PixelFormat pixelFormat, int width, int height) {
+        return wrap(pixelFormat, width, height, ByteBuffer.allocate(pixelFormat.getFrameSize(width, height)));
+    }
+
+    public static RawImage allocateDirect(PixelFormat pixelFormat, int width, int height) {
+        return wrap(pixelFormat, width, height, ByteBuffer.allocateDirect(pixelFormat.getFrameSize(width, height)));
+    }
+
+    @Override
+    public String toString() {
+        return "RawImage{" +
+                "pixelFormat=" + pixelFormat +
+                ", width=" + width +
+                ", height=" + height +
+                ", strides=" + Arrays.toString(strides) +
+                ", offsets=" + Arrays.toString(offsets) +
+                '}';
+    }
+}
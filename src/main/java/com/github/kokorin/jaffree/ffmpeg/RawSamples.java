@@ -0,0 +1,140 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Audio frame data in one of {@link SampleFormat}s.
+ * <p>
+ * Samples are kept in {@link ByteBuffer} as they are passed to or from ffmpeg, typed views
+ * share content with it, so samples are never copied.
+ */
+public class RawSamples {
+    private final SampleFormat sampleFormat;
+    private final int channels;
+    private final ByteBuffer buffer;
+
+    /**
+     * @param sampleFormat sample format
+     * @param channels     number of channels
+     * @param buffer       samples from position to limit
+     */
+    public RawSamples(SampleFormat sampleFormat, int channels, ByteBuffer buffer) {
+        if (channels <= 0) {
+            throw new IllegalArgumentException("Channel count must be positive: " + channels);
+        }
+        if (buffer.remaining() % (sampleFormat.getBytesPerSample() * channels) != 0) {
+            throw new IllegalArgumentException("Buffer must contain whole number of samples for every channel");
+        }
+
+        this.sampleFormat = sampleFormat;
+        this.channels = channels;
+        this.buffer = buffer.slice().order(sampleFormat.getByteOrder());
+    }
+
+    public SampleFormat getSampleFormat() {
+        return sampleFormat;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * @return number of samples in every channel
+     */
+    public int getSampleCount() {
+        return buffer.capacity() / sampleFormat.getBytesPerSample() / channels;
+    }
+
+    /**
+     * @return buffer with all samples in {@link SampleFormat#getByteOrder() sample format byte order}
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate().order(sampleFormat.getByteOrder());
+    }
+
+    /**
+     * @param channel channel index
+     * @return buffer with samples of specified channel, available only for planar formats
+     */
+    public ByteBuffer getChannelBuffer(int channel) {
+        if (!sampleFormat.isPlanar()) {
+            throw new IllegalStateException("Channels are interleaved in " + sampleFormat);
+        }
+        if (channel < 0 || channel >= channels) {
+            throw new IndexOutOfBoundsException("Channel " + channel + " of " + channels);
+        }
+
+        int channelBytes = buffer.capacity() / channels;
+        ByteBuffer result = buffer.duplicate();
+        result.position(channel * channelBytes);
+        result.limit((channel + 1) * channelBytes);
+        return result.slice().order(sampleFormat.getByteOrder());
+    }
+
+    public ShortBuffer asShortBuffer() {
+        checkSample(2, false);
+        return getBuffer().asShortBuffer();
+    }
+
+    public IntBuffer asIntBuffer() {
+        checkSample(4, false);
+        return getBuffer().asIntBuffer();
+    }
+
+    public FloatBuffer asFloatBuffer() {
+        checkSample(4, true);
+        return getBuffer().asFloatBuffer();
+    }
+
+    private void checkSample(int bytesPerSample, boolean floatingPoint) {
+        if (sampleFormat.getBytesPerSample() != bytesPerSample || sampleFormat.isFloatingPoint() != floatingPoint) {
+            throw new IllegalStateException("Samples can't be viewed as " + (floatingPoint ? "float" : "integer")
+                    + " of " + bytesPerSample + " bytes in " + sampleFormat);
+        }
+    }
+
+    /**
+     * Allocates buffer for specified number of samples in every channel
+     *
+     * @param sampleFormat sample format
+     * @param channels     number of channels
+     * @param sampleCount  number of samples in every channel
+     * @param direct       whether to allocate direct buffer
+     * @return raw samples
+     */
+    public static RawSamples allocate(SampleFormat sampleFormat, int channels, int sampleCount, boolean direct) {
+        int size = sampleFormat.getBytesPerSample() * channels * sampleCount;
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        return new RawSamples(sampleFormat, channels, buffer);
+    }
+
+    @Override
+    public String toString() {
+        return "RawSamples{" +
+                "sampleFormat=" + sampleFormat +
+                ", channels=" + channels +
+                ", samples=" + getSampleCount() +
+                '}';
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * PCM audio sample formats which can be passed to and from ffmpeg via NUT.
+ * <p>
+ * Interleaved formats store samples of all channels one after another, planar formats store
+ * all samples of the first channel, then all samples of the second one and so on.
+ */
+public enum SampleFormat {
+    S16LE("pcm_s16le", 2, ByteOrder.LITTLE_ENDIAN, false, false, fourcc('P', 'S', 'D', 16)),
+    S16BE("pcm_s16be", 2, ByteOrder.BIG_ENDIAN, false, false, fourcc(16, 'D', 'S', 'P')),
+    S32LE("pcm_s32le", 4, ByteOrder.LITTLE_ENDIAN, false, false, fourcc('P', 'S', 'D', 32)),
+    S32BE("pcm_s32be", 4, ByteOrder.BIG_ENDIAN, false, false, fourcc(32, 'D', 'S', 'P')),
+    F32LE("pcm_f32le", 4, ByteOrder.LITTLE_ENDIAN, true, false, fourcc('P', 'F', 'D', 32)),
+    F32BE("pcm_f32be", 4, ByteOrder.BIG_ENDIAN, true, false, fourcc(32, 'D', 'F', 'P')),
+    S16LE_PLANAR("pcm_s16le_planar", 2, ByteOrder.LITTLE_ENDIAN, false, true, fourcc('P', 'S', 'P', 16));
+
+    private final String codec;
+    private final int bytesPerSample;
+    private final ByteOrder byteOrder;
+    private final boolean floatingPoint;
+    private final boolean planar;
+    private final byte[] fourcc;
+
+    SampleFormat(String codec, int bytesPerSample, ByteOrder byteOrder, boolean floatingPoint, boolean planar,
+                 byte[] fourcc) {
+        this.codec = codec;
+        this.bytesPerSample = bytesPerSample;
+        this.byteOrder = byteOrder;
+        this.floatingPoint = floatingPoint;
+        this.planar = planar;
+        this.fourcc = fourcc;
+    }
+
+    /**
+     * @return ffmpeg audio codec which produces or consumes this format
+     */
+    public String getCodec() {
+        return codec;
+    }
+
+    public int getBytesPerSample() {
+        return bytesPerSample;
+    }
+
+    public ByteOrder getByteOrder() {
+        return byteOrder;
+    }
+
+    public boolean isFloatingPoint() {
+        return floatingPoint;
+    }
+
+    public boolean isPlanar() {
+        return planar;
+    }
+
+    /**
+     * @return fourcc which is written to NUT stream header
+     */
+    public byte[] getFourcc() {
+        return fourcc.clone();
+    }
+
+    /**
+     * @param fourcc NUT stream fourcc
+     * @return sample format or null if fourcc is unknown
+     */
+    public static SampleFormat fromFourcc(byte[] fourcc) {
+        for (SampleFormat sampleFormat : values()) {
+            if (Arrays.equals(sampleFormat.fourcc, fourcc)) {
+                return sampleFormat;
+            }
+        }
+
+        return null;
+    }
+
+    private static byte[] fourcc(int a, int b, int c, int d) {
+        return new byte[]{(byte) a, (byte) b, (byte) c, (byte) d};
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.ffmpeg;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a job submitted to {@link FFmpegScheduler}.
+ * <p>
+ * Cancelling a queued job removes it from the queue, cancelling a running job stops its process.
+ *
+ * @param <T> result type
+ */
+public class ScheduledJob<T> extends CompletableFuture<T> {
+    private final FFmpegScheduler scheduler;
+    private final Starter<T> starter;
+    private final int priority;
+    private final String tenant;
+    private final long submittedNanos = System.nanoTime();
+
+    private volatile Long startedNanos;
+    private volatile Long finishedNanos;
+    private volatile CompletableFuture<T> execution;
+
+    ScheduledJob(FFmpegScheduler scheduler, Starter<T> starter, int priority, String tenant) {
+        this.scheduler = scheduler;
+        this.starter = starter;
+        this.priority = priority;
+        this.tenant = tenant;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * @return true if job has been taken from the queue and its process has been started
+     */
+    public boolean isStarted() {
+        return startedNanos != null;
+    }
+
+    /**
+     * @return time spent in the queue in millis, or null if job hasn't been started yet
+     */
+    public Long getQueueWaitMillis() {
+        Long started = startedNanos;
+        if (started == null) {
+            return null;
+        }
+
+        return TimeUnit.NANOSECONDS.toMillis(started - submittedNanos);
+    }
+
+    /**
+     * @return time from process start to job completion in millis, or null if job hasn't finished yet
+     */
+    public Long getRunMillis() {
+        Long started = startedNanos;
+        Long finished = finishedNanos;
+        if (started == null || finished == null) {
+            return null;
+        }
+
+        return TimeUnit.NANOSECONDS.toMillis(finished - started);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            scheduler.cancel(this, mayInterruptIfRunning);
+        }
+
+        return cancelled;
+    }
+
+    CompletableFuture<T> start(Executor completionExecutor) {
+        startedNanos = System.nanoTime();
+        execution = starter.start(completionExecutor);
+        return execution;
+    }
+
+    CompletableFuture<T> getExecution() {
+        return execution;
+    }
+
+    void markFinished() {
+        finishedNanos = System.nanoTime();
+    }
+
+    interface Starter<T> {
+        CompletableFuture<T> start(Executor completionExecutor);
+    }
+}
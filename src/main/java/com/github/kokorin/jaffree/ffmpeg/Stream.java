@@ -25,6 +25,8 @@ public class Stream {
     private Integer height;
     private Long sampleRate;
     private Integer channels;
+    private PixelFormat pixelFormat;
+    private SampleFormat sampleFormat;
 
     public enum Type {
         VIDEO,
@@ -98,6 +100,38 @@ public class Stream {
         return this;
     }
 
+    public PixelFormat getPixelFormat() {
+        return pixelFormat;
+    }
+
+    /**
+     * Set pixel format of produced video stream. If set, producer must supply frames with {@link RawImage}s
+     * in this format, otherwise with BufferedImages.
+     *
+     * @param pixelFormat pixel format
+     * @return this
+     */
+    public Stream setPixelFormat(PixelFormat pixelFormat) {
+        this.pixelFormat = pixelFormat;
+        return this;
+    }
+
+    public SampleFormat getSampleFormat() {
+        return sampleFormat;
+    }
+
+    /**
+     * Set sample format of produced audio stream. If set, producer must supply frames with {@link RawSamples}
+     * in this format, otherwise with int samples.
+     *
+     * @param sampleFormat sample format
+     * @return this
+     */
+    public Stream setSampleFormat(SampleFormat sampleFormat) {
+        this.sampleFormat = sampleFormat;
+        return this;
+    }
+
     @Override
     public String toString() {
         return "Stream{" +
@@ -21,8 +21,10 @@ import com.github.kokorin.jaffree.LogLevel;
 import com.github.kokorin.jaffree.StreamType;
 import com.github.kokorin.jaffree.ffprobe.data.FlatFormatParser;
 import com.github.kokorin.jaffree.ffprobe.data.FormatParser;
+import com.github.kokorin.jaffree.process.HelperExecutors;
 import com.github.kokorin.jaffree.process.LoggingStdReader;
 import com.github.kokorin.jaffree.process.ProcessHandler;
+import com.github.kokorin.jaffree.process.ProcessTimingsListener;
 import com.github.kokorin.jaffree.process.StdReader;
 import com.github.kokorin.jaffree.process.ThrowingStdReader;
 import org.slf4j.Logger;
@@ -35,6 +37,8 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 public class FFprobe {
@@ -70,6 +74,8 @@ public class FFprobe {
     private Input input;
 
     private FormatParser parser = new FlatFormatParser();
+    private Executor helperExecutor = null;
+    private ProcessTimingsListener timingsListener = null;
 
     private final Path executable;
 
@@ -431,7 +437,62 @@ public class FFprobe {
         return this;
     }
 
+    /**
+     * Set backend to run helper tasks (reading ffprobe output and feeding input).
+     * <p>
+     * JVM-wide default backend is used if not set.
+     *
+     * @param helperExecutor backend
+     * @return this
+     * @see HelperExecutors
+     */
+    public FFprobe setHelperExecutor(Executor helperExecutor) {
+        this.helperExecutor = helperExecutor;
+        return this;
+    }
+
+    /**
+     * Supply listener to receive ffprobe process latencies: spawn-to-exit and exit-to-return.
+     *
+     * @param timingsListener listener
+     * @return this
+     */
+    public FFprobe setTimingsListener(ProcessTimingsListener timingsListener) {
+        this.timingsListener = timingsListener;
+        return this;
+    }
+
     public FFprobeResult execute() {
+        return createProcessHandler()
+                .execute();
+    }
+
+    /**
+     * Starts ffprobe and returns immediately.
+     * <p>
+     * No thread is dedicated to wait for ffprobe: result future is completed when ffprobe has exited
+     * and all helper tasks have finished. {@link CompletableFuture#cancel(boolean)} stops ffprobe process.
+     *
+     * @param executor executor to complete result future in (and to run dependent stages),
+     *                 if null future is completed in the helper thread which finished last
+     * @return ffprobe result future
+     */
+    public CompletableFuture<FFprobeResult> executeAsync(Executor executor) {
+        return createProcessHandler()
+                .executeAsync(executor);
+    }
+
+    /**
+     * Starts ffprobe and returns immediately.
+     *
+     * @return ffprobe result future
+     * @see #executeAsync(Executor)
+     */
+    public CompletableFuture<FFprobeResult> executeAsync() {
+        return executeAsync(null);
+    }
+
+    protected ProcessHandler<FFprobeResult> createProcessHandler() {
         List<Runnable> helpers = new ArrayList<>();
         if (input != null) {
             Runnable helper = input.helperThread();
@@ -444,8 +505,9 @@ public class FFprobe {
                 .setStdOutReader(createStdOutReader())
                 .setStdErrReader(createStdErrReader())
                 .setRunnables(helpers)
-                .setArguments(buildArguments())
-                .execute();
+                .setHelperExecutor(helperExecutor)
+                .setTimingsListener(timingsListener)
+                .setArguments(buildArguments());
     }
 
     protected List<String> buildArguments() {
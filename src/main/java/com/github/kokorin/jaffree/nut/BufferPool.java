@@ -0,0 +1,113 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.nut;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of byte arrays to read frame data into.
+ * <p>
+ * Raw video frames are large (8 MB for 1080p ABGR) and have the same size within a stream, so reusing
+ * them saves a lot of allocation. Arrays are pooled by exact size, at most {@code maxBuffersPerSize}
+ * arrays of every size are kept. Pool is thread safe: arrays may be released in any thread.
+ */
+public class BufferPool {
+    private final int maxBuffersPerSize;
+    private final ConcurrentMap<Integer, BlockingQueue<byte[]>> buffers = new ConcurrentHashMap<>();
+    private final AtomicLong allocatedCount = new AtomicLong();
+    private final AtomicLong reusedCount = new AtomicLong();
+
+    public static final int DEFAULT_MAX_BUFFERS_PER_SIZE = 8;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    public BufferPool() {
+        this(DEFAULT_MAX_BUFFERS_PER_SIZE);
+    }
+
+    public BufferPool(int maxBuffersPerSize) {
+        if (maxBuffersPerSize <= 0) {
+            throw new IllegalArgumentException("maxBuffersPerSize must be positive: " + maxBuffersPerSize);
+        }
+        this.maxBuffersPerSize = maxBuffersPerSize;
+    }
+
+    /**
+     * Returns pooled array of exactly specified size or allocates new one.
+     *
+     * @param size array size
+     * @return byte array, its content is undefined
+     */
+    public byte[] acquire(int size) {
+        if (size == 0) {
+            // E.g. end of relevance frames
+            return EMPTY;
+        }
+
+        BlockingQueue<byte[]> queue = buffers.get(size);
+        byte[] result = queue != null ? queue.poll() : null;
+        if (result != null) {
+            reusedCount.incrementAndGet();
+            return result;
+        }
+
+        allocatedCount.incrementAndGet();
+        return new byte[size];
+    }
+
+    /**
+     * Returns array to pool. Array must not be used after release.
+     *
+     * @param buffer array to return, ignored if null
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || buffer.length == 0) {
+            return;
+        }
+
+        BlockingQueue<byte[]> queue = buffers.get(buffer.length);
+        if (queue == null) {
+            BlockingQueue<byte[]> created = new ArrayBlockingQueue<>(maxBuffersPerSize);
+            queue = buffers.putIfAbsent(buffer.length, created);
+            if (queue == null) {
+                queue = created;
+            }
+        }
+
+        // Array is left for GC if pool is full
+        queue.offer(buffer);
+    }
+
+    /**
+     * @return number of arrays allocated because there were no pooled arrays of requested size
+     */
+    public long getAllocatedCount() {
+        return allocatedCount.get();
+    }
+
+    /**
+     * @return number of arrays taken from pool
+     */
+    public long getReusedCount() {
+        return reusedCount.get();
+    }
+}
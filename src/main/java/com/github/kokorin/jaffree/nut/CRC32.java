@@ -17,6 +17,8 @@
 
 package com.github.kokorin.jaffree.nut;
 
+import java.nio.ByteBuffer;
+
 /**
  * CRC32 implementation used in NUT.
  * <p>
@@ -27,26 +29,86 @@ package com.github.kokorin.jaffree.nut;
 class CRC32 {
     private int crc = 0;
 
-    private static int[] table = {
-            0x00000000, 0x04C11DB7, 0x09823B6E, 0x0D4326D9,
-            0x130476DC, 0x17C56B6B, 0x1A864DB2, 0x1E475005,
-            0x2608EDB8, 0x22C9F00F, 0x2F8AD6D6, 0x2B4BCB61,
-            0x350C9B64, 0x31CD86D3, 0x3C8EA00A, 0x384FBDBD,
-    };
+    private static final int POLYNOMIAL = 0x04C11DB7;
+    // Slicing-by-8 tables, TABLES[0] is CRC of every possible byte value (MSB-first),
+    // TABLES[k] is CRC of byte value followed by k zero bytes
+    private static final int[][] TABLES = new int[8][256];
+    private static final int[] TABLE = TABLES[0];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int value = i << 24;
+            for (int bit = 0; bit < 8; bit++) {
+                value = (value << 1) ^ (value < 0 ? POLYNOMIAL : 0);
+            }
+            TABLE[i] = value;
+        }
+
+        for (int k = 1; k < TABLES.length; k++) {
+            for (int i = 0; i < 256; i++) {
+                int previous = TABLES[k - 1][i];
+                TABLES[k][i] = (previous << 8) ^ TABLE[previous >>> 24];
+            }
+        }
+    }
 
     public void reset() {
         crc = 0;
     }
 
     public void update(int value) {
-        crc ^= value << 24;
-        crc = (crc << 4) ^ table[crc >>> 28];
-        crc = (crc << 4) ^ table[crc >>> 28];
+        crc = (crc << 8) ^ TABLE[((crc >>> 24) ^ value) & 0xFF];
     }
 
     public void update(byte[] data) {
-        for (int value : data) {
-            update(value);
+        update(data, 0, data.length);
+    }
+
+    public void update(byte[] data, int offset, int length) {
+        // Short ranges (e.g. frame headers) aren't worth loading all tables
+        if (length < 16) {
+            int value = crc;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                value = (value << 8) ^ TABLE[((value >>> 24) ^ data[i]) & 0xFF];
+            }
+            crc = value;
+            return;
+        }
+
+        int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+
+        int value = crc;
+        int i = offset;
+        int end = offset + length;
+
+        // 8 bytes per step
+        for (int sliceEnd = end - 7; i < sliceEnd; i += 8) {
+            int high = value ^ ((data[i] & 0xFF) << 24 | (data[i + 1] & 0xFF) << 16
+                    | (data[i + 2] & 0xFF) << 8 | (data[i + 3] & 0xFF));
+            value = t7[high >>> 24] ^ t6[(high >>> 16) & 0xFF] ^ t5[(high >>> 8) & 0xFF] ^ t4[high & 0xFF]
+                    ^ t3[data[i + 4] & 0xFF] ^ t2[data[i + 5] & 0xFF] ^ t1[data[i + 6] & 0xFF] ^ t0[data[i + 7] & 0xFF];
+        }
+
+        for (; i < end; i++) {
+            value = (value << 8) ^ t0[((value >>> 24) ^ data[i]) & 0xFF];
+        }
+        crc = value;
+    }
+
+    /**
+     * Updates CRC with bytes between position and limit of the buffer, buffer position is not changed.
+     *
+     * @param data data
+     */
+    public void update(ByteBuffer data) {
+        if (data.hasArray()) {
+            update(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            return;
+        }
+
+        for (int i = data.position(); i < data.limit(); i++) {
+            update(data.get(i));
         }
     }
 
@@ -23,6 +23,11 @@ import java.util.Set;
 public class FrameCode {
     public final Set<Flag> flags;
 
+    /**
+     * Same as {@link #flags}, but as bitmask, see {@link Flag#getCode()}.
+     */
+    public final int flagBits;
+
     public final int streamId;
 
     /**
@@ -85,6 +90,7 @@ public class FrameCode {
 
     public FrameCode(Set<Flag> flags, int streamId, int dataSizeMul, int dataSizeLsb, long ptsDelta, long reservedCount, long matchTimeDelta, long headerIdx) {
         this.flags = flags;
+        this.flagBits = (int) Flag.toBitCode(flags);
         this.streamId = streamId;
         this.dataSizeMul = dataSizeMul;
         this.dataSizeLsb = dataSizeLsb;
@@ -178,12 +184,19 @@ public class FrameCode {
          */
         INVALID(1 << 13);
 
-        private final long code;
+        private final int code;
 
-        Flag(long code) {
+        Flag(int code) {
             this.code = code;
         }
 
+        /**
+         * @return flag bit as coded in NUT
+         */
+        public int getCode() {
+            return code;
+        }
+
         public static Set<Flag> fromBitCode(long value) {
             Set<Flag> result = EnumSet.noneOf(Flag.class);
             for (Flag flag : values()) {
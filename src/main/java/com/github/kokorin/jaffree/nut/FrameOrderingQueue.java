@@ -0,0 +1,135 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.nut;
+
+import java.util.Arrays;
+
+/**
+ * Min-heap of frames keyed by timestamps in common timebase.
+ * <p>
+ * Frames with equal timestamps are polled in the order they have been added.
+ * Keys are kept in primitive arrays, so adding and polling don't allocate unless the heap grows.
+ */
+final class FrameOrderingQueue {
+    private long[] timestamps;
+    private long[] sequences;
+    private NutFrame[] frames;
+    private int size = 0;
+    private long nextSequence = 0;
+
+    FrameOrderingQueue() {
+        this(64);
+    }
+
+    FrameOrderingQueue(int initialCapacity) {
+        timestamps = new long[initialCapacity];
+        sequences = new long[initialCapacity];
+        frames = new NutFrame[initialCapacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void add(long timestamp, NutFrame frame) {
+        if (size == frames.length) {
+            int capacity = Math.max(2 * size, 16);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+            frames = Arrays.copyOf(frames, capacity);
+        }
+
+        long sequence = nextSequence++;
+        int i = size++;
+        // sift up
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(timestamp, sequence, timestamps[parent], sequences[parent])) {
+                break;
+            }
+            set(i, timestamps[parent], sequences[parent], frames[parent]);
+            i = parent;
+        }
+        set(i, timestamp, sequence, frame);
+    }
+
+    /**
+     * @return timestamp of the earliest frame
+     * @throws IllegalStateException if queue is empty
+     */
+    long peekTimestamp() {
+        if (size == 0) {
+            throw new IllegalStateException("Queue is empty");
+        }
+
+        return timestamps[0];
+    }
+
+    /**
+     * Removes the earliest frame.
+     *
+     * @return the earliest frame, or null if queue is empty
+     */
+    NutFrame poll() {
+        if (size == 0) {
+            return null;
+        }
+
+        NutFrame result = frames[0];
+        size--;
+        long timestamp = timestamps[size];
+        long sequence = sequences[size];
+        NutFrame frame = frames[size];
+        frames[size] = null;
+
+        if (size > 0) {
+            // sift down
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < size && less(timestamps[right], sequences[right], timestamps[child], sequences[child])) {
+                    child = right;
+                }
+                if (!less(timestamps[child], sequences[child], timestamp, sequence)) {
+                    break;
+                }
+                set(i, timestamps[child], sequences[child], frames[child]);
+                i = child;
+            }
+            set(i, timestamp, sequence, frame);
+        }
+
+        return result;
+    }
+
+    private void set(int i, long timestamp, long sequence, NutFrame frame) {
+        timestamps[i] = timestamp;
+        sequences[i] = sequence;
+        frames[i] = frame;
+    }
+
+    private static boolean less(long timestamp1, long sequence1, long timestamp2, long sequence2) {
+        return timestamp1 < timestamp2 || timestamp1 == timestamp2 && sequence1 < sequence2;
+    }
+}
@@ -17,19 +17,36 @@
 
 package com.github.kokorin.jaffree.nut;
 
+import java.nio.ByteBuffer;
+
 public class NutFrame {
     public final int streamId;
     public final long pts;
     public final byte[] data;
+    /**
+     * Read-only frame data, set instead of {@link #data} if {@link NutReader} returns data slices,
+     * see {@link NutReader#setSliceFrameData(boolean)}.
+     */
+    public final ByteBuffer buffer;
     public final DataItem[] sideData;
     public final DataItem[] metaData;
     public final boolean keyframe;
     public final boolean eor;
 
     public NutFrame(int streamId, long pts, byte[] data, DataItem[] sideData, DataItem[] metaData, boolean keyframe, boolean eor) {
+        this(streamId, pts, data, null, sideData, metaData, keyframe, eor);
+    }
+
+    public NutFrame(int streamId, long pts, ByteBuffer buffer, DataItem[] sideData, DataItem[] metaData, boolean keyframe, boolean eor) {
+        this(streamId, pts, null, buffer, sideData, metaData, keyframe, eor);
+    }
+
+    private NutFrame(int streamId, long pts, byte[] data, ByteBuffer buffer, DataItem[] sideData, DataItem[] metaData,
+                     boolean keyframe, boolean eor) {
         this.streamId = streamId;
         this.pts = pts;
         this.data = data;
+        this.buffer = buffer;
         this.sideData = sideData;
         this.metaData = metaData;
         this.keyframe = keyframe;
@@ -42,6 +59,7 @@ public class NutFrame {
                 "streamId=" + streamId +
                 ", pts=" + pts +
                 ", data=" + (data != null ? data.length : "null") +
+                ", buffer=" + (buffer != null ? buffer.remaining() : "null") +
                 ", sideData=" + (sideData != null ? sideData.length : "null") +
                 ", metaData=" + (metaData != null ? metaData.length : "null") +
                 ", keyframe=" + keyframe +
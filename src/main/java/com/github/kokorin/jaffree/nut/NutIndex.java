@@ -0,0 +1,247 @@
+/*
+ *    Copyright  2017 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.nut;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * NUT index: positions of syncpoints and pts of the first keyframe of every stream after each syncpoint.
+ * <p>
+ * Syncpoint positions are stored divided by 16, so actual syncpoint is up to 15 bytes after the stored position.
+ */
+class NutIndex {
+    private final int streamCount;
+    private int syncPointCount = 0;
+    private long[] syncPointPositions = new long[16];
+    // [streamId][syncPoint], NO_PTS if there is no keyframe of the stream after the syncpoint
+    private final long[][] keyframePts;
+    // max pts of every stream, only tracked while writing
+    private final long[] maxPts;
+    // last pts written to index for every stream, index pts must be strictly increasing
+    private final long[] lastIndexedPts;
+
+    static final long NO_PTS = Long.MIN_VALUE;
+
+    NutIndex(int streamCount) {
+        this.streamCount = streamCount;
+        this.keyframePts = new long[streamCount][syncPointPositions.length];
+        this.maxPts = new long[streamCount];
+        this.lastIndexedPts = new long[streamCount];
+        Arrays.fill(maxPts, NO_PTS);
+        Arrays.fill(lastIndexedPts, -1);
+    }
+
+    /**
+     * @param position position of syncpoint's startcode
+     */
+    void addSyncPoint(long position) {
+        if (syncPointCount == syncPointPositions.length) {
+            int capacity = syncPointCount * 2;
+            syncPointPositions = Arrays.copyOf(syncPointPositions, capacity);
+            for (int i = 0; i < streamCount; i++) {
+                keyframePts[i] = Arrays.copyOf(keyframePts[i], capacity);
+            }
+        }
+
+        syncPointPositions[syncPointCount] = position;
+        for (int i = 0; i < streamCount; i++) {
+            keyframePts[i][syncPointCount] = NO_PTS;
+        }
+        syncPointCount++;
+    }
+
+    /**
+     * Registers frame written after the last syncpoint.
+     */
+    void addFrame(int streamId, long pts, boolean keyframe) {
+        if (maxPts[streamId] == NO_PTS || pts > maxPts[streamId]) {
+            maxPts[streamId] = pts;
+        }
+
+        if (!keyframe || syncPointCount == 0) {
+            return;
+        }
+
+        int syncPoint = syncPointCount - 1;
+        if (keyframePts[streamId][syncPoint] == NO_PTS && pts > lastIndexedPts[streamId]) {
+            keyframePts[streamId][syncPoint] = pts;
+            lastIndexedPts[streamId] = pts;
+        }
+    }
+
+    int getSyncPointCount() {
+        return syncPointCount;
+    }
+
+    /**
+     * @return syncpoint position, up to 15 bytes less than actual one if index has been read
+     */
+    long getSyncPointPosition(int syncPoint) {
+        return syncPointPositions[syncPoint];
+    }
+
+    long getMaxPts(int streamId) {
+        return maxPts[streamId];
+    }
+
+    /**
+     * @return the last syncpoint followed by keyframe of the stream with pts not greater than specified one,
+     * or -1 if there is no such syncpoint
+     */
+    int findSyncPoint(int streamId, long pts) {
+        long[] streamPts = keyframePts[streamId];
+        int result = -1;
+        // keyframe pts are increasing, NO_PTS entries are skipped
+        int low = 0;
+        int high = syncPointCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int syncPoint = mid;
+            while (syncPoint <= high && streamPts[syncPoint] == NO_PTS) {
+                syncPoint++;
+            }
+
+            if (syncPoint > high) {
+                high = mid - 1;
+            } else if (streamPts[syncPoint] <= pts) {
+                result = syncPoint;
+                low = syncPoint + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return result;
+    }
+
+    /*
+        index:
+            max_pts                             t
+            syncpoints                          v
+            for(i=0; i<syncpoints; i++){
+                syncpoint_pos_div16             v
+            }
+            for(i=0; i<stream_count; i++){
+                last_pts= -1
+                for(j=0; j<syncpoints; ){
+                    x                           v
+                    type= x & 1
+                    ...
+                }
+            }
+     */
+    void write(NutOutputStream output, int timeBaseCount, Timestamp maxTimestamp) throws IOException {
+        output.writeTimestamp(timeBaseCount, maxTimestamp);
+        output.writeValue(syncPointCount);
+
+        long lastPositionDiv16 = 0;
+        for (int i = 0; i < syncPointCount; i++) {
+            long positionDiv16 = syncPointPositions[i] >> 4;
+            output.writeValue(positionDiv16 - lastPositionDiv16);
+            lastPositionDiv16 = positionDiv16;
+        }
+
+        for (int streamId = 0; streamId < streamCount; streamId++) {
+            long[] streamPts = keyframePts[streamId];
+            long lastPts = -1;
+
+            for (int j = 0; j < syncPointCount; ) {
+                // Run of n syncpoints with the same has_keyframe flag, followed by one with opposite flag
+                // (which may be past the last syncpoint)
+                boolean flag = streamPts[j] != NO_PTS;
+                int n = 0;
+                while (j + n < syncPointCount && (streamPts[j + n] != NO_PTS) == flag) {
+                    n++;
+                }
+                output.writeValue(((long) n << 2) | (flag ? 2 : 0) | 1);
+
+                int end = Math.min(j + n + 1, syncPointCount);
+                for (; j < end; j++) {
+                    if (streamPts[j] == NO_PTS) {
+                        continue;
+                    }
+                    output.writeValue(streamPts[j] - lastPts);
+                    lastPts = streamPts[j];
+                }
+            }
+        }
+    }
+
+    static NutIndex read(NutInputStream input, int streamCount, int timeBaseCount) throws IOException {
+        NutIndex result = new NutIndex(streamCount);
+        input.readTimestamp(timeBaseCount);
+        long syncPoints = input.readValue();
+
+        long positionDiv16 = 0;
+        for (long i = 0; i < syncPoints; i++) {
+            positionDiv16 += input.readValue();
+            result.addSyncPoint(positionDiv16 << 4);
+        }
+
+        int count = result.syncPointCount;
+        boolean[] hasKeyframe = new boolean[count + 1];
+        for (int streamId = 0; streamId < streamCount; streamId++) {
+            long[] streamPts = result.keyframePts[streamId];
+            long lastPts = -1;
+
+            for (int j = 0; j < count; ) {
+                long x = input.readValue();
+                boolean type = (x & 1) != 0;
+                x >>= 1;
+                int n = j;
+                if (type) {
+                    boolean flag = (x & 1) != 0;
+                    x >>= 1;
+                    if (n + x > count) {
+                        throw new RuntimeException("Index overflow, stream " + streamId);
+                    }
+                    while (x-- > 0) {
+                        hasKeyframe[n++] = flag;
+                    }
+                    hasKeyframe[n++] = !flag;
+                } else {
+                    while (x != 1) {
+                        if (n >= count) {
+                            throw new RuntimeException("Index overflow, stream " + streamId);
+                        }
+                        hasKeyframe[n++] = (x & 1) != 0;
+                        x >>= 1;
+                    }
+                }
+
+                for (; j < n && j < count; j++) {
+                    if (!hasKeyframe[j]) {
+                        continue;
+                    }
+                    long a = input.readValue();
+                    long b = 0;
+                    if (a == 0) {
+                        // EOR: its pts isn't needed for seeking
+                        a = input.readValue();
+                        b = input.readValue();
+                    }
+                    streamPts[j] = lastPts + a;
+                    lastPts += a + b;
+                }
+            }
+        }
+
+        return result;
+    }
+}
@@ -17,26 +17,186 @@
 
 package com.github.kokorin.jaffree.nut;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads NUT primitives from {@link ByteBuffer}, which is refilled from underlying {@link InputStream}
+ * only when it's exhausted.
+ * <p>
+ * Values are decoded directly from the buffer, large payloads are read past the buffer straight
+ * into destination arrays.
+ * <p>
+ * Stream is seekable if it reads regular file with {@link FileInputStream}, {@link ByteBuffer}
+ * or memory-mapped {@link FileChannel}.
+ */
 public class NutInputStream implements AutoCloseable {
-
     private final InputStream input;
-    private long position = 0;
+    // Used to fill direct buffers, heap buffers are filled via their backing arrays
+    private final ReadableByteChannel channel;
+    // Used to seek, shares position with input; or mapped if input is null
+    private final FileChannel fileChannel;
+    // Max size of a single mapping, 0 if file isn't mapped
+    private final int mapChunkSize;
+    // In read mode: position is the next byte to read, limit is the end of data read from input.
+    // If file is mapped it's the current mapping
+    private ByteBuffer buffer;
+    // Stream position of the first byte in buffer
+    private long bufferOffset = 0;
+    private final CRC32 crc32 = new CRC32();
+    // Index in buffer of the first byte which hasn't been added to CRC yet, -1 if CRC isn't calculated
+    private int crcStart = -1;
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAP_CHUNK_SIZE = 1024 * 1024 * 1024;
 
     public NutInputStream(InputStream input) {
-        if (!(input instanceof BufferedInputStream)) {
-            input = new BufferedInputStream(input);
+        this(input, DEFAULT_BUFFER_SIZE, false);
+    }
+
+    /**
+     * @param input      input stream
+     * @param bufferSize buffer size, must be at least 8 bytes
+     * @param direct     whether to allocate direct buffer
+     */
+    public NutInputStream(InputStream input, int bufferSize, boolean direct) {
+        if (bufferSize < 8) {
+            throw new IllegalArgumentException("Buffer size must be at least 8 bytes: " + bufferSize);
         }
 
         this.input = input;
+        this.buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        this.buffer.flip();
+        this.channel = direct ? Channels.newChannel(input) : null;
+        this.fileChannel = seekableChannel(input);
+        this.mapChunkSize = 0;
+    }
+
+    /**
+     * Creates stream which reads NUT data from position to limit of provided buffer (e.g. memory-mapped file).
+     * No data is copied.
+     *
+     * @param data data to read
+     */
+    public NutInputStream(ByteBuffer data) {
+        this.input = null;
+        this.channel = null;
+        this.fileChannel = null;
+        this.mapChunkSize = 0;
+        this.buffer = data.slice();
+    }
+
+    /**
+     * Creates stream which reads memory-mapped file from the beginning.
+     * <p>
+     * File is mapped read-only by chunks of {@link #DEFAULT_MAP_CHUNK_SIZE}, so files larger than 2 GB are
+     * supported. Slices returned by {@link #readSlice(int)} stay valid after subsequent reads.
+     *
+     * @param channel file channel, closed when the stream is closed
+     */
+    public static NutInputStream map(FileChannel channel) throws IOException {
+        return new NutInputStream(channel, DEFAULT_MAP_CHUNK_SIZE);
+    }
+
+    /**
+     * @param channel      file channel, closed when the stream is closed
+     * @param mapChunkSize max size of a single mapping, data which doesn't fit into a chunk is copied
+     * @see #map(FileChannel)
+     */
+    public NutInputStream(FileChannel channel, int mapChunkSize) throws IOException {
+        if (mapChunkSize < 8) {
+            throw new IllegalArgumentException("Chunk size must be at least 8 bytes: " + mapChunkSize);
+        }
+
+        this.input = null;
+        this.channel = null;
+        this.fileChannel = channel;
+        this.mapChunkSize = mapChunkSize;
+        map(0);
+    }
+
+    /**
+     * Starts calculating CRC of bytes read after this call.
+     */
+    public void startCrc32() {
+        crc32.reset();
+        crcStart = buffer.position();
+    }
+
+    /**
+     * Stops calculating CRC.
+     *
+     * @return CRC of bytes read since {@link #startCrc32()}
+     */
+    public long finishCrc32() {
+        updateCrc32();
+        crcStart = -1;
+        return crc32.getValue();
     }
 
     public long getPosition() {
-        return position;
+        return bufferOffset + buffer.position();
+    }
+
+    /**
+     * @return true if {@link #seek(long)} and {@link #size()} are supported
+     */
+    public boolean isSeekable() {
+        return fileChannel != null || input == null;
+    }
+
+    /**
+     * @return total size of the stream in bytes
+     * @throws UnsupportedOperationException if stream isn't seekable
+     */
+    public long size() throws IOException {
+        if (fileChannel != null) {
+            return fileChannel.size();
+        }
+        if (input == null) {
+            return buffer.limit();
+        }
+
+        throw new UnsupportedOperationException("Stream isn't seekable");
+    }
+
+    /**
+     * Sets position of the next byte to read. Buffered data is reused if position is within the buffer.
+     * <p>
+     * Stops CRC calculation.
+     *
+     * @param position position in stream
+     * @throws UnsupportedOperationException if stream isn't seekable
+     */
+    public void seek(long position) throws IOException {
+        if (!isSeekable()) {
+            throw new UnsupportedOperationException("Stream isn't seekable");
+        }
+
+        crcStart = -1;
+        if (position >= bufferOffset && position <= bufferOffset + buffer.limit()) {
+            buffer.position((int) (position - bufferOffset));
+            return;
+        }
+        if (fileChannel == null || position > fileChannel.size()) {
+            throw new EOFException("Position is out of stream bounds: " + position);
+        }
+        if (mapChunkSize > 0) {
+            map(position);
+            return;
+        }
+
+        fileChannel.position(position);
+        bufferOffset = position;
+        buffer.clear();
+        buffer.flip();
     }
 
     /**
@@ -47,15 +207,20 @@ public class NutInputStream implements AutoCloseable {
     public long readValue() throws IOException {
         long result = 0;
 
-        while (input.available() > 0) {
-            int tmp = input.read();
-            position++;
+        while (buffer.hasRemaining() || fill()) {
+            int position = buffer.position();
+            int limit = buffer.limit();
 
-            boolean hasMore = (tmp & 0x80) > 0;
-            if (hasMore)
+            while (position < limit) {
+                int tmp = buffer.get(position++) & 0xFF;
+                if ((tmp & 0x80) == 0) {
+                    buffer.position(position);
+                    return (result << 7) + tmp;
+                }
                 result = (result << 7) + tmp - 0x80;
-            else
-                return (result << 7) + tmp;
+            }
+
+            buffer.position(position);
         }
 
         return -1;
@@ -83,14 +248,8 @@ public class NutInputStream implements AutoCloseable {
      * @return long
      */
     public long readLong() throws IOException {
-        long result = 0;
-
-        for (int i = 0; i < 8; i++) {
-            result = (result << 8) + input.read();
-            position++;
-        }
-
-        return result;
+        require(8);
+        return buffer.getLong();
     }
 
     /**
@@ -100,14 +259,8 @@ public class NutInputStream implements AutoCloseable {
      * @return int as long
      */
     long readInt() throws IOException {
-        long result = 0;
-
-        for (int i = 0; i < 4; i++) {
-            result = (result << 8) + input.read();
-            position++;
-        }
-
-        return result;
+        require(4);
+        return buffer.getInt() & 0xFFFFFFFFL;
     }
 
     /**
@@ -117,10 +270,11 @@ public class NutInputStream implements AutoCloseable {
      * @return byte
      */
     public int readByte() throws IOException {
-        int result = input.read();
-        position++;
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
 
-        return result;
+        return buffer.get() & 0xFF;
     }
 
     /**
@@ -137,15 +291,14 @@ public class NutInputStream implements AutoCloseable {
      * Reads input till char \0 not found
      */
     public String readCString() throws IOException {
-        try (ByteArrayOutputStream buffer = new ByteArrayOutputStream(32)) {
+        try (ByteArrayOutputStream result = new ByteArrayOutputStream(32)) {
 
             int b;
-            while ((b = input.read()) != 0) {
-                buffer.write(b);
-                position++;
+            while ((b = readByte()) > 0) {
+                result.write(b);
             }
 
-            return new String(buffer.toByteArray());
+            return new String(result.toByteArray());
         }
     }
 
@@ -173,11 +326,11 @@ public class NutInputStream implements AutoCloseable {
      * @return next byte
      */
     public byte checkNextByte() throws IOException {
-        input.mark(1);
-        byte result = (byte) input.read();
-        input.reset();
+        if (!buffer.hasRemaining() && !fill()) {
+            return -1;
+        }
 
-        return result;
+        return buffer.get(buffer.position());
     }
 
     /**
@@ -186,40 +339,246 @@ public class NutInputStream implements AutoCloseable {
      * @return next byte
      */
     public boolean hasMoreData() throws IOException {
-        input.mark(1);
-        int result = input.read();
-        input.reset();
-
-        return result != -1;
+        return buffer.hasRemaining() || fill();
     }
 
     public byte[] readBytes(long toRead) throws IOException {
         byte[] result = new byte[(int) toRead];
-        int start = 0;
+        if (!readBytes(result, (int) toRead)) {
+            return null;
+        }
 
-        while (start < toRead) {
-            long read = input.read(result, start, (int) toRead - start);
-            if (read == -1) {
-                return null;
+        return result;
+    }
+
+    /**
+     * Reads exactly {@code toRead} bytes into the beginning of passed in buffer
+     *
+     * @param buffer buffer to read to
+     * @param toRead number of bytes to read
+     * @return false if end of stream has been reached before reading all bytes
+     */
+    public boolean readBytes(byte[] buffer, int toRead) throws IOException {
+        int start = Math.min(this.buffer.remaining(), toRead);
+        this.buffer.get(buffer, 0, start);
+
+        // Large payloads are read directly to destination, small ones are buffered along with following data
+        if (input != null && toRead - start >= this.buffer.capacity() / 2) {
+            updateCrc32();
+            discardBuffer();
+            while (start < toRead) {
+                int read = input.read(buffer, start, toRead - start);
+                if (read == -1) {
+                    return false;
+                }
+
+                if (crcStart >= 0) {
+                    crc32.update(buffer, start, read);
+                }
+                bufferOffset += read;
+                start += read;
             }
+            return true;
+        }
 
-            position += read;
+        while (start < toRead) {
+            if (!fill()) {
+                return false;
+            }
+            int read = Math.min(this.buffer.remaining(), toRead - start);
+            this.buffer.get(buffer, start, read);
             start += read;
         }
 
+        return true;
+    }
+
+    /**
+     * Reads exactly {@code length} bytes as a buffer slice, without copying if they fit into the internal buffer.
+     * <p>
+     * <b>Note</b>: slice content is valid only till the next read from this stream, unless stream
+     * was created over a whole buffer with {@link #NutInputStream(ByteBuffer)} or over memory-mapped file.
+     *
+     * @param length number of bytes to read
+     * @return buffer with requested bytes between position and limit, or null if end of stream has been reached
+     */
+    public ByteBuffer readSlice(int length) throws IOException {
+        if (length > (mapChunkSize > 0 ? mapChunkSize : buffer.capacity())) {
+            byte[] result = readBytes(length);
+            return result != null ? ByteBuffer.wrap(result) : null;
+        }
+
+        if (!ensure(length)) {
+            return null;
+        }
+
+        ByteBuffer result = buffer.slice();
+        result.limit(length);
+        buffer.position(buffer.position() + length);
         return result;
     }
 
     public void skipBytes(long toSkip) throws IOException {
+        int fromBuffer = (int) Math.min(buffer.remaining(), toSkip);
+        buffer.position(buffer.position() + fromBuffer);
+        toSkip -= fromBuffer;
+
+        if (toSkip > 0 && isSeekable() && crcStart < 0) {
+            long position = getPosition() + toSkip;
+            if (position > size()) {
+                throw new EOFException("Failed to skip bytes, end of stream reached");
+            }
+            seek(position);
+            return;
+        }
+
         while (toSkip > 0) {
-            long skipped = input.skip(toSkip);
-            position += skipped;
+            // Skipped bytes must be read if CRC is calculated.
+            // FileInputStream over a pipe doesn't support skip, so bytes are read to buffer as well
+            long skipped = input != null && crcStart < 0 && !(input instanceof FileInputStream)
+                    ? input.skip(toSkip) : 0;
+            if (skipped <= 0) {
+                // InputStream.skip may return 0 both at the end of stream and before it
+                if (!buffer.hasRemaining() && !fill()) {
+                    throw new EOFException("Failed to skip bytes, end of stream reached");
+                }
+                skipped = Math.min(buffer.remaining(), toSkip);
+                buffer.position(buffer.position() + (int) skipped);
+            } else {
+                discardBuffer();
+                bufferOffset += skipped;
+            }
             toSkip -= skipped;
         }
     }
 
     @Override
     public void close() throws IOException {
-        input.close();
+        if (input != null) {
+            input.close();
+        } else if (fileChannel != null) {
+            fileChannel.close();
+        }
+    }
+
+    private void require(int length) throws IOException {
+        if (!ensure(length)) {
+            throw new EOFException("End of stream reached, " + length + " bytes required");
+        }
+    }
+
+    /**
+     * Refills buffer till it contains at least specified number of bytes.
+     *
+     * @return false if end of stream has been reached before
+     */
+    private boolean ensure(int length) throws IOException {
+        while (buffer.remaining() < length) {
+            if (!fill()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void updateCrc32() {
+        int position = buffer.position();
+        if (crcStart < 0 || crcStart == position) {
+            return;
+        }
+
+        if (buffer.hasArray()) {
+            crc32.update(buffer.array(), buffer.arrayOffset() + crcStart, position - crcStart);
+        } else {
+            ByteBuffer range = buffer.duplicate();
+            range.position(crcStart);
+            range.limit(position);
+            crc32.update(range);
+        }
+        crcStart = position;
+    }
+
+    /**
+     * Empties exhausted buffer before reading past it, so buffer never holds bytes, which don't match
+     * their stream positions.
+     */
+    private void discardBuffer() {
+        bufferOffset = getPosition();
+        buffer.clear();
+        buffer.flip();
+        if (crcStart >= 0) {
+            crcStart = 0;
+        }
+    }
+
+    /**
+     * Moves unread bytes to the beginning of buffer and reads more data after them.
+     *
+     * @return false if end of stream has been reached
+     */
+    private boolean fill() throws IOException {
+        if (mapChunkSize > 0) {
+            updateCrc32();
+            int remaining = buffer.remaining();
+            map(getPosition());
+            if (crcStart >= 0) {
+                crcStart = 0;
+            }
+            return buffer.remaining() > remaining;
+        }
+
+        if (input == null || buffer.remaining() == buffer.capacity()) {
+            return false;
+        }
+
+        updateCrc32();
+        bufferOffset += buffer.position();
+        buffer.compact();
+        if (crcStart >= 0) {
+            crcStart = 0;
+        }
+        int read;
+        try {
+            if (channel != null) {
+                read = channel.read(buffer);
+            } else {
+                read = input.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                if (read > 0) {
+                    buffer.position(buffer.position() + read);
+                }
+            }
+        } finally {
+            buffer.flip();
+        }
+
+        return read > 0;
+    }
+
+    /**
+     * @return channel of FileInputStream, or null if it's not a file input or it can't seek (e.g. it reads a pipe)
+     */
+    private static FileChannel seekableChannel(InputStream input) {
+        if (!(input instanceof FileInputStream)) {
+            return null;
+        }
+
+        FileChannel result = ((FileInputStream) input).getChannel();
+        try {
+            result.position();
+        } catch (IOException e) {
+            return null;
+        }
+
+        return result;
+    }
+
+    /**
+     * Maps next chunk of file starting from specified position.
+     */
+    private void map(long position) throws IOException {
+        long size = Math.min(mapChunkSize, fileChannel.size() - position);
+        buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, Math.max(size, 0));
+        bufferOffset = position;
     }
 }
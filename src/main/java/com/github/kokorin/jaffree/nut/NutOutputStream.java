@@ -17,21 +17,73 @@
 
 package com.github.kokorin.jaffree.nut;
 
-import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 
+/**
+ * Encodes NUT primitives into reusable {@link ByteBuffer}, which is written to underlying
+ * {@link OutputStream} or {@link WritableByteChannel} only when it's full or flushed.
+ * <p>
+ * Payloads which don't fit into the buffer are written along with buffered bytes (e.g. frame header),
+ * using single gathering write if the channel supports it.
+ */
 public class NutOutputStream implements AutoCloseable {
     private final OutputStream output;
+    private final WritableByteChannel channel;
+    // In write mode, always heap buffer: CRC is calculated over its backing array
+    private final ByteBuffer buffer;
+    private final ByteBuffer[] gatheringBuffers = new ByteBuffer[2];
     private final CRC32 crc32 = new CRC32();
-    private long position = 0;
+    // Whether bytes are added to CRC: from resetCrc32() till writeCrc32()
+    private boolean crcActive = false;
+    // Index in buffer of the first byte which hasn't been added to CRC yet
+    private int crcStart = 0;
+    // Payload written past the buffer, which hasn't been added to CRC yet. It precedes bytes in buffer
+    private byte[] crcPending;
+    // Number of bytes written to output
+    private long written = 0;
+    // Whether output is a file written from its beginning, so written bytes count is a file position
+    private final boolean seekable;
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
 
     public NutOutputStream(OutputStream output) {
-        if (!(output instanceof BufferedOutputStream)) {
-            output = new BufferedOutputStream(output);
+        this(output, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * If output is {@link FileOutputStream}, data is written to its channel.
+     *
+     * @param output     output stream
+     * @param bufferSize buffer size, must be at least 16 bytes
+     */
+    public NutOutputStream(OutputStream output, int bufferSize) {
+        this(output, output instanceof FileOutputStream ? ((FileOutputStream) output).getChannel() : null,
+                bufferSize);
+    }
+
+    /**
+     * @param channel    channel to write to, gathering writes are used if it's {@link GatheringByteChannel}
+     * @param bufferSize buffer size, must be at least 16 bytes
+     */
+    public NutOutputStream(WritableByteChannel channel, int bufferSize) {
+        this(null, channel, bufferSize);
+    }
+
+    private NutOutputStream(OutputStream output, WritableByteChannel channel, int bufferSize) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size must be at least 16 bytes: " + bufferSize);
         }
 
         this.output = output;
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.seekable = isWrittenFromStart(channel);
     }
 
     public void writeValue(long value) throws IOException {
@@ -43,17 +95,13 @@ public class NutOutputStream implements AutoCloseable {
             }
         }
 
+        // 63-bit value takes at most 9 bytes
+        ensureRemaining(9);
         for (i -= 7; i > 0; i -= 7) {
-            int b = (int) (0x80 | (value >> i));
-            output.write(b);
-            crc32.update(b);
-            position++;
+            buffer.put((byte) (0x80 | (value >> i)));
         }
 
-        int b = (int) (value & 0x7F);
-        output.write(b);
-        crc32.update(b);
-        position++;
+        buffer.put((byte) (value & 0x7F));
     }
 
     public void writeSignedValue(long signed) throws IOException {
@@ -68,27 +116,18 @@ public class NutOutputStream implements AutoCloseable {
     }
 
     public void writeLong(long value) throws IOException {
-        for (int i = 7; i >= 0; i--) {
-            int b = (int) ((value >> (8 * i)) & 0xFF);
-            output.write(b);
-            crc32.update(b);
-            position++;
-        }
+        ensureRemaining(8);
+        buffer.putLong(value);
     }
 
     public void writeInt(long value) throws IOException {
-        for (int i = 3; i >= 0; i--) {
-            int b = (int) ((value >> (8 * i)) & 0xFF);
-            output.write(b);
-            crc32.update(b);
-            position++;
-        }
+        ensureRemaining(4);
+        buffer.putInt((int) value);
     }
 
     public void writeByte(int value) throws IOException {
-        output.write(value);
-        crc32.update(value);
-        position++;
+        ensureRemaining(1);
+        buffer.put((byte) value);
     }
 
     public void writeVariablesString(String data) throws IOException{
@@ -111,30 +150,149 @@ public class NutOutputStream implements AutoCloseable {
         writeByte(0);
     }
 
+    /**
+     * Data which doesn't fit into the buffer is written without copying. Its CRC (if CRC is being calculated)
+     * is calculated lazily, so it must not be changed till {@link #writeCrc32()} or {@link #resetCrc32()}.
+     *
+     * @param data data to write
+     */
     public void writeBytes(byte[] data) throws IOException {
-        output.write(data);
-        crc32.update(data);
-        position += data.length;
+        if (data.length <= buffer.remaining()) {
+            buffer.put(data);
+            return;
+        }
+
+        // CRC of payload is calculated only if it's requested before reset
+        updateCrc32();
+        if (crcActive) {
+            crcPending = data;
+        }
+        writeBuffer(ByteBuffer.wrap(data));
     }
 
+    /**
+     * Starts calculating CRC of bytes written after this call.
+     */
     public void resetCrc32() {
         crc32.reset();
+        crcActive = true;
+        crcPending = null;
+        crcStart = buffer.position();
     }
 
+    /**
+     * Writes CRC of bytes written since {@link #resetCrc32()} and stops calculating CRC.
+     */
     public void writeCrc32() throws IOException{
+        updateCrc32();
+        crcActive = false;
         writeInt(crc32.getValue());
     }
 
     public long getPosition() {
-        return position;
+        return written + buffer.position();
+    }
+
+    /**
+     * @return true if output is a file (not a pipe), which is written from the beginning
+     */
+    public boolean isSeekable() {
+        return seekable;
     }
 
     public void flush() throws IOException {
-        output.flush();
+        if (buffer.position() > 0) {
+            updateCrc32();
+            writeBuffer(null);
+        }
+        if (output != null) {
+            output.flush();
+        }
     }
 
     @Override
     public void close() throws Exception {
-        output.close();
+        flush();
+        if (output != null) {
+            output.close();
+        } else {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return true if channel can seek (e.g. it's not a FIFO) and it's at the beginning (e.g. it doesn't append)
+     */
+    private static boolean isWrittenFromStart(WritableByteChannel channel) {
+        if (!(channel instanceof SeekableByteChannel)) {
+            return false;
+        }
+
+        try {
+            return ((SeekableByteChannel) channel).position() == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void ensureRemaining(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            updateCrc32();
+            writeBuffer(null);
+        }
+    }
+
+    private void updateCrc32() {
+        int position = buffer.position();
+        if (!crcActive) {
+            crcStart = position;
+            return;
+        }
+
+        if (crcPending != null) {
+            crc32.update(crcPending, 0, crcPending.length);
+            crcPending = null;
+        }
+        crc32.update(buffer.array(), buffer.arrayOffset() + crcStart, position - crcStart);
+        crcStart = position;
+    }
+
+    /**
+     * Writes buffered bytes followed by optional payload and clears the buffer.
+     * CRC must be updated before.
+     */
+    private void writeBuffer(ByteBuffer payload) throws IOException {
+        buffer.flip();
+        written += buffer.remaining();
+        if (payload != null) {
+            written += payload.remaining();
+        }
+
+        if (channel instanceof GatheringByteChannel && payload != null) {
+            gatheringBuffers[0] = buffer;
+            gatheringBuffers[1] = payload;
+            try {
+                while (payload.hasRemaining()) {
+                    ((GatheringByteChannel) channel).write(gatheringBuffers);
+                }
+            } finally {
+                gatheringBuffers[1] = null;
+            }
+        } else if (channel != null) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            while (payload != null && payload.hasRemaining()) {
+                channel.write(payload);
+            }
+        } else {
+            output.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+            if (payload != null) {
+                output.write(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+            }
+        }
+
+        buffer.clear();
+        crcStart = 0;
     }
 }
@@ -20,18 +20,86 @@ package com.github.kokorin.jaffree.nut;
 import com.github.kokorin.jaffree.Rational;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 public class NutReader {
     private final NutInputStream input;
+    private final BufferPool bufferPool;
     private boolean read = false;
     private MainHeader mainHeader;
     private StreamHeader[] streamHeaders;
     private Info[] infos;
     private long[] lastPts;
+    private boolean verifyChecksums = false;
+    private boolean sliceFrameData = false;
+    private long firstSyncPointPosition = -1;
+    private NutIndex index;
+    private boolean indexRead = false;
+    // The first frame at or after skipTo() target, returned by the next readFrame()
+    private NutFrame pendingFrame;
+    // Position where partition of the file ends, see ParallelNutReader
+    private long endPosition = Long.MAX_VALUE;
+
+    // Returned instead of frames, which were skipped without reading their data
+    private static final NutFrame SKIPPED_FRAME = new NutFrame(-1, 0, (byte[]) null, null, null, false, false);
 
     public NutReader(NutInputStream input) {
+        this(input, null);
+    }
+
+    /**
+     * Creates NutReader which reads frame data into arrays taken from the pool.
+     * <p>
+     * Frame data should be released with {@link BufferPool#release(byte[])} once it's not needed.
+     *
+     * @param input      input
+     * @param bufferPool pool to take arrays for frame data from, if null arrays are allocated for every frame
+     */
+    public NutReader(NutInputStream input, BufferPool bufferPool) {
         this.input = input;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Creates NutReader of file partition, which starts at syncpoint and ends at position of the next syncpoint.
+     *
+     * @param input       input positioned at the first syncpoint of the partition
+     * @param headers     reader of the same file, which has already read headers
+     * @param endPosition position where partition ends
+     */
+    NutReader(NutInputStream input, NutReader headers, long endPosition) {
+        this(input, null);
+        this.mainHeader = headers.mainHeader;
+        this.streamHeaders = headers.streamHeaders.clone();
+        this.infos = headers.infos.clone();
+        this.lastPts = new long[mainHeader.streamCount];
+        this.firstSyncPointPosition = input.getPosition();
+        this.endPosition = endPosition;
+    }
+
+    /**
+     * Verify checksums of packet headers, packets (including syncpoints) and frame headers.
+     * <p>
+     * Frame data isn't covered by NUT checksums.
+     *
+     * @param verifyChecksums true to throw an exception on checksum mismatch, false to ignore checksums (default)
+     */
+    public void setVerifyChecksums(boolean verifyChecksums) {
+        this.verifyChecksums = verifyChecksums;
+    }
+
+    /**
+     * Return frame data as read-only {@link java.nio.ByteBuffer} slices of input's buffer ({@link NutFrame#buffer})
+     * instead of copying it to arrays.
+     * <p>
+     * Slices stay valid only if input is memory-mapped (see {@link NutInputStream#map(java.nio.channels.FileChannel)})
+     * or reads a {@link java.nio.ByteBuffer}. Otherwise frame data must be consumed before reading the next frame.
+     *
+     * @param sliceFrameData true to return data slices
+     */
+    public void setSliceFrameData(boolean sliceFrameData) {
+        this.sliceFrameData = sliceFrameData;
     }
 
     public MainHeader getMainHeader() throws IOException {
@@ -49,6 +117,14 @@ public class NutReader {
         return Arrays.copyOf(infos, infos.length);
     }
 
+    /**
+     * @return position of the first syncpoint, or -1 if there are no syncpoints (and frames)
+     */
+    long getFirstSyncPointPosition() throws IOException {
+        readToFrame();
+        return firstSyncPointPosition;
+    }
+
     // package-private for tests
     private void readToFrame() throws IOException {
         if (input.getPosition() == 0) {
@@ -59,8 +135,12 @@ public class NutReader {
         }
 
         while (input.checkNextByte() == (byte) 'N') {
+            long packetPosition = input.getPosition();
             PacketHeader packetHeader = readPacketHeader();
             long nextPacketPosition = input.getPosition() + packetHeader.forwardPtr;
+            if (verifyChecksums) {
+                input.startCrc32();
+            }
 
             if (packetHeader.startcode == NutConst.MAIN_STARTCODE) {
                 mainHeader = readMainHeader();
@@ -89,6 +169,9 @@ public class NutReader {
                     }
                 }
             } else if (packetHeader.startcode == NutConst.SYNCPOINT_STARTCODE) {
+                if (firstSyncPointPosition == -1) {
+                    firstSyncPointPosition = packetPosition;
+                }
                 SyncPoint syncPoint = readSyncPoint();
                 long pts = syncPoint.globalKeyPts.pts;
                 Rational ptsTimebase = mainHeader.timeBases[syncPoint.globalKeyPts.timebaseId];
@@ -97,11 +180,163 @@ public class NutReader {
                 }
             }
 
-            // Intentionally ignore these headers: INDEX (and reserved headers also)
+            // Intentionally ignore these headers: INDEX (it's read only when seeking) and reserved headers
+
+            finishPacket(packetHeader, nextPacketPosition);
+        }
+    }
+
+    /**
+     * Skips the rest of the packet and reads its footer.
+     */
+    private void finishPacket(PacketHeader packetHeader, long nextPacketPosition) throws IOException {
+        input.skipBytes(nextPacketPosition - input.getPosition() - 4);
+        long crc = verifyChecksums ? input.finishCrc32() : 0;
+        PacketFooter packetFooter = readPacketFooter();
+        if (verifyChecksums) {
+            verifyChecksum("packet " + Long.toHexString(packetHeader.startcode), crc, packetFooter.checksum);
+        }
+    }
+
+    /**
+     * Positions reader at the syncpoint, which precedes the last keyframe of the stream with pts not greater
+     * than specified one. Subsequent {@link #readFrame()} returns frames starting from that syncpoint,
+     * so frames of other streams and frames with lower pts may be returned first.
+     * <p>
+     * Index written at the end of file is used to find the syncpoint.
+     * If there is no index, reader is positioned at the first syncpoint.
+     * If there are no syncpoints (and frames), reader is positioned at the end of file.
+     *
+     * @param streamId stream id
+     * @param pts      pts in stream's timebase
+     * @throws UnsupportedOperationException if input isn't seekable
+     */
+    public void seek(int streamId, long pts) throws IOException {
+        readToFrame();
+        if (!input.isSeekable()) {
+            throw new UnsupportedOperationException("Input isn't seekable");
+        }
+
+        if (!indexRead) {
+            long position = input.getPosition();
+            index = readIndex();
+            indexRead = true;
+            input.seek(position);
+        }
+
+        if (firstSyncPointPosition == -1) {
+            // No syncpoints, hence no frames
+            discardPendingFrame();
+            input.seek(input.size());
+            return;
+        }
+
+        if (index == null || index.getSyncPointCount() == 0) {
+            input.seek(firstSyncPointPosition);
+        } else {
+            int syncPoint = Math.max(index.findSyncPoint(streamId, pts), 0);
+            seekToSyncPoint(index.getSyncPointPosition(syncPoint));
+        }
+
+        // Read syncpoint to restore last pts of every stream
+        discardPendingFrame();
+        readToFrame();
+    }
+
+    /**
+     * Skips frames till the first frame (of any stream) with pts not less than specified one,
+     * which is returned by subsequent {@link #readFrame()}.
+     * <p>
+     * Only frame headers are parsed, data of skipped frames is skipped without reading it to memory,
+     * so it works on non-seekable inputs and files without index. Returned frame isn't necessarily a keyframe.
+     *
+     * @param streamId stream id, which timebase specified pts is in
+     * @param pts      pts in stream's timebase
+     * @return false if end of stream has been reached before
+     * @see #seek(int, long)
+     */
+    public boolean skipTo(int streamId, long pts) throws IOException {
+        readToFrame();
+        if (pendingFrame != null) {
+            if (!isBefore(pendingFrame.streamId, pendingFrame.pts, streamId, pts)) {
+                return true;
+            }
+            discardPendingFrame();
+        }
+
+        NutFrame frame;
+        do {
+            frame = readFrame(streamId, pts);
+        } while (frame == SKIPPED_FRAME);
 
-            input.skipBytes(nextPacketPosition - input.getPosition() - 4);
-            readPacketFooter();
+        pendingFrame = frame;
+        return frame != null;
+    }
+
+    private void discardPendingFrame() {
+        if (pendingFrame != null && pendingFrame.data != null && bufferPool != null) {
+            bufferPool.release(pendingFrame.data);
         }
+        pendingFrame = null;
+    }
+
+    private boolean isBefore(int streamIdA, long ptsA, int streamIdB, long ptsB) {
+        return Rescale.compare(ptsA, mainHeader.timeBases[streamHeaders[streamIdA].timeBaseId],
+                ptsB, mainHeader.timeBases[streamHeaders[streamIdB].timeBaseId]) < 0;
+    }
+
+    /*
+        index_ptr (u(64))
+        Length in bytes of the entire index, from the first byte of the
+        startcode until the last byte of the headerChecksum.
+        Note: A demuxer can use this to find the index when it is written at
+        EOF, as index_ptr will always be 12 bytes before the end of file if
+        there is an index at all.
+     */
+    private NutIndex readIndex() throws IOException {
+        long size = input.size();
+        if (size < 12) {
+            return null;
+        }
+
+        input.seek(size - 12);
+        long indexPtr = input.readLong();
+        if (indexPtr <= 12 || indexPtr > size) {
+            return null;
+        }
+
+        input.seek(size - indexPtr);
+        if (input.checkNextByte() != (byte) 'N') {
+            return null;
+        }
+        PacketHeader packetHeader = readPacketHeader();
+        if (packetHeader.startcode != NutConst.INDEX_STARTCODE) {
+            return null;
+        }
+
+        long nextPacketPosition = input.getPosition() + packetHeader.forwardPtr;
+        if (verifyChecksums) {
+            input.startCrc32();
+        }
+        NutIndex result = NutIndex.read(input, mainHeader.streamCount, mainHeader.timeBases.length);
+        finishPacket(packetHeader, nextPacketPosition);
+
+        return result;
+    }
+
+    /**
+     * Index stores syncpoint positions divided by 16, so actual syncpoint is up to 15 bytes further.
+     */
+    private void seekToSyncPoint(long indexPosition) throws IOException {
+        for (long position = indexPosition; position < indexPosition + 16; position++) {
+            input.seek(position);
+            if (input.checkNextByte() == (byte) 'N' && input.readLong() == NutConst.SYNCPOINT_STARTCODE) {
+                input.seek(position);
+                return;
+            }
+        }
+
+        throw new RuntimeException("Syncpoint not found at index position " + indexPosition);
     }
 
     /*
@@ -112,11 +347,18 @@ public class NutReader {
             header_checksum                 u(32)
      */
     private PacketHeader readPacketHeader() throws IOException {
+        if (verifyChecksums) {
+            input.startCrc32();
+        }
         long startcode = input.readLong();
         long forwardPtr = input.readValue();
+        long crc = verifyChecksums ? input.finishCrc32() : 0;
         long headerChecksum = 0;
         if (forwardPtr > 4096) {
             headerChecksum = input.readInt();
+            if (verifyChecksums) {
+                verifyChecksum("packet header", crc, headerChecksum);
+            }
         }
 
         return new PacketHeader(startcode, forwardPtr, headerChecksum);
@@ -260,16 +502,38 @@ public class NutReader {
     }
 
     public NutFrame readFrame() throws IOException {
+        if (pendingFrame != null) {
+            NutFrame result = pendingFrame;
+            pendingFrame = null;
+            return result;
+        }
+
+        return readFrame(-1, 0);
+    }
+
+    /**
+     * @param skipStreamId stream id of skip target pts, negative to read frame unconditionally
+     * @param skipPts      frames with pts less than this are skipped
+     * @return {@link #SKIPPED_FRAME} if frame has been skipped
+     */
+    private NutFrame readFrame(int skipStreamId, long skipPts) throws IOException {
+        // Syncpoint at the end of partition belongs to the next partition
+        if (input.getPosition() >= endPosition) {
+            return null;
+        }
         readToFrame();
 
         if (!input.hasMoreData()) {
             return null;
         }
 
+        if (verifyChecksums) {
+            input.startCrc32();
+        }
         int frameCode = input.readByte();
         FrameCode frameTable = mainHeader.frameCodes[frameCode];
 
-        Set<FrameCode.Flag> flags = frameTable.flags;
+        int flags = frameTable.flagBits;
         int streamId = frameTable.streamId;
         final StreamHeader streamHeader;
         final long pts;
@@ -282,19 +546,17 @@ public class NutReader {
         DataItem[] sideData = null;
         DataItem[] metaData = null;
 
-        if (flags.contains(FrameCode.Flag.CODED_FLAGS)) {
-            flags = EnumSet.copyOf(flags);
-            Set<FrameCode.Flag> codedFlags = FrameCode.Flag.fromBitCode(input.readValue());
-            // flags = flags XOR codedFlags
-            flags = FrameCode.Flag.xor(flags, codedFlags);
+        if (hasFlag(flags, FrameCode.Flag.CODED_FLAGS)) {
+            int codedFlags = (int) input.readValue();
+            flags ^= codedFlags;
         }
 
-        if (flags.contains(FrameCode.Flag.STREAM_ID)) {
+        if (hasFlag(flags, FrameCode.Flag.STREAM_ID)) {
             streamId = (int) input.readValue();
         }
         streamHeader = streamHeaders[streamId];
 
-        if (flags.contains(FrameCode.Flag.CODED_PTS)) {
+        if (hasFlag(flags, FrameCode.Flag.CODED_PTS)) {
             /*
             If coded_pts < ( 1 << msb_pts_shift ) then it is an lsb
             pts, otherwise it is a full pts + ( 1 << msb_pts_shift ).
@@ -317,22 +579,22 @@ public class NutReader {
             pts = lastPts[streamId] + frameTable.ptsDelta;
         }
 
-        if (flags.contains(FrameCode.Flag.SIZE_MSB)) {
+        if (hasFlag(flags, FrameCode.Flag.SIZE_MSB)) {
             dataSizeMsb = input.readValue();
         }
 
         // MatchTimeDelta is present in NUT specification, but is absent in FFMPEG NUT implementation
-        if (flags.contains(FrameCode.Flag.MATCH_TIME)) {
+        if (hasFlag(flags, FrameCode.Flag.MATCH_TIME)) {
             matchTimeDelta = input.readSignedValue();
         }
 
         // ElisionHeaders are present in NUT specification, but are absent in FFMPEG NUT implementation
-        if (flags.contains(FrameCode.Flag.HEADER_IDX)) {
+        if (hasFlag(flags, FrameCode.Flag.HEADER_IDX)) {
             int elisionHeaderIdx = (int) input.readValue();
             elisionHeaderSize = mainHeader.elisionHeaderSize[elisionHeaderIdx];
         }
 
-        if (flags.contains(FrameCode.Flag.RESERVED)) {
+        if (hasFlag(flags, FrameCode.Flag.RESERVED)) {
             reservedValues = input.readValue();
         }
 
@@ -340,12 +602,15 @@ public class NutReader {
             input.readValue(); // ignore reserved
         }
 
-        // checksum is ignored
-        if (flags.contains(FrameCode.Flag.CHECKSUM)) {
+        long crc = verifyChecksums ? input.finishCrc32() : 0;
+        if (hasFlag(flags, FrameCode.Flag.CHECKSUM)) {
             long checksum = input.readInt();
+            if (verifyChecksums) {
+                verifyChecksum("frame header", crc, checksum);
+            }
         }
 
-        if (flags.contains(FrameCode.Flag.SM_DATA)) {
+        if (hasFlag(flags, FrameCode.Flag.SM_DATA)) {
             sideData = readDataItems();
             metaData = readDataItems();
         }
@@ -359,15 +624,58 @@ public class NutReader {
         long dataSizeWithElision = dataSizeLsb + dataSizeMsb * dataSizeMul;
         long dataSize = dataSizeWithElision - elisionHeaderSize;
 
-        byte[] data = input.readBytes(dataSize);
+        if (skipStreamId >= 0 && isBefore(streamId, pts, skipStreamId, skipPts)) {
+            input.skipBytes(dataSize + elisionHeaderSize);
+            lastPts[streamId] = pts;
+            return SKIPPED_FRAME;
+        }
+
+        byte[] data = null;
+        ByteBuffer buffer = null;
+        if (sliceFrameData) {
+            buffer = input.readSlice((int) dataSize);
+            if (buffer != null && !buffer.isReadOnly()) {
+                buffer = buffer.asReadOnlyBuffer();
+            }
+        } else {
+            data = readFrameData((int) dataSize);
+        }
         input.skipBytes(elisionHeaderSize);
-        boolean keyframe = flags.contains(FrameCode.Flag.KEYFRAME);
-        boolean eor = flags.contains(FrameCode.Flag.EOR) || dataSize == 0;
+        boolean keyframe = hasFlag(flags, FrameCode.Flag.KEYFRAME);
+        boolean eor = hasFlag(flags, FrameCode.Flag.EOR) || dataSize == 0;
 
         lastPts[streamId] = pts;
+        if (sliceFrameData) {
+            return new NutFrame(streamId, pts, buffer, sideData, metaData, keyframe, eor);
+        }
         return new NutFrame(streamId, pts, data, sideData, metaData, keyframe, eor);
     }
 
+    private static boolean hasFlag(int flags, FrameCode.Flag flag) {
+        return (flags & flag.getCode()) != 0;
+    }
+
+    private void verifyChecksum(String what, long crc, long checksum) {
+        if (crc != checksum) {
+            throw new RuntimeException("Checksum mismatch in " + what + " before position " + input.getPosition()
+                    + ": expected " + Long.toHexString(checksum) + ", calculated " + Long.toHexString(crc));
+        }
+    }
+
+    private byte[] readFrameData(int dataSize) throws IOException {
+        if (bufferPool == null) {
+            return input.readBytes(dataSize);
+        }
+
+        byte[] result = bufferPool.acquire(dataSize);
+        if (!input.readBytes(result, dataSize)) {
+            bufferPool.release(result);
+            return null;
+        }
+
+        return result;
+    }
+
     private Info readInfo() throws IOException {
         // stream_id_plus1
         int streamId = (int) (input.readValue() - 1);
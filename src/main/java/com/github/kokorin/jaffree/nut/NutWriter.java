@@ -27,6 +27,8 @@ import java.util.*;
 public class NutWriter {
     private final NutOutputStream output;
     private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    // Temp buffer, used to calculate packet data size
+    private final NutOutputStream bufOutput = new NutOutputStream(buffer, 1024);
 
     private MainHeader mainHeader;
     private StreamHeader[] streamHeaders;
@@ -41,13 +43,41 @@ public class NutWriter {
 
     private long frameOrderingBufferMillis = 200;
 
-    private final List<TsFrame> frameOrderingBuffer = new ArrayList<>();
+    private final FrameOrderingQueue frameOrderingBuffer = new FrameOrderingQueue();
+    // Frame timestamps are compared in common timebase of ticksPerSecond,
+    // ticksPerPts is null if timebases have no common timebase of reasonable precision
+    private long ticksPerSecond;
+    private long[] ticksPerPts;
+    private long maxBufferedTicks = Long.MIN_VALUE;
+    private long frameOrderingBufferMaxBytes = Long.MAX_VALUE;
+    private long bufferedBytes = 0;
+    private long peakBufferedBytes = 0;
+    private int peakBufferedFrames = 0;
+    private long forcedFlushCount = 0;
+    // Indices of frame codes which may be used for a frame, see candidateKey
+    private int[][] frameCodeCandidates;
+    private boolean writeIndex;
+    private NutIndex index;
+
+    // Common timebase must allow at least 100 days of timestamps without overflow
+    private static final long MAX_EXACT_TICKS_PER_SECOND = 1_000_000_000_000L;
+    private static final Rational NANOSECOND = new Rational(1, 1_000_000_000);
+
+    private static final int KEYFRAME = Flag.KEYFRAME.getCode();
+    private static final int EOR = Flag.EOR.getCode();
+    private static final int CODED_PTS = Flag.CODED_PTS.getCode();
+    private static final int STREAM_ID = Flag.STREAM_ID.getCode();
+    private static final int SIZE_MSB = Flag.SIZE_MSB.getCode();
+    private static final int CHECKSUM = Flag.CHECKSUM.getCode();
+    private static final int CODED_FLAGS = Flag.CODED_FLAGS.getCode();
+    private static final int INVALID = Flag.INVALID.getCode();
 
     private static final long MAJOR_VERSION = 3;
     private static final long MINOR_VERSION = 0;
 
     public NutWriter(NutOutputStream output) {
         this.output = output;
+        this.writeIndex = output.isSeekable();
     }
 
     public void setMainHeader(int streamCount, long maxDistance, Rational[] timebases, FrameCode[] frameCodes) {
@@ -64,6 +94,49 @@ public class NutWriter {
                 new long[0],
                 EnumSet.noneOf(MainHeader.Flag.class)
         );
+        this.frameCodeCandidates = selectFrameCodeCandidates(streamCount, frameCodes);
+    }
+
+    /**
+     * For every stream, keyframe and EOR combination selects frame codes which may be used for such frames,
+     * so only pts, size and checksum have to be matched for every frame.
+     */
+    private static int[][] selectFrameCodeCandidates(int streamCount, FrameCode[] frameCodes) {
+        int[][] result = new int[streamCount * 4][];
+        for (int streamId = 0; streamId < streamCount; streamId++) {
+            for (int apiFlags = 0; apiFlags < 4; apiFlags++) {
+                int fdFlags = ((apiFlags & 1) != 0 ? KEYFRAME : 0) | ((apiFlags & 2) != 0 ? EOR : 0);
+                int[] candidates = new int[frameCodes.length];
+                int count = 0;
+
+                for (int i = 0; i < frameCodes.length; i++) {
+                    FrameCode ft = frameCodes[i];
+                    int flags = ft.flagBits;
+                    if ((flags & INVALID) != 0) {
+                        continue;
+                    }
+
+                    if ((flags & CODED_FLAGS) == 0) {
+                        if (((flags ^ fdFlags) & (KEYFRAME | EOR)) != 0) {
+                            continue;
+                        }
+                        if ((flags & STREAM_ID) == 0 && ft.streamId != streamId) {
+                            continue;
+                        }
+                    }
+
+                    candidates[count++] = i;
+                }
+
+                result[candidateKey(streamId, fdFlags)] = Arrays.copyOf(candidates, count);
+            }
+        }
+
+        return result;
+    }
+
+    private static int candidateKey(int streamId, int fdFlags) {
+        return streamId * 4 + ((fdFlags & KEYFRAME) != 0 ? 1 : 0) + ((fdFlags & EOR) != 0 ? 2 : 0);
     }
 
     public void setStreamHeaders(StreamHeader[] streamHeaders) {
@@ -89,6 +162,57 @@ public class NutWriter {
         this.frameOrderingBufferMillis = frameOrderingBufferMillis;
     }
 
+    /**
+     * Limits total size of frame data kept in frame ordering buffer. When the limit is exceeded,
+     * the earliest frames are written regardless of {@link #setFrameOrderingBufferMillis(long)}.
+     * <p>
+     * Frames are written in the caller thread, so it's blocked until ffmpeg reads them.
+     * If a frame arrives later than forcibly written ones, {@link #writeFrame(NutFrame)} fails.
+     * By default buffer size is not limited.
+     *
+     * @param frameOrderingBufferMaxBytes max size of frame data in frame ordering buffer
+     */
+    public void setFrameOrderingBufferMaxBytes(long frameOrderingBufferMaxBytes) {
+        this.frameOrderingBufferMaxBytes = frameOrderingBufferMaxBytes;
+    }
+
+    /**
+     * Index of syncpoints and keyframes is written at the end of file and allows fast seeking,
+     * see {@link NutReader#seek(int, long)}.
+     * <p>
+     * By default index is written only if output is seekable (e.g. a file), because index
+     * requires memory proportional to the number of syncpoints.
+     *
+     * @param writeIndex true to write index
+     */
+    public void setWriteIndex(boolean writeIndex) {
+        if (initialized) {
+            throw new RuntimeException("NutWriter is already initialized!");
+        }
+        this.writeIndex = writeIndex;
+    }
+
+    /**
+     * @return max size of frame data which has been kept in frame ordering buffer
+     */
+    public long getPeakBufferedBytes() {
+        return peakBufferedBytes;
+    }
+
+    /**
+     * @return max number of frames which have been kept in frame ordering buffer
+     */
+    public int getPeakBufferedFrames() {
+        return peakBufferedFrames;
+    }
+
+    /**
+     * @return number of frames written because frame ordering buffer size limit was exceeded
+     */
+    public long getForcedFlushCount() {
+        return forcedFlushCount;
+    }
+
     private void initialize() throws IOException {
         if (initialized) {
             return;
@@ -96,6 +220,9 @@ public class NutWriter {
 
         lastPts = new long[mainHeader.streamCount];
         eor = new boolean[mainHeader.streamCount];
+        if (writeIndex) {
+            index = new NutIndex(mainHeader.streamCount);
+        }
 
         output.writeCString(NutConst.FILE_ID);
         writeMainHeader();
@@ -114,6 +241,8 @@ public class NutWriter {
         }
 
         writeSyncPoint();
+        // Let reader start decoding before the first frame is written
+        output.flush();
 
         initialized = true;
     }
@@ -124,8 +253,6 @@ public class NutWriter {
         }
 
         buffer.reset();
-        // Temp buffer, used to calculate data size
-        NutOutputStream bufOutput = new NutOutputStream(buffer);
 
         bufOutput.writeValue(MAJOR_VERSION);
         if (MAJOR_VERSION > 3) {
@@ -232,8 +359,6 @@ public class NutWriter {
 
     private void writeStreamHeader(StreamHeader streamHeader) throws IOException {
         buffer.reset();
-        // Temp buffer, used to calculate data size
-        NutOutputStream bufOutput = new NutOutputStream(buffer);
 
         bufOutput.writeValue(streamHeader.streamId);
         bufOutput.writeValue(streamHeader.streamType.code);
@@ -276,25 +401,81 @@ public class NutWriter {
         if (closed) {
             throw new RuntimeException("NutWriter is ");
         }
+        if (ticksPerSecond == 0) {
+            initializeCommonTimebase();
+        }
 
-        StreamHeader stream = streamHeaders[frame.streamId];
-        Rational timestamp = mainHeader.timeBases[stream.timeBaseId].multiply(frame.pts);
-        frameOrderingBuffer.add(new TsFrame(timestamp, frame));
-        Collections.sort(frameOrderingBuffer, TsFrame.COMPARATOR);
+        long ticks = toTicks(frame.streamId, frame.pts);
+        frameOrderingBuffer.add(ticks, frame);
+        if (ticks > maxBufferedTicks) {
+            maxBufferedTicks = ticks;
+        }
+        bufferedBytes += frame.data.length;
+        peakBufferedBytes = Math.max(peakBufferedBytes, bufferedBytes);
+        peakBufferedFrames = Math.max(peakBufferedFrames, frameOrderingBuffer.size());
+
+        long windowTicks = frameOrderingBufferMillis / 1000 * ticksPerSecond
+                + frameOrderingBufferMillis % 1000 * ticksPerSecond / 1000;
+        // Write frames which are too far behind the latest buffered frame
+        while (maxBufferedTicks - frameOrderingBuffer.peekTimestamp() > windowTicks) {
+            writeFrameInternal(pollBufferedFrame());
+        }
+
+        while (bufferedBytes > frameOrderingBufferMaxBytes && !frameOrderingBuffer.isEmpty()) {
+            writeFrameInternal(pollBufferedFrame());
+            forcedFlushCount++;
+        }
+    }
+
+    private NutFrame pollBufferedFrame() {
+        NutFrame result = frameOrderingBuffer.poll();
+        if (result != null) {
+            bufferedBytes -= result.data.length;
+        }
+        return result;
+    }
 
-        Rational lastFrameTimestamp = frameOrderingBuffer.get(frameOrderingBuffer.size() - 1).timestamp;
-        // Check if we have to remove some frames from buffer and to write them to ouput
-        Iterator<TsFrame> frameIterator = frameOrderingBuffer.iterator();
-        while (frameIterator.hasNext()) {
-            TsFrame tsFrame = frameIterator.next();
-            // current frame can't be written yet, as well as all subsequent
-            if (lastFrameTimestamp.subtract(tsFrame.timestamp).lessThanOrEqual(new Rational(frameOrderingBufferMillis, 1000))) {
-                break;
+    /**
+     * Finds the least common timebase for all stream timebases, so timestamps can be compared as longs.
+     * Falls back to nanoseconds if timebases are too diverse.
+     */
+    private void initializeCommonTimebase() {
+        Rational[] timeBases = mainHeader.timeBases;
+        long lcm = 1;
+        for (Rational timeBase : timeBases) {
+            lcm = lcm / gcd(lcm, timeBase.denominator) * timeBase.denominator;
+            if (lcm <= 0 || lcm > MAX_EXACT_TICKS_PER_SECOND) {
+                ticksPerSecond = NANOSECOND.denominator;
+                ticksPerPts = null;
+                return;
             }
+        }
 
-            writeFrameInternal(tsFrame.frame);
-            frameIterator.remove();
+        long[] result = new long[timeBases.length];
+        for (int i = 0; i < timeBases.length; i++) {
+            result[i] = timeBases[i].numerator * (lcm / timeBases[i].denominator);
         }
+
+        ticksPerSecond = lcm;
+        ticksPerPts = result;
+    }
+
+    private long toTicks(int streamId, long pts) {
+        int timeBaseId = streamHeaders[streamId].timeBaseId;
+        if (ticksPerPts != null) {
+            return pts * ticksPerPts[timeBaseId];
+        }
+
+        return Util.convertTimestamp(pts, mainHeader.timeBases[timeBaseId], NANOSECOND);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
     }
 
     private void writeFrameInternal(NutFrame frame) throws IOException {
@@ -303,24 +484,25 @@ public class NutWriter {
         // EOR frames by specification use TS of the previous frame in the same stream.
         // TODO do we need this check?
         if (!frame.eor) {
-            Rational maxTs = Rational.ZERO;
-            for (int i = 0; i < mainHeader.timeBases.length; i++) {
-                Rational ts = mainHeader.timeBases[i].multiply(lastPts[i]);
-                if (ts.greaterThan(maxTs)) {
+            long maxTs = 0;
+            for (int i = 0; i < lastPts.length; i++) {
+                long ts = toTicks(i, lastPts[i]);
+                if (ts > maxTs) {
                     maxTs = ts;
                 }
             }
-            StreamHeader steam = streamHeaders[frame.streamId];
-            Rational framedTs = mainHeader.timeBases[steam.timeBaseId].multiply(frame.pts);
-            if (framedTs.lessThan(maxTs)) {
-                throw new RuntimeException("Unordered frames! Try to increase frameOrderingBufferMillis. maxTs: " + maxTs + ", but current: " + framedTs);
+            long frameTs = toTicks(frame.streamId, frame.pts);
+            if (frameTs < maxTs) {
+                throw new RuntimeException("Unordered frames! Try to increase frameOrderingBufferMillis"
+                        + (forcedFlushCount > 0 ? " or frameOrderingBufferMaxBytes" : "") + ". maxTs: "
+                        + new Rational(maxTs, ticksPerSecond) + ", but current: " + new Rational(frameTs, ticksPerSecond));
             }
         }
 
         StreamHeader sc = streamHeaders[frame.streamId];
 
-        int i, ftnum = -1, size = 0, msb_pts = (1 << sc.msbPtsShift);
-        Set<Flag> codedFlags = Collections.emptySet();
+        int ftnum = -1, size = 0, msb_pts = (1 << sc.msbPtsShift);
+        int codedFlags = 0;
         long coded_pts, pts_delta = frame.pts - lastPts[frame.streamId];
         boolean checksum = false;
 
@@ -337,57 +519,35 @@ public class NutWriter {
             checksum = true;
         }
 
-        for (i = 0; i < 256; i++) {
+        int fdFlags = (frame.keyframe ? KEYFRAME : 0) | (frame.eor ? EOR : 0);
+        // Candidates already match frame's stream, keyframe and EOR flags
+        for (int i : frameCodeCandidates[candidateKey(frame.streamId, fdFlags)]) {
             int len = 1; // frame code
             FrameCode ft = mainHeader.frameCodes[i];
 
-            Set<Flag> flags = ft.flags;
-            if (flags.contains(Flag.INVALID)) {
-                continue;
-            }
-
-            Set<Flag> fdFlags = EnumSet.noneOf(Flag.class);
-            if (frame.keyframe) {
-                fdFlags.add(Flag.KEYFRAME);
-            }
-            if (frame.eor) {
-                fdFlags.add(Flag.EOR);
-            }
-
-            if (flags.contains(Flag.CODED_FLAGS)) {
-                flags = EnumSet.copyOf(fdFlags);
+            int flags = ft.flagBits;
+            if ((flags & CODED_FLAGS) != 0) {
+                flags = fdFlags | CODED_FLAGS;
 
                 if (ft.streamId != frame.streamId) {
-                    flags.add(Flag.STREAM_ID);
+                    flags |= STREAM_ID;
                 }
                 if (ft.ptsDelta != pts_delta) {
-                    flags.add(Flag.CODED_PTS);
+                    flags |= CODED_PTS;
                 }
                 if (ft.dataSizeLsb != frame.data.length) {
-                    flags.add(Flag.SIZE_MSB);
+                    flags |= SIZE_MSB;
                 }
                 if (checksum) {
-                    flags.add(Flag.CHECKSUM);
+                    flags |= CHECKSUM;
                 }
-                flags.add(Flag.CODED_FLAGS);
             }
 
-
-            // if ((flags ^ fd -> flags) & NUT_API_FLAGS) continue;
-            Set<Flag> xor = Flag.xor(flags, fdFlags);
-            if (xor.contains(Flag.KEYFRAME) || xor.contains(Flag.EOR)) {
+            if ((flags & CODED_PTS) == 0 && ft.ptsDelta != pts_delta) {
                 continue;
             }
 
-            if (!flags.contains(Flag.STREAM_ID) && ft.streamId != frame.streamId) {
-                continue;
-            }
-
-            if (!flags.contains(Flag.CODED_PTS) && ft.ptsDelta != pts_delta) {
-                continue;
-            }
-
-            if (flags.contains(Flag.SIZE_MSB)) {
+            if ((flags & SIZE_MSB) != 0) {
                 if ((frame.data.length - ft.dataSizeLsb) % ft.dataSizeMul != 0) {
                     continue;
                 }
@@ -397,24 +557,24 @@ public class NutWriter {
                 }
             }
 
-            if (!flags.contains(Flag.CHECKSUM) && checksum) {
+            if ((flags & CHECKSUM) == 0 && checksum) {
                 continue;
             }
 
             // it doesn't fully follow specification, but is simple enough
-            if (flags.contains(Flag.CODED_FLAGS)) {
+            if ((flags & CODED_FLAGS) != 0) {
                 len += 8;
             }
-            if (flags.contains(Flag.STREAM_ID)) {
+            if ((flags & STREAM_ID) != 0) {
                 len += 8;
             }
-            if (flags.contains(Flag.CODED_PTS)) {
+            if ((flags & CODED_PTS) != 0) {
                 len += 8;
             }
-            if (flags.contains(Flag.SIZE_MSB)) {
+            if ((flags & SIZE_MSB) != 0) {
                 len += 8;
             }
-            if (flags.contains(Flag.CHECKSUM)) {
+            if ((flags & CHECKSUM) != 0) {
                 len += 4;
             }
 
@@ -434,23 +594,25 @@ public class NutWriter {
             writeSyncPoint();
         }
 
-        output.resetCrc32();
+        // Frame header checksum is optional, CRC isn't calculated at all if it isn't written
+        if ((codedFlags & CHECKSUM) != 0) {
+            output.resetCrc32();
+        }
         output.writeByte(ftnum);
         FrameCode ft = mainHeader.frameCodes[ftnum];
-        if (codedFlags.contains(Flag.CODED_FLAGS)) {
-            Set<Flag> codedXor = Flag.xor(codedFlags, ft.flags);
-            output.writeValue(Flag.toBitCode(codedXor));
+        if ((codedFlags & CODED_FLAGS) != 0) {
+            output.writeValue(codedFlags ^ ft.flagBits);
         }
-        if (codedFlags.contains(Flag.STREAM_ID)) {
+        if ((codedFlags & STREAM_ID) != 0) {
             output.writeValue(frame.streamId);
         }
-        if (codedFlags.contains(Flag.CODED_PTS)) {
+        if ((codedFlags & CODED_PTS) != 0) {
             output.writeValue(coded_pts);
         }
-        if (codedFlags.contains(Flag.SIZE_MSB)) {
+        if ((codedFlags & SIZE_MSB) != 0) {
             output.writeValue((frame.data.length - ft.dataSizeLsb) / ft.dataSizeMul);
         }
-        if (codedFlags.contains(Flag.CHECKSUM)) {
+        if ((codedFlags & CHECKSUM) != 0) {
             output.writeCrc32();
         }
 
@@ -458,15 +620,19 @@ public class NutWriter {
         output.writeBytes(frame.data);
 
         lastPts[frame.streamId] = frame.pts;
-        eor[frame.streamId] = codedFlags.contains(Flag.EOR);
+        eor[frame.streamId] = (codedFlags & EOR) != 0;
+        if (index != null) {
+            // EOR frames are keyframes too, but pts of EOR is equal to pts of the previous frame
+            index.addFrame(frame.streamId, frame.pts, frame.keyframe && !frame.eor);
+        }
+
+        // Single write per frame: live readers (e.g. ffmpeg reading FrameInput) must get frames without delay
+        output.flush();
     }
 
     public void writeFooter() throws Exception {
         // writeEorFrame uses lastPts, it is updated by writeFrameInternal
-        for (TsFrame tsFrame : frameOrderingBuffer) {
-            writeFrameInternal(tsFrame.frame);
-        }
-        frameOrderingBuffer.clear();
+        flushFrameOrderingBuffer();
 
         for (int streamId = 0; streamId < eor.length; streamId++) {
             if (!eor[streamId]) {
@@ -474,21 +640,31 @@ public class NutWriter {
             }
         }
 
-        for (TsFrame tsFrame : frameOrderingBuffer) {
-            writeFrameInternal(tsFrame.frame);
-        }
-        frameOrderingBuffer.clear();
+        flushFrameOrderingBuffer();
 
         writeMainHeader();
         for (StreamHeader streamHeader : streamHeaders) {
             writeStreamHeader(streamHeader);
         }
 
-        writeSyncPoint();
+        // Index must be the last packet in file
+        if (index != null) {
+            writeIndex();
+        } else {
+            writeSyncPoint();
+        }
+        output.flush();
 
         closed = true;
     }
 
+    private void flushFrameOrderingBuffer() throws IOException {
+        NutFrame frame;
+        while ((frame = pollBufferedFrame()) != null) {
+            writeFrameInternal(frame);
+        }
+    }
+
     private void writeEorFrame(int streamId) throws IOException {
         NutFrame frame = new NutFrame(streamId, lastPts[streamId], new byte[0], null, null, true, true);
         writeFrame(frame);
@@ -497,8 +673,6 @@ public class NutWriter {
 
     private void writeInfo(Info info) throws IOException {
         buffer.reset();
-        // Temp buffer, used to calculate data size
-        NutOutputStream bufOutput = new NutOutputStream(buffer);
 
         // stream_id_plus1
         bufOutput.writeValue(info.streamId + 1);
@@ -516,8 +690,7 @@ public class NutWriter {
         long maxPts = lastPts[0];
         int maxI = 0;
         for (int i = 1; i < mainHeader.timeBases.length; i++) {
-            long pts = Util.convertTimestamp(lastPts[i], mainHeader.timeBases[i], mainHeader.timeBases[maxI]);
-            if (pts > maxPts) {
+            if (Rescale.compare(lastPts[i], mainHeader.timeBases[i], maxPts, mainHeader.timeBases[maxI]) > 0) {
                 maxPts = lastPts[i];
                 maxI = i;
             }
@@ -535,8 +708,6 @@ public class NutWriter {
         }
 
         buffer.reset();
-        // Temp buffer, used to calculate data size
-        NutOutputStream bufOutput = new NutOutputStream(buffer);
 
         bufOutput.writeTimestamp(mainHeader.timeBases.length, syncPoint.globalKeyPts);
         bufOutput.writeValue(syncPoint.backPtrDiv16);
@@ -544,11 +715,50 @@ public class NutWriter {
             bufOutput.writeTimestamp(mainHeader.timeBases.length, syncPoint.transmitTs);
         }
         lastSyncPointPosition = output.getPosition();
+        if (index != null) {
+            index.addSyncPoint(lastSyncPointPosition);
+        }
 
         bufOutput.flush();
         writePacket(NutConst.SYNCPOINT_STARTCODE, buffer.toByteArray());
     }
 
+    private void writeIndex() throws IOException {
+        Timestamp maxTimestamp = new Timestamp(0, 0);
+        Rational maxTimebase = null;
+        for (int i = 0; i < streamHeaders.length; i++) {
+            long pts = index.getMaxPts(i);
+            int timebaseId = streamHeaders[i].timeBaseId;
+            Rational timebase = mainHeader.timeBases[timebaseId];
+            if (pts != NutIndex.NO_PTS
+                    && (maxTimebase == null || Rescale.compare(pts, timebase, maxTimestamp.pts, maxTimebase) > 0)) {
+                maxTimestamp = new Timestamp(timebaseId, pts);
+                maxTimebase = timebase;
+            }
+        }
+
+        buffer.reset();
+        index.write(bufOutput, mainHeader.timeBases.length, maxTimestamp);
+        bufOutput.flush();
+
+        // index_ptr is the length of the whole index packet: startcode, forward_ptr, header checksum,
+        // index data, index_ptr itself and packet checksum
+        long forwardPtr = buffer.size() + 8 + 4;
+        long indexPtr = 8 + valueLength(forwardPtr) + (forwardPtr > 4096 ? 4 : 0) + forwardPtr;
+        bufOutput.writeLong(indexPtr);
+        bufOutput.flush();
+
+        writePacket(NutConst.INDEX_STARTCODE, buffer.toByteArray());
+    }
+
+    private static int valueLength(long value) {
+        int result = 1;
+        while ((value >>= 7) != 0) {
+            result++;
+        }
+        return result;
+    }
+
     private void writeDataItems(DataItem[] items, NutOutputStream output) throws IOException {
         if (items == null) {
             items = new DataItem[0];
@@ -605,24 +815,5 @@ public class NutWriter {
         output.resetCrc32();
         output.writeBytes(data);
         output.writeCrc32();
-        output.flush();
-    }
-
-
-    private static class TsFrame {
-        public final Rational timestamp;
-        public final NutFrame frame;
-
-        private static final Comparator<TsFrame> COMPARATOR = new Comparator<TsFrame>() {
-            @Override
-            public int compare(TsFrame o1, TsFrame o2) {
-                return o1.timestamp.compareTo(o2.timestamp);
-            }
-        };
-
-        public TsFrame(Rational timestamp, NutFrame frame) {
-            this.timestamp = timestamp;
-            this.frame = frame;
-        }
     }
 }
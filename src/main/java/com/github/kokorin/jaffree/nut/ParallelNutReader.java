@@ -0,0 +1,247 @@
+/*
+ *    Copyright  2017 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.nut;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Reads NUT file in parallel: file is split into partitions at syncpoints, every partition is read
+ * by its own {@link NutReader} on {@link ForkJoinPool}.
+ * <p>
+ * Syncpoint resets last pts of all streams, so frames after it can be read without reading preceding frames.
+ * Headers are read once and shared by readers of partitions.
+ * <p>
+ * File is memory-mapped, so partitions are read concurrently without sharing file channel position.
+ */
+public class ParallelNutReader {
+    private final FileChannel channel;
+    private NutReader headers;
+
+    /**
+     * @param channel file channel, it isn't closed by this reader
+     */
+    public ParallelNutReader(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    public MainHeader getMainHeader() throws IOException {
+        return getHeaders().getMainHeader();
+    }
+
+    public StreamHeader[] getStreamHeaders() throws IOException {
+        return getHeaders().getStreamHeaders();
+    }
+
+    public Info[] getInfos() throws IOException {
+        return getHeaders().getInfos();
+    }
+
+    /**
+     * Finds positions of syncpoints, which split file into approximately equal partitions.
+     * <p>
+     * Only bytes near partition boundaries are scanned: a syncpoint is the next valid syncpoint packet
+     * (with matching checksum) after a boundary.
+     *
+     * @param partitionCount max number of partitions
+     * @return ascending positions of the first syncpoint of every partition, empty if file contains no frames
+     */
+    public long[] split(int partitionCount) throws IOException {
+        if (partitionCount < 1) {
+            throw new IllegalArgumentException("Partition count must be positive: " + partitionCount);
+        }
+
+        long dataStart = getHeaders().getFirstSyncPointPosition();
+        if (dataStart < 0) {
+            return new long[0];
+        }
+
+        NutInputStream input = NutInputStream.map(channel);
+        long size = input.size();
+        List<Long> positions = new ArrayList<>();
+        positions.add(dataStart);
+
+        for (int i = 1; i < partitionCount; i++) {
+            long boundary = dataStart + (size - dataStart) / partitionCount * i;
+            long last = positions.get(positions.size() - 1);
+            long syncPoint = findSyncPoint(input, Math.max(boundary, last + 1));
+            if (syncPoint < 0) {
+                break;
+            }
+            positions.add(syncPoint);
+        }
+
+        long[] result = new long[positions.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = positions.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Reads partitions in parallel and merges their results in file order: result of a partition is always
+     * merged with result of the next partition, but merges of different partition pairs run concurrently.
+     * <p>
+     * Partition reader is provided with {@link NutReader}, which returns frames of one partition.
+     * It isn't configured yet, so e.g. {@link NutReader#setSliceFrameData(boolean)} can be set
+     * (slices stay valid as file is mapped).
+     * <p>
+     * Exceptions thrown by partition readers are rethrown wrapped in {@link RuntimeException}.
+     *
+     * @param partitionCount  max number of partitions, e.g. number of cores
+     * @param pool            pool to read partitions on
+     * @param partitionReader partition reader, invoked concurrently
+     * @param merger          merger of results
+     * @param <T>             result type
+     * @return merged result, or null if file contains no frames
+     * @see #split(int)
+     */
+    public <T> T read(int partitionCount, ForkJoinPool pool, PartitionReader<T> partitionReader,
+                      Merger<T> merger) throws IOException {
+        long[] starts = split(partitionCount);
+        if (starts.length == 0) {
+            return null;
+        }
+
+        long[] ends = new long[starts.length];
+        for (int i = 0; i < starts.length - 1; i++) {
+            ends[i] = starts[i + 1];
+        }
+        ends[ends.length - 1] = Long.MAX_VALUE;
+
+        return pool.invoke(new PartitionTask<>(starts, ends, 0, starts.length, partitionReader, merger));
+    }
+
+    private NutReader getHeaders() throws IOException {
+        if (headers == null) {
+            headers = new NutReader(NutInputStream.map(channel));
+            headers.getMainHeader();
+        }
+
+        return headers;
+    }
+
+    private NutReader createPartitionReader(long start, long end) throws IOException {
+        NutInputStream input = NutInputStream.map(channel);
+        input.seek(start);
+        return new NutReader(input, headers, end);
+    }
+
+    /**
+     * @return position of the first syncpoint at or after specified position, or -1 if there is none
+     */
+    private static long findSyncPoint(NutInputStream input, long from) throws IOException {
+        long size = input.size();
+        for (long position = from; position + 8 <= size; position++) {
+            input.seek(position);
+            if (input.checkNextByte() == (byte) 'N' && isSyncPoint(input)) {
+                return position;
+            }
+        }
+
+        return -1;
+    }
+
+    /*
+        Syncpoint packet is small, so it has no header checksum, only packet checksum
+     */
+    private static boolean isSyncPoint(NutInputStream input) throws IOException {
+        if (input.readLong() != NutConst.SYNCPOINT_STARTCODE) {
+            return false;
+        }
+
+        long forwardPtr = input.readValue();
+        if (forwardPtr < 4 || forwardPtr > 4096 || input.getPosition() + forwardPtr > input.size()) {
+            return false;
+        }
+
+        input.startCrc32();
+        input.skipBytes(forwardPtr - 4);
+        long crc = input.finishCrc32();
+
+        return input.readInt() == crc;
+    }
+
+    /**
+     * Reads one partition of NUT file.
+     *
+     * @param <T> result type
+     */
+    public interface PartitionReader<T> {
+        /**
+         * @param reader reader, which returns frames of the partition and then null
+         * @return result of reading the partition
+         */
+        T read(NutReader reader) throws IOException;
+    }
+
+    /**
+     * Merges results of adjacent partitions.
+     *
+     * @param <T> result type
+     */
+    public interface Merger<T> {
+        /**
+         * @param first  result of preceding partitions
+         * @param second result of following partitions
+         * @return merged result
+         */
+        T merge(T first, T second);
+    }
+
+    private class PartitionTask<T> extends RecursiveTask<T> {
+        private final long[] starts;
+        private final long[] ends;
+        private final int from;
+        private final int to;
+        private final PartitionReader<T> partitionReader;
+        private final Merger<T> merger;
+
+        PartitionTask(long[] starts, long[] ends, int from, int to, PartitionReader<T> partitionReader,
+                      Merger<T> merger) {
+            this.starts = starts;
+            this.ends = ends;
+            this.from = from;
+            this.to = to;
+            this.partitionReader = partitionReader;
+            this.merger = merger;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from == 1) {
+                try {
+                    return partitionReader.read(createPartitionReader(starts[from], ends[from]));
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to read partition starting at " + starts[from], e);
+                }
+            }
+
+            int middle = (from + to) >>> 1;
+            PartitionTask<T> second = new PartitionTask<>(starts, ends, middle, to, partitionReader, merger);
+            second.fork();
+            T first = new PartitionTask<>(starts, ends, from, middle, partitionReader, merger).compute();
+
+            return merger.merge(first, second.join());
+        }
+    }
+}
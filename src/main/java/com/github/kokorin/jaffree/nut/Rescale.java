@@ -0,0 +1,251 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+
+/**
+ * Allocation-free timestamp arithmetic, counterpart of ffmpeg's av_rescale_rnd, av_rescale_q and av_compare_ts.
+ * <p>
+ * Intermediate products are computed with 128 bits, so results are exact (up to requested rounding)
+ * whenever they fit into long.
+ */
+public final class Rescale {
+    private static final long LOW_32_BITS = 0xFFFFFFFFL;
+
+    private Rescale() {
+    }
+
+    public enum Rounding {
+        /**
+         * Round toward zero.
+         */
+        ZERO,
+        /**
+         * Round away from zero.
+         */
+        INF,
+        /**
+         * Round toward negative infinity.
+         */
+        DOWN,
+        /**
+         * Round toward positive infinity.
+         */
+        UP,
+        /**
+         * Round to nearest, halfway cases away from zero.
+         */
+        NEAR_INF
+    }
+
+    /**
+     * Calculates a * b / c with specified rounding.
+     *
+     * @param a        value
+     * @param b        multiplier
+     * @param c        divisor, must be positive
+     * @param rounding rounding
+     * @return rescaled value
+     * @throws ArithmeticException if result doesn't fit into long
+     */
+    public static long rescale(long a, long b, long c, Rounding rounding) {
+        if (c <= 0) {
+            throw new IllegalArgumentException("Divisor must be positive: " + c);
+        }
+
+        boolean negative = (a < 0) != (b < 0) && a != 0 && b != 0;
+        // Math.abs(Long.MIN_VALUE) is Long.MIN_VALUE, which is 2^63 if treated as unsigned
+        long absA = Math.abs(a);
+        long absB = Math.abs(b);
+
+        long low = absA * absB;
+        long high = multiplyHighUnsigned(absA, absB);
+
+        long quotient;
+        long remainder;
+        if (high == 0) {
+            quotient = Long.divideUnsigned(low, c);
+            remainder = Long.remainderUnsigned(low, c);
+        } else {
+            if (Long.compareUnsigned(high, c) >= 0) {
+                throw overflow(a, b, c);
+            }
+
+            // Bitwise long division, remainder never exceeds 2^63, so shifting it left doesn't lose bits
+            quotient = 0;
+            remainder = high;
+            for (int i = 63; i >= 0; i--) {
+                remainder = (remainder << 1) | ((low >>> i) & 1);
+                quotient <<= 1;
+                if (Long.compareUnsigned(remainder, c) >= 0) {
+                    remainder -= c;
+                    quotient |= 1;
+                }
+            }
+        }
+
+        // Magnitude of any long is at most 2^63, checking it first also prevents wrapping on rounding
+        if (Long.compareUnsigned(quotient, Long.MIN_VALUE) > 0) {
+            throw overflow(a, b, c);
+        }
+        if (remainder != 0 && roundsUp(rounding, negative, remainder, c)) {
+            quotient++;
+        }
+
+        if (negative) {
+            // 2^63 (which is Long.MIN_VALUE as signed) is the only magnitude above Long.MAX_VALUE allowed
+            if (quotient < 0 && quotient != Long.MIN_VALUE) {
+                throw overflow(a, b, c);
+            }
+            return -quotient;
+        }
+
+        if (quotient < 0) {
+            throw overflow(a, b, c);
+        }
+        return quotient;
+    }
+
+    /**
+     * Converts timestamp from one timebase to another, rounding to nearest.
+     *
+     * @param ts   timestamp
+     * @param from source timebase
+     * @param to   target timebase
+     * @return timestamp in target timebase
+     */
+    public static long rescale(long ts, Rational from, Rational to) {
+        return rescale(ts, from, to, Rounding.NEAR_INF);
+    }
+
+    /**
+     * Converts timestamp from one timebase to another.
+     *
+     * @param ts       timestamp
+     * @param from     source timebase
+     * @param to       target timebase
+     * @param rounding rounding
+     * @return timestamp in target timebase
+     */
+    public static long rescale(long ts, Rational from, Rational to, Rounding rounding) {
+        return rescale(ts, from.numerator, from.denominator, to.numerator, to.denominator, rounding);
+    }
+
+    /**
+     * Converts timestamp from fromNum/fromDen timebase to toNum/toDen timebase.
+     *
+     * @return timestamp in target timebase
+     */
+    public static long rescale(long ts, long fromNum, long fromDen, long toNum, long toDen, Rounding rounding) {
+        return rescale(ts, Math.multiplyExact(fromNum, toDen), Math.multiplyExact(fromDen, toNum), rounding);
+    }
+
+    /**
+     * Compares timestamps in different timebases exactly.
+     *
+     * @param tsA timestamp a
+     * @param tbA timebase of a
+     * @param tsB timestamp b
+     * @param tbB timebase of b
+     * @return -1 if a is before b, 1 if a is after b, 0 otherwise
+     */
+    public static int compare(long tsA, Rational tbA, long tsB, Rational tbB) {
+        return compare(tsA, tbA.numerator, tbA.denominator, tsB, tbB.numerator, tbB.denominator);
+    }
+
+    /**
+     * Compares timestamps in different timebases exactly.
+     *
+     * @return -1 if a is before b, 1 if a is after b, 0 otherwise
+     */
+    public static int compare(long tsA, long numA, long denA, long tsB, long numB, long denB) {
+        // a * numA / denA <=> b * numB / denB, both denominators are positive
+        return compareProducts(tsA, Math.multiplyExact(numA, denB), tsB, Math.multiplyExact(numB, denA));
+    }
+
+    /**
+     * Compares a * b with c * d without overflow.
+     */
+    static int compareProducts(long a, long b, long c, long d) {
+        int signAB = Long.signum(a) * Long.signum(b);
+        int signCD = Long.signum(c) * Long.signum(d);
+        if (signAB != signCD) {
+            return signAB < signCD ? -1 : 1;
+        }
+        if (signAB == 0) {
+            return 0;
+        }
+
+        long absA = Math.abs(a);
+        long absB = Math.abs(b);
+        long absC = Math.abs(c);
+        long absD = Math.abs(d);
+        int result = Long.compareUnsigned(multiplyHighUnsigned(absA, absB), multiplyHighUnsigned(absC, absD));
+        if (result == 0) {
+            result = Long.compareUnsigned(absA * absB, absC * absD);
+        }
+        if (result == 0) {
+            return 0;
+        }
+
+        // Greater magnitude of negative products means lesser value
+        result = result < 0 ? -1 : 1;
+        return signAB > 0 ? result : -result;
+    }
+
+    /**
+     * Returns high 64 bits of unsigned 128-bit product.
+     */
+    static long multiplyHighUnsigned(long x, long y) {
+        long x0 = x & LOW_32_BITS;
+        long x1 = x >>> 32;
+        long y0 = y & LOW_32_BITS;
+        long y1 = y >>> 32;
+
+        long p00 = x0 * y0;
+        long p01 = x0 * y1;
+        long p10 = x1 * y0;
+        long p11 = x1 * y1;
+
+        long middle = (p00 >>> 32) + (p01 & LOW_32_BITS) + (p10 & LOW_32_BITS);
+        return p11 + (p01 >>> 32) + (p10 >>> 32) + (middle >>> 32);
+    }
+
+    private static ArithmeticException overflow(long a, long b, long c) {
+        return new ArithmeticException("Rescaled value doesn't fit into long: " + a + " * " + b + " / " + c);
+    }
+
+    private static boolean roundsUp(Rounding rounding, boolean negative, long remainder, long divisor) {
+        switch (rounding) {
+            case ZERO:
+                return false;
+            case INF:
+                return true;
+            case DOWN:
+                return negative;
+            case UP:
+                return !negative;
+            case NEAR_INF:
+                // remainder >= divisor - remainder, both are below 2^63
+                return remainder >= divisor - remainder;
+            default:
+                throw new IllegalArgumentException("Unknown rounding: " + rounding);
+        }
+    }
+}
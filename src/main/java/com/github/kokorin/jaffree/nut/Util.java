@@ -45,12 +45,16 @@ public class Util {
     }
 
 
+    /**
+     * Converts timestamp as convert_ts of NUT specification does: (pts * from.num * to.den) / (from.den * to.num),
+     * rounded toward zero.
+     * <p>
+     * Unlike the formula from specification, calculation doesn't overflow.
+     *
+     * @see Rescale#rescale(long, Rational, Rational, Rescale.Rounding)
+     */
     public static long convertTimestamp(long pts, Rational timeBaseFrom, Rational timeBaseTo) {
-        long ln = timeBaseFrom.numerator * pts;
-        long sn = timeBaseTo.denominator;
-        long d1 = timeBaseFrom.denominator;
-        long d2 = timeBaseTo.numerator;
-        return (ln / d1 * sn + ln % d1 * sn / d1) / d2;
+        return Rescale.rescale(pts, timeBaseFrom, timeBaseTo, Rescale.Rounding.ZERO);
     }
 
     public static long toMillis(long pts, Rational timebase) {
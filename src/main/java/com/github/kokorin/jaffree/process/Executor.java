@@ -23,24 +23,61 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class Executor {
     private final Thread starter;
     private final String contextName;
+    private final java.util.concurrent.Executor backend;
+    private final Runnable failureAction;
 
     private final List<Exception> exceptions = new CopyOnWriteArrayList<>();
-    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    // Threads which are running tasks of this Executor at the moment.
+    // Pooled threads are removed after task completion, so they never get interrupted on behalf of another process
+    private final List<Thread> threads = new ArrayList<>();
     private final AtomicInteger runningCounter = new AtomicInteger();
+    // Monitor which is notified when the last running task finishes
+    private final Object completion = new Object();
     private final AtomicBoolean starterInterrupted = new AtomicBoolean();
     private volatile boolean stopped = false;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Executor.class);
 
     public Executor(String contextName) {
+        this(contextName, null);
+    }
+
+    /**
+     * Creates Executor which runs tasks with provided backend.
+     *
+     * @param contextName context name
+     * @param backend     backend to run tasks, {@link HelperExecutors#getDefault()} is used if null
+     */
+    public Executor(String contextName, java.util.concurrent.Executor backend) {
+        this(contextName, backend, null);
+    }
+
+    /**
+     * Creates Executor which runs tasks with provided backend.
+     * <p>
+     * Failure action is invoked once, when the first task fails. By default starter thread
+     * (which created this Executor) is interrupted. Asynchronous callers must provide another action,
+     * since nobody waits in starter thread.
+     *
+     * @param contextName   context name
+     * @param backend       backend to run tasks, {@link HelperExecutors#getDefault()} is used if null
+     * @param failureAction action to invoke on the first task failure, null to interrupt starter thread
+     */
+    public Executor(String contextName, java.util.concurrent.Executor backend, Runnable failureAction) {
         this.starter = Thread.currentThread();
         this.contextName = contextName;
+        if (backend == null) {
+            backend = HelperExecutors.getDefault();
+        }
+        this.backend = backend;
+        this.failureAction = failureAction;
     }
 
     /**
@@ -52,19 +89,57 @@ public class Executor {
      * @param runnable runnable to execute
      */
     public void execute(final String name, final Runnable runnable) {
+        execute(name, runnable, null);
+    }
+
+    /**
+     * Executes provided Runnable and then invokes onFinish callback.
+     * <p>
+     * Callback is invoked in the same thread, after the task is no longer counted as running,
+     * so it may safely wait for other tasks.
+     *
+     * @param name     thread name suffix
+     * @param runnable runnable to execute
+     * @param onFinish callback, invoked regardless of task outcome, may be null
+     * @see #execute(String, Runnable)
+     */
+    public void execute(final String name, final Runnable runnable, final Runnable onFinish) {
         if (stopped) {
             throw new RuntimeException("Executor has been stopped already!");
         }
 
-        final Thread starter = Thread.currentThread();
+        // Counter is incremented before submission: task may be queued by backend
+        runningCounter.incrementAndGet();
+        try {
+            backend.execute(createTask(name, runnable, onFinish));
+        } catch (RuntimeException e) {
+            if (runningCounter.decrementAndGet() == 0) {
+                synchronized (completion) {
+                    completion.notifyAll();
+                }
+            }
+            throw e;
+        }
+    }
+
+    private Runnable createTask(final String name, final Runnable runnable, final Runnable onFinish) {
+        final String threadName = getThreadName(name);
 
-        Thread thread = new Thread(new Runnable() {
+        return new Runnable() {
             @Override
             public void run() {
+                Thread current = Thread.currentThread();
+                String originalName = current.getName();
+                current.setName(threadName);
+                synchronized (threads) {
+                    threads.add(current);
+                }
+
                 LOGGER.debug("{} thread has started", name);
-                runningCounter.incrementAndGet();
                 try {
-                    runnable.run();
+                    if (!stopped) {
+                        runnable.run();
+                    }
                 } catch (Exception e) {
                     LOGGER.debug("Exception in thread {}, collecting for later report. Message: {}", name, e.getMessage());
                     exceptions.add(e);
@@ -72,19 +147,38 @@ public class Executor {
                     // Starter thread MUST NOT be interrupted multiple times,
                     // otherwise main thread may be marked for interruption after exiting ProcessHandler logic.
                     if (!stopped && starterInterrupted.compareAndSet(false, true)) {
-                        LOGGER.warn("Interrupting starter thread ({}) because of exception: {}", starter.getName(), e.getMessage());
-                        starter.interrupt();
+                        if (failureAction != null) {
+                            LOGGER.warn("Invoking failure action because of exception: {}", e.getMessage());
+                            failureAction.run();
+                        } else {
+                            LOGGER.warn("Interrupting starter thread ({}) because of exception: {}", starter.getName(), e.getMessage());
+                            starter.interrupt();
+                        }
                     }
                 } finally {
-                    runningCounter.decrementAndGet();
+                    synchronized (threads) {
+                        threads.remove(current);
+                    }
+                    // Clear interrupted status, it must not leak to next task of pooled thread
+                    Thread.interrupted();
+                    current.setName(originalName);
                     LOGGER.debug("{} thread has finished", name);
+                    if (runningCounter.decrementAndGet() == 0) {
+                        synchronized (completion) {
+                            completion.notifyAll();
+                        }
+                    }
                 }
-            }
-        }, getThreadName(name));
-        thread.setDaemon(true);
-        thread.start();
 
-        threads.add(thread);
+                if (onFinish != null) {
+                    try {
+                        onFinish.run();
+                    } catch (Exception e) {
+                        LOGGER.warn("Ignoring exception in finish callback of {}: {}", name, e.getMessage());
+                    }
+                }
+            }
+        };
     }
 
     public Exception getException() {
@@ -103,10 +197,12 @@ public class Executor {
     public void stop() {
         stopped = true;
         LOGGER.debug("Stopping execution");
-        for (Thread thread : threads) {
-            if (thread.isAlive() && !thread.isInterrupted()) {
-                LOGGER.warn("Interrupting ALIVE thread: {}", thread.getName());
-                thread.interrupt();
+        synchronized (threads) {
+            for (Thread thread : threads) {
+                if (thread.isAlive() && !thread.isInterrupted()) {
+                    LOGGER.warn("Interrupting ALIVE thread: {}", thread.getName());
+                    thread.interrupt();
+                }
             }
         }
     }
@@ -115,11 +211,38 @@ public class Executor {
         return runningCounter.get() > 0;
     }
 
+    /**
+     * Blocks until all executed tasks have finished, or the timeout occurs.
+     * <p>
+     * Returns as soon as the last task finishes, without polling.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the time unit of the timeout argument
+     * @return true if all tasks have finished, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitStop(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (completion) {
+            while (isRunning()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(completion, remaining);
+            }
+        }
+
+        return true;
+    }
+
     public List<String> getRunningThreadNames() {
         List<String> result = new ArrayList<>();
-        for (Thread thread : threads) {
-            if (thread.isAlive() && !thread.isInterrupted()) {
-                result.add(thread.getName());
+        synchronized (threads) {
+            for (Thread thread : threads) {
+                if (thread.isAlive() && !thread.isInterrupted()) {
+                    result.add(thread.getName());
+                }
             }
         }
 
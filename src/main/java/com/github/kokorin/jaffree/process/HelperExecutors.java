@@ -0,0 +1,191 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.process;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory and JVM-wide registry of backends which run helper tasks (StdOut, StdErr, Input and Output helpers)
+ * of ffmpeg and ffprobe processes.
+ * <p>
+ * Backend can be configured once per JVM with {@link #setDefault(Executor)}
+ * or per {@link com.github.kokorin.jaffree.ffmpeg.FFmpeg} / {@link com.github.kokorin.jaffree.ffprobe.FFprobe}
+ * instance.
+ * <p>
+ * <b>Note</b>: every helper task blocks for the whole lifetime of a process. Backend must be able to run
+ * all helper tasks of a process simultaneously, otherwise the process may hang.
+ */
+public final class HelperExecutors {
+    private static final Executor THREAD_PER_TASK = new ThreadPerTaskExecutor(new DaemonThreadFactory("Jaffree-helper"));
+    private static volatile Executor defaultExecutor = THREAD_PER_TASK;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HelperExecutors.class);
+
+    private HelperExecutors() {
+    }
+
+    /**
+     * @return backend which is used if no backend is specified explicitly
+     */
+    public static Executor getDefault() {
+        return defaultExecutor;
+    }
+
+    /**
+     * Sets JVM-wide backend which is used if no backend is specified explicitly.
+     *
+     * @param executor backend, null to restore thread-per-task behavior
+     */
+    public static void setDefault(Executor executor) {
+        if (executor == null) {
+            executor = THREAD_PER_TASK;
+        }
+        defaultExecutor = executor;
+    }
+
+    /**
+     * Returns backend which starts new daemon thread for every helper task. This is default behavior.
+     *
+     * @return thread-per-task backend
+     */
+    public static Executor threadPerTask() {
+        return THREAD_PER_TASK;
+    }
+
+    /**
+     * Creates shared pool which keeps at most maxThreads threads.
+     * <p>
+     * Idle threads are terminated after 60 seconds. If all pooled threads are busy, helper task is
+     * started in a dedicated daemon thread (so a saturated pool never blocks a process),
+     * such thread is not reused.
+     *
+     * @param maxThreads max number of pooled threads
+     * @return bounded pool
+     */
+    public static ExecutorService newBoundedPool(int maxThreads) {
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("maxThreads must be positive: " + maxThreads);
+        }
+
+        ThreadPoolExecutor result = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new DaemonThreadFactory("Jaffree-pool"),
+                new OverflowPolicy());
+        return result;
+    }
+
+    /**
+     * Checks if JVM supports virtual threads (JDK 21 or later).
+     *
+     * @return true if virtual threads are supported
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreadFactoryHolder.FACTORY != null;
+    }
+
+    /**
+     * Returns backend which starts new virtual thread for every helper task.
+     *
+     * @return virtual thread backend
+     * @throws UnsupportedOperationException if JVM doesn't support virtual threads
+     * @see #isVirtualThreadSupported()
+     */
+    public static Executor virtualThreadPerTask() {
+        ThreadFactory factory = VirtualThreadFactoryHolder.FACTORY;
+        if (factory == null) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this JVM");
+        }
+
+        return new ThreadPerTaskExecutor(factory);
+    }
+
+    private static class ThreadPerTaskExecutor implements Executor {
+        private final ThreadFactory threadFactory;
+
+        ThreadPerTaskExecutor(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            threadFactory.newThread(command).start();
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        DaemonThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread result = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            result.setDaemon(true);
+            return result;
+        }
+    }
+
+    private static class OverflowPolicy implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RuntimeException("Helper pool has been shut down");
+            }
+
+            LOGGER.debug("Helper pool is saturated ({} threads), starting dedicated thread", executor.getMaximumPoolSize());
+            THREAD_PER_TASK.execute(runnable);
+        }
+    }
+
+    /**
+     * Lazily looks up virtual thread factory via reflection, because Jaffree is compiled for older JDKs.
+     */
+    private static class VirtualThreadFactoryHolder {
+        private static final ThreadFactory FACTORY = lookup();
+
+        private static ThreadFactory lookup() {
+            try {
+                // Methods are looked up via public interface, builder implementation is package-private
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                Method ofVirtual = Thread.class.getMethod("ofVirtual");
+                Method name = builderClass.getMethod("name", String.class, long.class);
+                Method factory = builderClass.getMethod("factory");
+
+                Object builder = ofVirtual.invoke(null);
+                builder = name.invoke(builder, "Jaffree-virtual-", 1L);
+                return (ThreadFactory) factory.invoke(builder);
+            } catch (Exception e) {
+                LOGGER.debug("Virtual threads are not available: {}", e.toString());
+                return null;
+            }
+        }
+    }
+}
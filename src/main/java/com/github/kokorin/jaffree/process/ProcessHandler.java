@@ -26,6 +26,10 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class ProcessHandler<T> {
@@ -35,6 +39,8 @@ public class ProcessHandler<T> {
     private StdReader<T> stdErrReader = new GobblingStdReader<>();
     private List<Runnable> runnables = null;
     private Stopper stopper = null;
+    private java.util.concurrent.Executor helperExecutor = null;
+    private ProcessTimingsListener timingsListener = null;
     private List<String> arguments = Collections.emptyList();
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ProcessHandler.class);
@@ -70,54 +76,173 @@ public class ProcessHandler<T> {
         return this;
     }
 
+    /**
+     * Set backend to run StdOut, StdErr and extra {@link Runnable}s.
+     *
+     * @param helperExecutor backend, {@link HelperExecutors#getDefault()} is used if null
+     * @return this
+     */
+    public synchronized ProcessHandler<T> setHelperExecutor(java.util.concurrent.Executor helperExecutor) {
+        this.helperExecutor = helperExecutor;
+        return this;
+    }
+
+    /**
+     * Set listener to be notified about process spawn-to-exit and exit-to-return latencies.
+     *
+     * @param timingsListener listener
+     * @return this
+     */
+    public synchronized ProcessHandler<T> setTimingsListener(ProcessTimingsListener timingsListener) {
+        this.timingsListener = timingsListener;
+        return this;
+    }
+
     public synchronized ProcessHandler<T> setArguments(List<String> arguments) {
         this.arguments = arguments;
         return this;
     }
 
     public synchronized T execute() {
+        Process process = null;
+        try {
+            long spawnedNanos = System.nanoTime();
+            process = startProcess();
+
+            return interactWithProcess(process, spawnedNanos);
+        } finally {
+            if (process != null) {
+                destroyQuietly(process);
+            }
+        }
+    }
+
+    /**
+     * Starts process and returns immediately.
+     * <p>
+     * No thread waits for the process: returned future is completed when process output has been read
+     * (i.e. process has exited) and all helper {@link Runnable}s have finished.
+     * <p>
+     * Cancelling returned future stops the process: gracefully with {@link Stopper} if it's set and
+     * cancel is invoked with mayInterruptIfRunning=false, forcefully otherwise.
+     *
+     * @param completionExecutor executor to complete returned future (and to run dependent stages) in,
+     *                           if null future is completed in the helper thread which finished last
+     * @return future result
+     */
+    public synchronized CompletableFuture<T> executeAsync(final java.util.concurrent.Executor completionExecutor) {
+        final long spawnedNanos = System.nanoTime();
+        final Process process;
+        try {
+            process = startProcess();
+        } catch (RuntimeException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+
+        final ProcessFuture<T> result = new ProcessFuture<>(process, stopper);
+        final AtomicReference<T> resultRef = new AtomicReference<>();
+        final AtomicReference<Executor> executorRef = new AtomicReference<>();
+
+        final Runnable complete = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.complete(waitForResult(process, executorRef.get(), resultRef, spawnedNanos));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    destroyQuietly(process);
+                }
+            }
+        };
+
+        Runnable onPipesClosed = new Runnable() {
+            @Override
+            public void run() {
+                if (completionExecutor == null) {
+                    complete.run();
+                    return;
+                }
+
+                try {
+                    completionExecutor.execute(complete);
+                } catch (RejectedExecutionException e) {
+                    LOGGER.warn("Completion executor rejected task, completing in helper thread");
+                    complete.run();
+                }
+            }
+        };
+
+        // Destroying the process makes all helpers (and the process exit) finish,
+        // it's an asynchronous counterpart of starter thread interruption
+        Runnable onFailure = new Runnable() {
+            @Override
+            public void run() {
+                process.destroy();
+            }
+        };
+
+        try {
+            startExecution(process, resultRef, executorRef, onFailure, onPipesClosed);
+        } catch (RuntimeException e) {
+            if (executorRef.get() != null) {
+                executorRef.get().stop();
+            }
+            destroyQuietly(process);
+            result.completeExceptionally(e);
+        }
+
+        return result;
+    }
+
+    protected Process startProcess() {
         List<String> command = new ArrayList<>();
         command.add(executable.toString());
         command.addAll(arguments);
 
         LOGGER.info("Command constructed:\n{}", joinArguments(command));
 
-        Process process = null;
         try {
             LOGGER.info("Starting process: {}", executable);
-            process = new ProcessBuilder(command)
+            Process process = new ProcessBuilder(command)
                     .start();
             if (stopper != null) {
                 stopper.setProcess(process);
             }
 
-            return interactWithProcess(process);
+            return process;
         } catch (IOException e) {
             throw new RuntimeException("Failed to start process.", e);
-        } finally {
-            if (process != null) {
-                // TODO on Windows process sometimes doesn't stop and keeps running
-                process.destroy();
-                // Process must be destroyed before closing streams, can't use try-with-resources,
-                // as resources are closing when leaving try block, before finally
-                closeQuietly(process.getInputStream());
-                closeQuietly(process.getOutputStream());
-                closeQuietly(process.getErrorStream());
-            }
         }
     }
 
-    protected T interactWithProcess(Process process) {
+    protected T interactWithProcess(Process process, long spawnedNanos) {
         AtomicReference<T> resultRef = new AtomicReference<>();
-        Executor executor = null;
+        AtomicReference<Executor> executorRef = new AtomicReference<>();
+
+        try {
+            startExecution(process, resultRef, executorRef, null, null);
+        } catch (RuntimeException e) {
+            if (executorRef.get() != null) {
+                executorRef.get().stop();
+            }
+            throw e;
+        }
+
+        return waitForResult(process, executorRef.get(), resultRef, spawnedNanos);
+    }
+
+    private T waitForResult(Process process, Executor executor, AtomicReference<T> resultRef, long spawnedNanos) {
         Integer status = null;
         Exception interrupted = null;
+        Long exitedNanos = null;
 
         try {
-            executor = startExecution(process, resultRef);
-
             LOGGER.info("Waiting for process to finish");
             status = process.waitFor();
+            exitedNanos = System.nanoTime();
             LOGGER.info("Process has finished with status: {}", status);
 
             waitForExecutorToStop(executor, 10_000);
@@ -125,15 +250,13 @@ public class ProcessHandler<T> {
             LOGGER.warn("Process has been interrupted");
             interrupted = e;
         } finally {
-            if (executor != null) {
-                executor.stop();
+            executor.stop();
+            if (exitedNanos != null) {
+                notifyTimings(spawnedNanos, exitedNanos);
             }
         }
 
-        Exception exception = null;
-        if (executor != null) {
-            exception = executor.getException();
-        }
+        Exception exception = executor.getException();
         if (exception != null) {
             throw new RuntimeException("Failed to execute, exception appeared in one of helper threads", exception);
         }
@@ -154,11 +277,37 @@ public class ProcessHandler<T> {
         return result;
     }
 
-    protected Executor startExecution(final Process process, final AtomicReference<T> resultReference) {
-        Executor executor = new Executor(contextName);
+    /**
+     * Starts StdErr, StdOut readers and extra {@link Runnable}s.
+     *
+     * @param process         process
+     * @param resultReference reference to store result
+     * @param executorRef     reference to store created Executor, it's set before any task is started
+     * @param failureAction   action to invoke on helper failure, null to interrupt current thread
+     * @param onPipesClosed   callback to invoke once both StdErr and StdOut have been read, may be null
+     */
+    protected void startExecution(final Process process, final AtomicReference<T> resultReference,
+                                  AtomicReference<Executor> executorRef, Runnable failureAction,
+                                  final Runnable onPipesClosed) {
+        Executor executor = new Executor(contextName, helperExecutor, failureAction);
+        executorRef.set(executor);
 
         LOGGER.debug("Starting IO interaction with process");
 
+        int readerCount = (stdErrReader != null ? 1 : 0) + (stdOutReader != null ? 1 : 0);
+        final AtomicInteger openPipes = new AtomicInteger(readerCount);
+        Runnable onReaderFinish = null;
+        if (onPipesClosed != null) {
+            onReaderFinish = new Runnable() {
+                @Override
+                public void run() {
+                    if (openPipes.decrementAndGet() == 0) {
+                        onPipesClosed.run();
+                    }
+                }
+            };
+        }
+
         if (stdErrReader != null) {
             executor.execute("StdErr", new Runnable() {
                 @Override
@@ -171,7 +320,7 @@ public class ProcessHandler<T> {
                         }
                     }
                 }
-            });
+            }, onReaderFinish);
         }
 
         if (stdOutReader != null) {
@@ -186,7 +335,7 @@ public class ProcessHandler<T> {
                         }
                     }
                 }
-            });
+            }, onReaderFinish);
         }
 
         if (runnables != null) {
@@ -196,7 +345,10 @@ public class ProcessHandler<T> {
             }
         }
 
-        return executor;
+        if (readerCount == 0 && onPipesClosed != null) {
+            // Nothing signals process exit, completion has to block on Process.waitFor()
+            onPipesClosed.run();
+        }
     }
 
     protected static String joinArguments(List<String> arguments) {
@@ -215,6 +367,15 @@ public class ProcessHandler<T> {
     }
 
 
+    private static void destroyQuietly(Process process) {
+        // TODO on Windows process sometimes doesn't stop and keeps running
+        process.destroy();
+        // Process must be destroyed before closing streams
+        closeQuietly(process.getInputStream());
+        closeQuietly(process.getOutputStream());
+        closeQuietly(process.getErrorStream());
+    }
+
     private static void closeQuietly(Closeable toClose) {
         try {
             if (toClose != null) {
@@ -225,18 +386,56 @@ public class ProcessHandler<T> {
         }
     }
 
-    private static void waitForExecutorToStop(Executor executor, long timeoutMillis) throws InterruptedException {
-        LOGGER.debug("Waiting for Executor to stop");
+    private void notifyTimings(long spawnedNanos, long exitedNanos) {
+        ProcessTimings timings = new ProcessTimings(exitedNanos - spawnedNanos, System.nanoTime() - exitedNanos);
+        LOGGER.debug("Process timings: {}", timings);
+        if (timingsListener == null) {
+            return;
+        }
+
+        try {
+            timingsListener.onTimings(timings);
+        } catch (Exception e) {
+            LOGGER.warn("Ignoring exception thrown by timings listener: {}", e.getMessage());
+        }
+    }
 
-        long waitStarted = System.currentTimeMillis();
-        do {
-            if (System.currentTimeMillis() - waitStarted > timeoutMillis) {
-                LOGGER.warn("Executor hasn't stopped in {} millis, won't wait longer", timeoutMillis);
-                break;
+    /**
+     * Future which stops the process when cancelled.
+     */
+    private static class ProcessFuture<T> extends CompletableFuture<T> {
+        private final Process process;
+        private final Stopper stopper;
+
+        ProcessFuture(Process process, Stopper stopper) {
+            this.process = process;
+            this.stopper = stopper;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                LOGGER.info("Execution has been cancelled, stopping process");
+                if (stopper == null) {
+                    process.destroy();
+                } else if (mayInterruptIfRunning) {
+                    stopper.forceStop();
+                } else {
+                    stopper.graceStop();
+                }
             }
 
-            LOGGER.trace("Executor hasn't yet stopped, still running threads: {}", executor.getRunningThreadNames());
-            Thread.sleep(100);
-        } while (executor.isRunning());
+            return cancelled;
+        }
+    }
+
+    private static void waitForExecutorToStop(Executor executor, long timeoutMillis) throws InterruptedException {
+        LOGGER.debug("Waiting for Executor to stop");
+
+        if (!executor.awaitStop(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            LOGGER.warn("Executor hasn't stopped in {} millis, won't wait longer. Still running threads: {}",
+                    timeoutMillis, executor.getRunningThreadNames());
+        }
     }
 }
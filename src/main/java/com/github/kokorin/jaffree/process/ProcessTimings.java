@@ -0,0 +1,71 @@
+/*
+ *    Copyright  2020 Denis Kokorin
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ */
+
+package com.github.kokorin.jaffree.process;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencies of single process execution.
+ */
+public class ProcessTimings {
+    private final long runNanos;
+    private final long completionNanos;
+
+    public ProcessTimings(long runNanos, long completionNanos) {
+        this.runNanos = runNanos;
+        this.completionNanos = completionNanos;
+    }
+
+    /**
+     * @return time from process spawn to process exit, in nanoseconds
+     */
+    public long getRunNanos() {
+        return runNanos;
+    }
+
+    /**
+     * Time spent after process exit: waiting for helper threads to finish and collecting result.
+     *
+     * @return time from process exit to return of result (or exception), in nanoseconds
+     */
+    public long getCompletionNanos() {
+        return completionNanos;
+    }
+
+    /**
+     * @return time from process spawn to process exit, in milliseconds
+     */
+    public long getRunMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(runNanos);
+    }
+
+    /**
+     * @return time from process exit to return of result (or exception), in milliseconds
+     */
+    public long getCompletionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(completionNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessTimings{" +
+                "runNanos=" + runNanos +
+                ", completionNanos=" + completionNanos +
+                '}';
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.kokorin.jaffree.ffmpeg;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class CoalescingProgressListenerTest {
+
+    @Test
+    public void slowListenerReceivesLatestProgress() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Long> frames = new CopyOnWriteArrayList<>();
+
+        CoalescingProgressListener listener = new CoalescingProgressListener(new ProgressListener() {
+            @Override
+            public void onProgress(FFmpegProgress progress) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                frames.add(progress.getFrame());
+            }
+        }, executor);
+
+        long started = System.nanoTime();
+        for (long frame = 1; frame <= 100; frame++) {
+            listener.onProgress(progress(frame));
+        }
+        // Calling thread must not be blocked by listener
+        Assert.assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+
+        release.countDown();
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // At most one progress is being delivered while listener is blocked, and the latest one afterwards
+        Assert.assertTrue(frames.size() <= 2);
+        Assert.assertEquals(Long.valueOf(100), frames.get(frames.size() - 1));
+        Assert.assertEquals(100 - frames.size(), listener.getDroppedCount());
+    }
+
+    @Test
+    public void minIntervalIsRespected() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final List<Long> deliveredNanos = new CopyOnWriteArrayList<>();
+        final List<Long> frames = new CopyOnWriteArrayList<>();
+
+        CoalescingProgressListener listener = new CoalescingProgressListener(new ProgressListener() {
+            @Override
+            public void onProgress(FFmpegProgress progress) {
+                deliveredNanos.add(System.nanoTime());
+                frames.add(progress.getFrame());
+            }
+        }, executor, 50, TimeUnit.MILLISECONDS);
+
+        for (long frame = 1; frame <= 20; frame++) {
+            listener.onProgress(progress(frame));
+            Thread.sleep(10);
+        }
+
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Long.valueOf(20), frames.get(frames.size() - 1));
+        Assert.assertTrue(frames.size() < 20);
+        Assert.assertEquals(20 - frames.size(), listener.getDroppedCount());
+        for (int i = 1; i < deliveredNanos.size(); i++) {
+            long interval = deliveredNanos.get(i) - deliveredNanos.get(i - 1);
+            Assert.assertTrue(interval >= TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    private static FFmpegProgress progress(long frame) {
+        return new FFmpegProgress(frame, null, null, null, null, null, null, null, null);
+    }
+}
@@ -3,6 +3,9 @@ package com.github.kokorin.jaffree.ffmpeg;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 public class FFmpegResultReaderTest {
@@ -158,4 +161,39 @@ public class FFmpegResultReaderTest {
 
         Assert.assertNull(result);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void failureContainsOutputTailWithoutProgress() throws Exception {
+        String output = "Input #0, mov,mp4,m4a,3gp,3g2,mj2, from 'input.mp4':\n" +
+                "frame=   33 fps=0.0 q=0.0 size=       0kB time=00:00:00.00 bitrate=N/A speed=   0x\n" +
+                "[h264 @ 0x55d5c4d7a2c0] error while decoding MB 22 15\n" +
+                "frame=   68 fps= 67 q=28.0 size=     256kB time=00:00:00.43 bitrate=4852.3kbits/s speed=0.428x\n" +
+                "[h264 @ 0x55d5c4d7a2c0] concealing 1200 DC errors\n" +
+                "Conversion failed!\n";
+        FFmpegResultReader reader = new FFmpegResultReader(null, null, 2, 1024);
+
+        try {
+            reader.read(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)));
+            Assert.fail("Reader must fail");
+        } catch (FFmpegException e) {
+            Assert.assertEquals(
+                    Arrays.asList("[h264 @ 0x55d5c4d7a2c0] concealing 1200 DC errors", "Conversion failed!"),
+                    e.getOutputTail()
+            );
+            Assert.assertTrue(e.getMessage().startsWith("ffmpeg exited with message: Conversion failed!"));
+            Assert.assertTrue(e.getMessage().contains("concealing 1200 DC errors"));
+        }
+    }
+
+    @Test
+    public void outputTailIsLimitedByLength() throws Exception {
+        OutputTail tail = new OutputTail(10, 10);
+        tail.add("12345");
+        tail.add("6789");
+        tail.add("abc");
+        Assert.assertEquals(Arrays.asList("6789", "abc"), tail.getLines());
+
+        tail.add("0123456789ABCDEF");
+        Assert.assertEquals(Arrays.asList("6789ABCDEF"), tail.getLines());
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.kokorin.jaffree.ffmpeg;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+public class FFmpegSchedulerTest {
+
+    @Test
+    public void limitsRunningJobs() throws Exception {
+        FFmpegScheduler scheduler = new FFmpegScheduler(2, 10, null);
+        List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        List<CompletableFuture<String>> executions = new ArrayList<>();
+
+        List<ScheduledJob<String>> jobs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture<String> execution = new CompletableFuture<>();
+            executions.add(execution);
+            jobs.add(scheduler.submit(starter("job" + i, execution, started), 0, "", -1));
+        }
+
+        Assert.assertEquals(Arrays.asList("job0", "job1"), started);
+        Assert.assertEquals(2, scheduler.getRunningCount());
+        Assert.assertEquals(2, scheduler.getQueuedCount());
+        Assert.assertNull(jobs.get(2).getQueueWaitMillis());
+
+        executions.get(0).complete("result0");
+        Assert.assertEquals("result0", jobs.get(0).get());
+        Assert.assertNotNull(jobs.get(0).getQueueWaitMillis());
+        Assert.assertNotNull(jobs.get(0).getRunMillis());
+        Assert.assertEquals(Arrays.asList("job0", "job1", "job2"), started);
+        Assert.assertNotNull(jobs.get(2).getQueueWaitMillis());
+        Assert.assertNull(jobs.get(2).getRunMillis());
+
+        executions.get(1).completeExceptionally(new RuntimeException("failed"));
+        Assert.assertTrue(jobs.get(1).isCompletedExceptionally());
+        Assert.assertEquals(Arrays.asList("job0", "job1", "job2", "job3"), started);
+        Assert.assertEquals(0, scheduler.getQueuedCount());
+    }
+
+    @Test
+    public void priorityAndTenantFairness() throws Exception {
+        FFmpegScheduler scheduler = new FFmpegScheduler(1, 10, null);
+        List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit(starter("blocker", blocker, started), 0, "", -1);
+
+        scheduler.submit(starter("a1", CompletableFuture.completedFuture("a1"), started), 0, "a", -1);
+        scheduler.submit(starter("a2", CompletableFuture.completedFuture("a2"), started), 0, "a", -1);
+        scheduler.submit(starter("a3", CompletableFuture.completedFuture("a3"), started), 0, "a", -1);
+        scheduler.submit(starter("b1", CompletableFuture.completedFuture("b1"), started), 0, "b", -1);
+        scheduler.submit(starter("b2", CompletableFuture.completedFuture("b2"), started), 0, "b", -1);
+        scheduler.submit(starter("urgent", CompletableFuture.completedFuture("urgent"), started), 10, "a", -1);
+
+        blocker.complete("done");
+
+        Assert.assertEquals(Arrays.asList("blocker", "urgent", "a1", "b1", "a2", "b2", "a3"), started);
+    }
+
+    @Test
+    public void backpressure() throws Exception {
+        FFmpegScheduler scheduler = new FFmpegScheduler(1, 1, null);
+        List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+
+        Assert.assertNotNull(scheduler.trySubmit(starter("running", blocker, started), 0, ""));
+        Assert.assertNotNull(scheduler.trySubmit(starter("queued", new CompletableFuture<String>(), started), 0, ""));
+        Assert.assertNull(scheduler.trySubmit(starter("rejected", new CompletableFuture<String>(), started), 0, ""));
+        Assert.assertNull(scheduler.submit(starter("timeout", new CompletableFuture<String>(), started), 0, "", 1_000_000));
+
+        blocker.complete("done");
+        Assert.assertEquals(Arrays.asList("running", "queued"), started);
+        Assert.assertNotNull(scheduler.trySubmit(starter("accepted", new CompletableFuture<String>(), started), 0, ""));
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        FFmpegScheduler scheduler = new FFmpegScheduler(1, 10, null);
+        List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        CompletableFuture<String> running = new CompletableFuture<>();
+
+        ScheduledJob<String> runningJob = scheduler.submit(starter("running", running, started), 0, "", -1);
+        ScheduledJob<String> queuedJob = scheduler.submit(starter("queued", new CompletableFuture<String>(), started), 0, "", -1);
+
+        Assert.assertTrue(queuedJob.cancel(true));
+        Assert.assertEquals(0, scheduler.getQueuedCount());
+
+        Assert.assertTrue(runningJob.cancel(true));
+        Assert.assertTrue(running.isCancelled());
+        Assert.assertEquals(0, scheduler.getRunningCount());
+        Assert.assertEquals(Collections.singletonList("running"), started);
+    }
+
+    @Test
+    public void jobsWhichFinishImmediatelyAreStartedWithoutRecursion() throws Exception {
+        final int jobCount = 10_000;
+        FFmpegScheduler scheduler = new FFmpegScheduler(1, jobCount, null);
+        List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        CompletableFuture<String> blocker = new CompletableFuture<>();
+        scheduler.submit(starter("blocker", blocker, started), 0, "", -1);
+
+        final List<ScheduledJob<String>> jobs = new ArrayList<>();
+        final int[] stackDepth = {Integer.MAX_VALUE, 0};
+        for (int i = 0; i < jobCount; i++) {
+            final int jobNo = i;
+            jobs.add(scheduler.submit(new ScheduledJob.Starter<String>() {
+                @Override
+                public CompletableFuture<String> start(Executor completionExecutor) {
+                    int depth = Thread.currentThread().getStackTrace().length;
+                    stackDepth[0] = Math.min(stackDepth[0], depth);
+                    stackDepth[1] = Math.max(stackDepth[1], depth);
+                    // Previous job must be completed before the next one is started
+                    if (jobNo > 0 && !jobs.get(jobNo - 1).isDone()) {
+                        throw new IllegalStateException("Previous job isn't completed");
+                    }
+                    if (jobNo % 2 == 0) {
+                        throw new RuntimeException("Failed to start");
+                    }
+                    return CompletableFuture.completedFuture("job" + jobNo);
+                }
+            }, 0, "", -1));
+        }
+
+        blocker.complete("done");
+
+        Assert.assertEquals(0, scheduler.getQueuedCount());
+        Assert.assertEquals(0, scheduler.getRunningCount());
+        for (int i = 0; i < jobCount; i++) {
+            ScheduledJob<String> job = jobs.get(i);
+            Assert.assertTrue(job.isDone());
+            if (i % 2 == 0) {
+                Assert.assertEquals("Failed to start", getCause(job).getMessage());
+            } else {
+                Assert.assertEquals("job" + i, job.get());
+            }
+        }
+        Assert.assertTrue(stackDepth[1] - stackDepth[0] < 10);
+    }
+
+    private static Throwable getCause(ScheduledJob<?> job) throws InterruptedException {
+        try {
+            job.get();
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static ScheduledJob.Starter<String> starter(final String name, final CompletableFuture<String> execution,
+                                                        final List<String> started) {
+        return new ScheduledJob.Starter<String>() {
+            @Override
+            public CompletableFuture<String> start(Executor completionExecutor) {
+                started.add(name);
+                return execution;
+            }
+        };
+    }
+}
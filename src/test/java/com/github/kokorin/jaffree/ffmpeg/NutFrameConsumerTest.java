@@ -0,0 +1,447 @@
+package com.github.kokorin.jaffree.ffmpeg;
+
+import com.github.kokorin.jaffree.nut.BufferPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class NutFrameConsumerTest {
+    private static final int WIDTH = 32;
+    private static final int HEIGHT = 24;
+    private static final int FRAME_COUNT = 10;
+
+    @Test
+    public void framesAreReadIntoPooledBuffers() throws Exception {
+        byte[] nut = writeNut();
+        BufferPool pool = new BufferPool();
+        final List<Integer> pixels = new ArrayList<>();
+
+        NutFrameConsumer consumer = new NutFrameConsumer(new FrameConsumer() {
+            @Override
+            public void consumeStreams(List<Stream> streams) {
+            }
+
+            @Override
+            public void consume(Frame frame) {
+                if (frame == null) {
+                    return;
+                }
+
+                byte[] data = ((DataBufferByte) frame.getImage().getRaster().getDataBuffer()).getData();
+                pixels.add((int) data[0]);
+                frame.release();
+                // Second release must not put the same buffer to pool twice
+                frame.release();
+            }
+        }, false, pool);
+
+        consumer.read(new ByteArrayInputStream(nut));
+
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), pixels);
+        Assert.assertEquals(1, pool.getAllocatedCount());
+        Assert.assertEquals(FRAME_COUNT - 1, pool.getReusedCount());
+    }
+
+    @Test
+    public void imagesAreRecycled() throws Exception {
+        byte[] nut = writeNut();
+        final List<BufferedImage> images = new ArrayList<>();
+        final List<Integer> pixels = new ArrayList<>();
+
+        NutFrameConsumer consumer = new NutFrameConsumer(new FrameConsumer() {
+            @Override
+            public void consumeStreams(List<Stream> streams) {
+            }
+
+            @Override
+            public void consume(Frame frame) {
+                if (frame == null) {
+                    return;
+                }
+
+                images.add(frame.getImage());
+                pixels.add(frame.getImage().getRGB(0, 0) & 0xFF);
+                frame.release();
+            }
+        }, false, null, true);
+
+        consumer.read(new ByteArrayInputStream(nut));
+
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), pixels);
+        Assert.assertEquals(FRAME_COUNT, images.size());
+        for (BufferedImage image : images) {
+            Assert.assertSame(images.get(0), image);
+        }
+    }
+
+    @Test
+    public void imagesAreNotRecycledAcrossStreamsOfDifferentDimensions() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        // Frames of both streams have the same size in bytes
+        new NutFrameSupplier(new FrameProducer() {
+            private int frameNo = 0;
+
+            @Override
+            public List<Stream> produceStreams() {
+                return Arrays.asList(
+                        new Stream().setId(0).setType(Stream.Type.VIDEO).setTimebase(10L)
+                                .setWidth(WIDTH).setHeight(HEIGHT),
+                        new Stream().setId(1).setType(Stream.Type.VIDEO).setTimebase(10L)
+                                .setWidth(HEIGHT).setHeight(WIDTH)
+                );
+            }
+
+            @Override
+            public Frame produce() {
+                if (frameNo >= FRAME_COUNT * 2) {
+                    return null;
+                }
+
+                int streamId = frameNo % 2;
+                int width = streamId == 0 ? WIDTH : HEIGHT;
+                int height = streamId == 0 ? HEIGHT : WIDTH;
+                BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+                return new Frame(streamId, frameNo++ / 2, image);
+            }
+        }, false).supplyAndClose(output);
+
+        final List<String> sizes = new ArrayList<>();
+        NutFrameConsumer consumer = new NutFrameConsumer(new FrameConsumer() {
+            @Override
+            public void consumeStreams(List<Stream> streams) {
+            }
+
+            @Override
+            public void consume(Frame frame) {
+                if (frame == null) {
+                    return;
+                }
+
+                BufferedImage image = frame.getImage();
+                sizes.add(frame.getStreamId() + ":" + image.getWidth() + "x" + image.getHeight());
+                frame.release();
+            }
+        }, false, null, true);
+
+        consumer.read(new ByteArrayInputStream(output.toByteArray()));
+
+        Assert.assertEquals(FRAME_COUNT * 2, sizes.size());
+        for (String size : sizes) {
+            if (size.startsWith("0:")) {
+                Assert.assertEquals("0:" + WIDTH + "x" + HEIGHT, size);
+            } else {
+                Assert.assertEquals("1:" + HEIGHT + "x" + WIDTH, size);
+            }
+        }
+    }
+
+    @Test
+    public void framesConvertedInParallelArePassedInOrder() throws Exception {
+        byte[] nut = writeNut();
+        final List<Integer> pixels = new ArrayList<>();
+        final List<String> threads = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            new NutFrameConsumer(new FrameConsumer() {
+                @Override
+                public void consumeStreams(List<Stream> streams) {
+                }
+
+                @Override
+                public void consume(Frame frame) {
+                    if (frame == null) {
+                        return;
+                    }
+
+                    threads.add(Thread.currentThread().getName());
+                    pixels.add(frame.getImage().getRGB(0, 0) & 0xFF);
+                    frame.release();
+                }
+            }, false, new BufferPool()).setConversionExecutor(executor, 3).read(new ByteArrayInputStream(nut));
+        } finally {
+            executor.shutdown();
+        }
+
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), pixels);
+        for (String thread : threads) {
+            Assert.assertEquals(Thread.currentThread().getName(), thread);
+        }
+    }
+
+    @Test
+    public void framesInFlightAreReleasedWhenReadingStops() throws Exception {
+        byte[] nut = writeNut();
+        final List<byte[]> acquired = new ArrayList<>();
+        final List<byte[]> released = new ArrayList<>();
+        BufferPool pool = new BufferPool() {
+            @Override
+            public byte[] acquire(int size) {
+                byte[] result = super.acquire(size);
+                acquired.add(result);
+                return result;
+            }
+
+            @Override
+            public void release(byte[] buffer) {
+                released.add(buffer);
+                super.release(buffer);
+            }
+        };
+        // Runs a task only when the next one is submitted, so there are always unconverted frames
+        final Deque<Runnable> queue = new ArrayDeque<>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queue.add(command);
+                if (queue.size() > 1) {
+                    queue.poll().run();
+                }
+            }
+        };
+
+        NutFrameConsumer consumer = new NutFrameConsumer(new FrameConsumer() {
+            @Override
+            public void consumeStreams(List<Stream> streams) {
+            }
+
+            @Override
+            public void consume(Frame frame) {
+                frame.release();
+                if (frame.getPts() == 2) {
+                    throw new RuntimeException("Stop reading");
+                }
+            }
+        }, false, pool).setConversionExecutor(executor, 3);
+
+        try {
+            consumer.read(new ByteArrayInputStream(nut));
+            Assert.fail("Consumer exception must be rethrown");
+        } catch (RuntimeException e) {
+            Assert.assertEquals("Stop reading", e.getMessage());
+        }
+
+        Assert.assertFalse(queue.isEmpty());
+        Assert.assertEquals(acquired.size(), released.size());
+        // Discarded tasks, which run afterwards, don't release data once again
+        while (!queue.isEmpty()) {
+            queue.poll().run();
+        }
+        Assert.assertEquals(acquired.size(), released.size());
+    }
+
+    @Test
+    public void rawImagesArePassedInPixelFormat() throws Exception {
+        final int width = 33;
+        final int height = 25;
+        Assert.assertEquals(33 * 25 + 2 * 17 * 13, PixelFormat.YUV420P.getFrameSize(width, height));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new NutFrameSupplier(new FrameProducer() {
+            private boolean produced = false;
+
+            @Override
+            public List<Stream> produceStreams() {
+                return Collections.singletonList(new Stream()
+                        .setId(0)
+                        .setType(Stream.Type.VIDEO)
+                        .setTimebase(10L)
+                        .setResolution(width, height)
+                        .setPixelFormat(PixelFormat.YUV420P));
+            }
+
+            @Override
+            public Frame produce() {
+                if (produced) {
+                    return null;
+                }
+                produced = true;
+
+                // Direct buffer with padded rows
+                int[] strides = {40, 24, 24};
+                int[] offsets = {0, 40 * 25, 40 * 25 + 24 * 13};
+                ByteBuffer buffer = ByteBuffer.allocateDirect(40 * 25 + 2 * 24 * 13);
+                for (int i = 0; i < buffer.capacity(); i++) {
+                    buffer.put(i, (byte) 0xEE);
+                }
+                RawImage rawImage = new RawImage(PixelFormat.YUV420P, width, height, buffer, strides, offsets);
+                for (int plane = 0; plane < 3; plane++) {
+                    int rowBytes = PixelFormat.YUV420P.getPlaneRowBytes(plane, width);
+                    int rows = PixelFormat.YUV420P.getPlaneHeight(plane, height);
+                    for (int row = 0; row < rows; row++) {
+                        for (int x = 0; x < rowBytes; x++) {
+                            buffer.put(offsets[plane] + row * strides[plane] + x, (byte) (plane * 100 + row + x));
+                        }
+                    }
+                }
+
+                return new Frame(0, 0, rawImage);
+            }
+        }, false).supplyAndClose(output);
+
+        final List<RawImage> rawImages = new ArrayList<>();
+        new NutFrameConsumer(new FrameConsumer() {
+            @Override
+            public void consumeStreams(List<Stream> streams) {
+            }
+
+            @Override
+            public void consume(Frame frame) {
+                if (frame != null) {
+                    Assert.assertNull(frame.getImage());
+                    rawImages.add(frame.getRawImage());
+                }
+            }
+        }, PixelFormat.YUV420P, null).read(new ByteArrayInputStream(output.toByteArray()));
+
+        Assert.assertEquals(1, rawImages.size());
+        RawImage rawImage = rawImages.get(0);
+        Assert.assertEquals(PixelFormat.YUV420P, rawImage.getPixelFormat());
+        Assert.assertTrue(rawImage.isPacked());
+        for (int plane = 0; plane < 3; plane++) {
+            ByteBuffer planeBuffer = rawImage.getPlane(plane);
+            int rowBytes = PixelFormat.YUV420P.getPlaneRowBytes(plane, width);
+            Assert.assertEquals(rowBytes * PixelFormat.YUV420P.getPlaneHeight(plane, height), planeBuffer.remaining());
+            for (int i = 0; i < planeBuffer.remaining(); i++) {
+                int row = i / rowBytes;
+                int x = i % rowBytes;
+                Assert.assertEquals((byte) (plane * 100 + row + x), planeBuffer.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void rawSamplesArePassedInSampleFormat() throws Exception {
+        final short[] samples = {0, 1, -1, Short.MAX_VALUE, Short.MIN_VALUE, 1000, -1000, 42};
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new NutFrameSupplier(new FrameProducer() {
+            private boolean produced = false;
+
+            @Override
+            public List<Stream> produceStreams() {
+                return Collections.singletonList(new Stream()
+                        .setId(0)
+                        .setType(Stream.Type.AUDIO)
+                        .setTimebase(44100L)
+                        .setSampleRate(44100)
+                        .setChannels(2));
+            }
+
+            @Override
+            public Frame produce() {
+                if (produced) {
+                    return null;
+                }
+                produced = true;
+
+                RawSamples rawSamples = RawSamples.allocate(SampleFormat.S16LE, 2, samples.length / 2, true);
+                rawSamples.asShortBuffer().put(samples);
+                return new Frame(0, 0, rawSamples);
+            }
+        }, false, null, SampleFormat.S16LE).supplyAndClose(output);
+
+        byte[] nut = output.toByteArray();
+        // little-endian bytes of Short.MAX_VALUE as ffmpeg's pcm_s16le expects
+        Assert.assertTrue(indexOf(nut, new byte[]{(byte) 0xFF, 0x7F, 0x00, (byte) 0x80}) >= 0);
+
+        final List<RawSamples> received = new ArrayList<>();
+        BufferPool pool = new BufferPool();
+        new NutFrameConsumer(new FrameConsumer() {
+            @Override
+            public void consumeStreams(List<Stream> streams) {
+            }
+
+            @Override
+            public void consume(Frame frame) {
+                if (frame != null) {
+                    Assert.assertNull(frame.getSamples());
+                    received.add(frame.getRawSamples());
+                }
+            }
+        }, false, pool).setSampleFormat(SampleFormat.S16LE).read(new ByteArrayInputStream(nut));
+
+        Assert.assertEquals(1, received.size());
+        RawSamples rawSamples = received.get(0);
+        Assert.assertEquals(SampleFormat.S16LE, rawSamples.getSampleFormat());
+        Assert.assertEquals(2, rawSamples.getChannels());
+        Assert.assertEquals(samples.length / 2, rawSamples.getSampleCount());
+        short[] actual = new short[samples.length];
+        rawSamples.asShortBuffer().get(actual);
+        Assert.assertArrayEquals(samples, actual);
+    }
+
+    @Test
+    public void planarChannelsAreViewedSeparately() {
+        RawSamples rawSamples = RawSamples.allocate(SampleFormat.S16LE_PLANAR, 2, 3, false);
+        rawSamples.asShortBuffer().put(new short[]{1, 2, 3, -1, -2, -3});
+
+        Assert.assertEquals(-2, rawSamples.getChannelBuffer(1).asShortBuffer().get(1));
+        Assert.assertEquals(SampleFormat.F32LE, SampleFormat.fromFourcc(new byte[]{'P', 'F', 'D', 32}));
+        Assert.assertEquals(SampleFormat.S32BE, SampleFormat.fromFourcc(new byte[]{32, 'D', 'S', 'P'}));
+    }
+
+    @Test
+    public void pixelFormatIsDetectedByFourcc() {
+        Assert.assertEquals(PixelFormat.YUV420P, PixelFormat.fromFourcc(new byte[]{'Y', '3', 11, 8}));
+        Assert.assertEquals(PixelFormat.YUV420P, PixelFormat.fromFourcc(new byte[]{'I', '4', '2', '0'}));
+        Assert.assertEquals(PixelFormat.GRAY8, PixelFormat.fromFourcc(new byte[]{'Y', '8', '0', '0'}));
+        Assert.assertEquals(PixelFormat.BGR24, PixelFormat.fromFourcc(new byte[]{'B', 'G', 'R', 24}));
+        Assert.assertNull(PixelFormat.fromFourcc(new byte[]{'H', '2', '6', '4'}));
+    }
+
+    private static byte[] writeNut() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new NutFrameSupplier(new FrameProducer() {
+            private int frameNo = 0;
+
+            @Override
+            public List<Stream> produceStreams() {
+                return Collections.singletonList(new Stream()
+                        .setId(0)
+                        .setType(Stream.Type.VIDEO)
+                        .setTimebase(10L)
+                        .setWidth(WIDTH)
+                        .setHeight(HEIGHT));
+            }
+
+            @Override
+            public Frame produce() {
+                if (frameNo >= FRAME_COUNT) {
+                    return null;
+                }
+
+                BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+                byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                Arrays.fill(data, (byte) frameNo);
+
+                return new Frame(0, frameNo++, image);
+            }
+        }, false).supplyAndClose(output);
+
+        return output.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + pattern.length), pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.kokorin.jaffree.ffmpeg;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+public class NutFrameSupplierTest {
+    // 4K BGR24 frame is about 25 MB
+    private static final int WIDTH = 3840;
+    private static final int HEIGHT = 2160;
+    private static final long FRAME_BYTES = WIDTH * HEIGHT * 3;
+
+    @Test
+    public void statsAreSetBeforeOutputIsClosed() throws Exception {
+        final FrameOrderingStats stats = new FrameOrderingStats();
+        final long[] peakBufferedBytesOnClose = {-1};
+
+        new NutFrameSupplier(new LaggingAudioProducer(3), false, 1000L)
+                .setFrameOrderingBuffer(null, stats)
+                .supplyAndClose(new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                    }
+
+                    @Override
+                    public void close() {
+                        peakBufferedBytesOnClose[0] = stats.getPeakBufferedBytes();
+                    }
+                });
+
+        // All video frames are buffered till audio frame arrives
+        Assert.assertEquals(3 * FRAME_BYTES + 4, peakBufferedBytesOnClose[0]);
+        Assert.assertEquals(0, stats.getForcedFlushCount());
+    }
+
+    @Test
+    public void lateFrameAfterForcedFlushFailsWithUnorderedFrames() throws Exception {
+        FrameOrderingStats stats = new FrameOrderingStats();
+
+        // Only 2 video frames fit into buffer, the rest are flushed before audio frame arrives
+        NutFrameSupplier supplier = new NutFrameSupplier(new LaggingAudioProducer(5), false, 1000L)
+                .setFrameOrderingBuffer(2 * FRAME_BYTES, stats);
+
+        try {
+            supplier.supplyAndClose(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            });
+            Assert.fail("Unordered frames must be detected");
+        } catch (RuntimeException e) {
+            String message = e.getCause().getMessage();
+            Assert.assertTrue(message, message.startsWith("Unordered frames!"));
+            Assert.assertTrue(message, message.contains("frameOrderingBufferMaxBytes"));
+        }
+
+        Assert.assertEquals(3, stats.getForcedFlushCount());
+        Assert.assertEquals(3, stats.getPeakBufferedFrames());
+    }
+
+    /**
+     * Produces 4K video frames first and then a single audio frame with the timestamp of the first video frame.
+     */
+    private static class LaggingAudioProducer implements FrameProducer {
+        private final int videoFrameCount;
+        // Same image for all frames: frame data isn't copied by NutFrameSupplier
+        private final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        private int frameNo = 0;
+
+        LaggingAudioProducer(int videoFrameCount) {
+            this.videoFrameCount = videoFrameCount;
+        }
+
+        @Override
+        public List<Stream> produceStreams() {
+            return Arrays.asList(
+                    new Stream().setId(0).setType(Stream.Type.VIDEO).setTimebase(30L)
+                            .setWidth(WIDTH).setHeight(HEIGHT),
+                    new Stream().setId(1).setType(Stream.Type.AUDIO).setTimebase(44100L)
+                            .setSampleRate(44100L).setChannels(1)
+            );
+        }
+
+        @Override
+        public Frame produce() {
+            if (frameNo < videoFrameCount) {
+                return new Frame(0, frameNo++, image);
+            }
+            if (frameNo++ == videoFrameCount) {
+                return new Frame(1, 0, new int[1]);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.kokorin.jaffree.ffmpeg;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PipelinedFrameProducerTest {
+
+    @Test
+    public void framesArePassedInOrder() {
+        FramePipelineMetrics metrics = new FramePipelineMetrics();
+        PipelinedFrameProducer pipeline = new PipelinedFrameProducer(new CountingProducer(100, null), 4, metrics, null);
+
+        Assert.assertEquals(1, pipeline.produceStreams().size());
+        for (int i = 0; i < 100; i++) {
+            Frame frame = pipeline.produce();
+            Assert.assertEquals(i, frame.getPts());
+        }
+        Assert.assertNull(pipeline.produce());
+        Assert.assertNull(pipeline.produce());
+        pipeline.close();
+
+        Assert.assertEquals(100, metrics.getFrameCount());
+        Assert.assertEquals(4, metrics.getQueueDepth());
+        Assert.assertTrue(metrics.getMaxQueueSize() <= 4);
+    }
+
+    @Test
+    public void producerExceptionIsPassedToWriter() {
+        PipelinedFrameProducer pipeline = new PipelinedFrameProducer(
+                new CountingProducer(100, 3), 2, new FramePipelineMetrics(), null);
+
+        for (int i = 0; i < 3; i++) {
+            Assert.assertNotNull(pipeline.produce());
+        }
+        try {
+            pipeline.produce();
+            Assert.fail("Exception expected");
+        } catch (RuntimeException e) {
+            Assert.assertEquals("Failed on frame 3", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void closeStopsBlockedProducer() throws Exception {
+        CountingProducer producer = new CountingProducer(Integer.MAX_VALUE, null);
+        PipelinedFrameProducer pipeline = new PipelinedFrameProducer(producer, 2, new FramePipelineMetrics(), null);
+
+        Assert.assertNotNull(pipeline.produce());
+        pipeline.close();
+        Thread.sleep(500);
+        int produced = producer.counter.get();
+        Thread.sleep(500);
+
+        Assert.assertEquals(produced, producer.counter.get());
+    }
+
+    @Test
+    public void producerRunsWithProvidedExecutor() throws Exception {
+        final List<Thread> threads = new ArrayList<>();
+        final List<Boolean> interrupted = new ArrayList<>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        command.run();
+                        interrupted.add(Thread.currentThread().isInterrupted());
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+        };
+
+        PipelinedFrameProducer pipeline = new PipelinedFrameProducer(
+                new CountingProducer(Integer.MAX_VALUE, null), 1, new FramePipelineMetrics(), executor);
+        Assert.assertNotNull(pipeline.produce());
+        Assert.assertEquals(1, threads.size());
+
+        // Producer is blocked waiting for free space in the queue
+        Thread.sleep(500);
+        threads.get(0).interrupt();
+        threads.get(0).join(5_000);
+        pipeline.close();
+
+        // Interrupt status is restored for the executor
+        Assert.assertEquals(Collections.singletonList(true), interrupted);
+    }
+
+    private static class CountingProducer implements FrameProducer {
+        private final int frameCount;
+        private final Integer failOn;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        CountingProducer(int frameCount, Integer failOn) {
+            this.frameCount = frameCount;
+            this.failOn = failOn;
+        }
+
+        @Override
+        public List<Stream> produceStreams() {
+            return Collections.singletonList(new Stream().setId(0).setType(Stream.Type.AUDIO));
+        }
+
+        @Override
+        public Frame produce() {
+            int pts = counter.getAndIncrement();
+            if (failOn != null && pts == failOn) {
+                throw new RuntimeException("Failed on frame " + pts);
+            }
+            if (pts >= frameCount) {
+                return null;
+            }
+
+            return new Frame(0, pts, new int[1]);
+        }
+    }
+}
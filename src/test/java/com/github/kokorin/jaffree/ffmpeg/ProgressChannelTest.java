@@ -0,0 +1,136 @@
+package com.github.kokorin.jaffree.ffmpeg;
+
+import com.github.kokorin.jaffree.process.StdReader;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class ProgressChannelTest {
+
+    @Test
+    public void progressBlocksAreReported() throws Exception {
+        final List<FFmpegProgress> progresses = new CopyOnWriteArrayList<>();
+        ProgressChannel channel = new ProgressChannel(new ProgressListener() {
+            @Override
+            public void onProgress(FFmpegProgress progress) {
+                progresses.add(progress);
+            }
+        });
+
+        Thread thread = new Thread(channel);
+        thread.start();
+
+        URI uri = URI.create(channel.getUrl());
+        try (Socket socket = new Socket(uri.getHost(), uri.getPort());
+             OutputStream output = socket.getOutputStream()) {
+            String blocks = "frame=68\n" +
+                    "fps=67.00\n" +
+                    "stream_0_0_q=28.0\n" +
+                    "stream_0_1_q=-1.0\n" +
+                    "bitrate=4852.3kbits/s\n" +
+                    "total_size=262192\n" +
+                    "out_time_us=432000\n" +
+                    "out_time_ms=432000\n" +
+                    "out_time=00:00:00.432000\n" +
+                    "dup_frames=1\n" +
+                    "drop_frames=0\n" +
+                    "speed=0.428x\n" +
+                    "progress=continue\n" +
+                    "frame=5012\n" +
+                    "bitrate=N/A\n" +
+                    "total_size=N/A\n" +
+                    "out_time_ms=167200000\n" +
+                    "speed=1.23e+003x\n" +
+                    "progress=end\n" +
+                    // Nothing is read after the final block
+                    "frame=5013\n" +
+                    "progress=continue\n";
+            output.write(blocks.getBytes(StandardCharsets.UTF_8));
+        }
+
+        thread.join(5_000);
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertEquals(2, progresses.size());
+
+        FFmpegProgress first = progresses.get(0);
+        Assert.assertEquals((Long) 68L, first.getFrame());
+        Assert.assertEquals(67., first.getFps(), 0.001);
+        Assert.assertEquals(28., first.getQ(), 0.001);
+        Assert.assertEquals(4852.3, first.getBitrate(), 0.001);
+        Assert.assertEquals((Long) 262192L, first.getSize());
+        Assert.assertEquals((Long) 432L, first.getTimeMillis());
+        Assert.assertEquals((Long) 1L, first.getDup());
+        Assert.assertEquals((Long) 0L, first.getDrop());
+        Assert.assertEquals(0.428, first.getSpeed(), 0.001);
+
+        FFmpegProgress last = progresses.get(1);
+        Assert.assertEquals((Long) 5012L, last.getFrame());
+        Assert.assertNull(last.getFps());
+        Assert.assertNull(last.getBitrate());
+        Assert.assertNull(last.getSize());
+        Assert.assertEquals((Long) 167200L, last.getTimeMillis());
+        Assert.assertEquals(1230., last.getSpeed(), 0.001);
+    }
+
+    @Test
+    public void channelIsClosedWhenStdErrEnds() throws Exception {
+        ProgressChannel channel = new ProgressChannel(null);
+        Thread thread = new Thread(channel);
+        thread.start();
+
+        StdReader<FFmpegResult> reader = channel.closeAfter(new FFmpegResultReader(null, null));
+        InputStream stdErr = new ByteArrayInputStream(
+                "video:1kB audio:0kB subtitle:0kB other streams:0kB global headers:0kB muxing overhead: 0%\n"
+                        .getBytes(StandardCharsets.UTF_8)
+        );
+        Assert.assertNotNull(reader.read(stdErr));
+
+        thread.join(5_000);
+        Assert.assertFalse(thread.isAlive());
+    }
+
+    @Test
+    public void channelIsClosedWhenProcessFailsToStart() throws Exception {
+        final List<List<String>> arguments = new CopyOnWriteArrayList<>();
+        FFmpeg ffmpeg = new FFmpeg(Paths.get("/nonexistent/ffmpeg")) {
+            @Override
+            protected List<String> buildArguments() {
+                List<String> result = super.buildArguments();
+                arguments.add(result);
+                return result;
+            }
+        };
+        ffmpeg.addOutput(new NullOutput())
+                .setMachineReadableProgress(true)
+                .setProgressListener(new ProgressListener() {
+                    @Override
+                    public void onProgress(FFmpegProgress progress) {
+                    }
+                });
+
+        try {
+            ffmpeg.execute();
+            Assert.fail("Process must fail to start");
+        } catch (RuntimeException e) {
+            Assert.assertEquals("Failed to start process.", e.getMessage());
+        }
+
+        List<String> args = arguments.get(0);
+        URI uri = URI.create(args.get(args.indexOf("-progress") + 1));
+        try (Socket ignored = new Socket(uri.getHost(), uri.getPort())) {
+            Assert.fail("Progress socket must be closed");
+        } catch (ConnectException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.kokorin.jaffree.nut;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class CRC32Test {
+
+    @Test
+    public void checkValue() throws Exception {
+        byte[] data = "123456789".getBytes("US-ASCII");
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        // CRC-32/POSIX check value without final xor
+        Assert.assertEquals(0x89A1897FL, crc32.getValue());
+
+        crc32.reset();
+        for (byte b : data) {
+            crc32.update(b);
+        }
+        Assert.assertEquals(0x89A1897FL, crc32.getValue());
+    }
+
+    @Test
+    public void sliceByEightMatchesByteWise() throws Exception {
+        Random random = new Random(42);
+        byte[] data = new byte[1027];
+        random.nextBytes(data);
+
+        for (int offset = 0; offset < 9; offset++) {
+            int length = data.length - offset - random.nextInt(9);
+
+            CRC32 expected = new CRC32();
+            for (int i = offset; i < offset + length; i++) {
+                expected.update(data[i]);
+            }
+
+            CRC32 actual = new CRC32();
+            actual.update(data, offset, length);
+            Assert.assertEquals(expected.getValue(), actual.getValue());
+
+            CRC32 direct = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+            buffer.put(data, offset, length).flip();
+            direct.update(buffer);
+            Assert.assertEquals(expected.getValue(), direct.getValue());
+        }
+    }
+}
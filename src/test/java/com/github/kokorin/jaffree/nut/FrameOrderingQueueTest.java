@@ -0,0 +1,39 @@
+package com.github.kokorin.jaffree.nut;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class FrameOrderingQueueTest {
+
+    @Test
+    public void framesArePolledByTimestampThenByInsertionOrder() {
+        FrameOrderingQueue queue = new FrameOrderingQueue(2);
+        Random random = new Random(42);
+        int count = 1000;
+
+        for (int i = 0; i < count; i++) {
+            long timestamp = random.nextInt(50);
+            // pts keeps insertion order to check stability
+            queue.add(timestamp, new NutFrame(0, i, new byte[0], null, null, true, false));
+        }
+
+        Assert.assertEquals(count, queue.size());
+        long lastTimestamp = Long.MIN_VALUE;
+        long lastPts = -1;
+        for (int i = 0; i < count; i++) {
+            long timestamp = queue.peekTimestamp();
+            NutFrame frame = queue.poll();
+            Assert.assertTrue(timestamp >= lastTimestamp);
+            if (timestamp == lastTimestamp) {
+                Assert.assertTrue(frame.pts > lastPts);
+            }
+            lastTimestamp = timestamp;
+            lastPts = frame.pts;
+        }
+
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertNull(queue.poll());
+    }
+}
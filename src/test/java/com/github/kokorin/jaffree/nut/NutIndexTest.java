@@ -0,0 +1,103 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+public class NutIndexTest {
+
+    @Test
+    public void indexIsWrittenToFileAndUsedForSeek() throws Exception {
+        File file = File.createTempFile("index", ".nut");
+        file.deleteOnExit();
+
+        Rational[] timebases = {new Rational(1, 30), new Rational(1, 44100)};
+        try (NutOutputStream output = new NutOutputStream(new FileOutputStream(file))) {
+            NutWriter writer = NutTestWriters.create(output, timebases, 1000);
+            for (int i = 0; i < 300; i++) {
+                // every 10th video frame is a keyframe
+                writer.writeFrame(new NutFrame(0, i, new byte[200], null, null, i % 10 == 0, false));
+                writer.writeFrame(new NutFrame(1, i * 1470L, new byte[100], null, null, true, false));
+            }
+            writer.writeFooter();
+        }
+
+        try (NutInputStream input = new NutInputStream(new FileInputStream(file))) {
+            NutReader reader = new NutReader(input);
+            reader.setVerifyChecksums(true);
+
+            reader.seek(0, 155);
+            Assert.assertTrue("Reader must jump over frames", input.getPosition() > 100 * 300);
+
+            NutFrame videoKeyframe = null;
+            NutFrame frame;
+            while ((frame = reader.readFrame()) != null) {
+                if (frame.streamId == 0 && frame.keyframe) {
+                    videoKeyframe = frame;
+                    break;
+                }
+            }
+            Assert.assertNotNull(videoKeyframe);
+            Assert.assertEquals(150, videoKeyframe.pts);
+
+            // pts before the first keyframe
+            reader.seek(0, -1);
+            frame = reader.readFrame();
+            Assert.assertEquals(0, frame.pts);
+
+            // Index isn't returned as a frame
+            reader.seek(1, Long.MAX_VALUE);
+            int count = 0;
+            while (reader.readFrame() != null) {
+                count++;
+            }
+            Assert.assertTrue(count > 0 && count < 10);
+        }
+    }
+
+    @Test
+    public void seekInFileWithoutFrames() throws Exception {
+        File file = File.createTempFile("empty", ".nut");
+        file.deleteOnExit();
+
+        try (NutOutputStream output = new NutOutputStream(new FileOutputStream(file))) {
+            NutWriter writer = NutTestWriters.create(output, new Rational[]{new Rational(1, 30)}, 1000);
+            writer.writeFrame(new NutFrame(0, 0, new byte[10], null, null, true, false));
+            writer.writeFooter();
+        }
+        // Keep only headers
+        long firstSyncPoint;
+        try (NutInputStream input = new NutInputStream(new FileInputStream(file))) {
+            firstSyncPoint = new NutReader(input).getFirstSyncPointPosition();
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(firstSyncPoint);
+        }
+
+        try (NutInputStream input = new NutInputStream(new FileInputStream(file))) {
+            NutReader reader = new NutReader(input);
+            reader.seek(0, 10);
+            Assert.assertNull(reader.readFrame());
+        }
+    }
+
+    @Test
+    public void indexIsNotWrittenToStream() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Rational[] timebases = {new Rational(1, 30)};
+        NutWriter writer = NutTestWriters.create(new NutOutputStream(output), timebases, 1000);
+        writer.writeFrame(new NutFrame(0, 0, new byte[10], null, null, true, false));
+        writer.writeFooter();
+
+        byte[] data = output.toByteArray();
+        String tail = new String(data, data.length - 64, 64, "ISO-8859-1");
+        Assert.assertFalse(tail.contains("NX"));
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+public class NutReaderTest {
+
+    @Test
+    public void checksumsAreVerified() throws Exception {
+        Rational[] timebases = {new Rational(1, 30)};
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NutWriter writer = NutTestWriters.create(new NutOutputStream(output), timebases, Short.MAX_VALUE);
+        for (int i = 0; i < 30; i++) {
+            writer.writeFrame(new NutFrame(0, i, new byte[100], null, null, true, false));
+        }
+        writer.writeFooter();
+        byte[] data = output.toByteArray();
+
+        Assert.assertEquals(31, readAllFrames(data));
+
+        // Last 4 bytes are checksum of the last syncpoint
+        data[data.length - 1] ^= 1;
+        assertChecksumMismatch(data, "packet " + Long.toHexString(NutConst.SYNCPOINT_STARTCODE));
+    }
+
+    @Test
+    public void packetHeaderChecksumIsVerified() throws Exception {
+        Rational[] timebases = {new Rational(1, 30)};
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NutWriter writer = NutTestWriters.create(new NutOutputStream(output), timebases, Short.MAX_VALUE);
+        // Large codec specific data makes stream header packet longer than 4096 bytes
+        writer.setStreamHeaders(new StreamHeader[]{
+                new StreamHeader(0, StreamHeader.Type.USER_DATA, new byte[]{'T', 'E', 'S', 'T'}, 0, 0,
+                        60_000, 0, EnumSet.noneOf(StreamHeader.Flag.class), new byte[5000], null, null)
+        });
+        for (int i = 0; i < 30; i++) {
+            writer.writeFrame(new NutFrame(0, i, new byte[100], null, null, true, false));
+        }
+        writer.writeFooter();
+        byte[] data = output.toByteArray();
+
+        Assert.assertEquals(31, readAllFrames(data));
+
+        // Header checksum follows startcode and forward_ptr, which takes 2 bytes
+        int position = indexOf(data, ByteBuffer.allocate(8).putLong(0, NutConst.STREAM_STARTCODE).array());
+        data[position + 8 + 2] ^= 1;
+        assertChecksumMismatch(data, "packet header");
+    }
+
+    @Test
+    public void frameHeaderChecksumIsVerified() throws Exception {
+        Rational[] timebases = {new Rational(1, 30)};
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NutWriter writer = NutTestWriters.create(new NutOutputStream(output), timebases, 1000);
+        byte[] large = new byte[5000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 251);
+        }
+        for (int i = 0; i < 30; i++) {
+            // Frame larger than 2 * maxDistance has header checksum
+            writer.writeFrame(new NutFrame(0, i, i == 15 ? large : new byte[100], null, null, true, false));
+        }
+        writer.writeFooter();
+        byte[] data = output.toByteArray();
+
+        Assert.assertEquals(31, readAllFrames(data));
+
+        // Frame header checksum directly precedes frame data
+        data[indexOf(data, large) - 1] ^= 1;
+        assertChecksumMismatch(data, "frame header");
+    }
+
+    @Test
+    public void mappedFileIsReadWithDataSlices() throws Exception {
+        File file = File.createTempFile("mapped", ".nut");
+        file.deleteOnExit();
+
+        Rational[] timebases = {new Rational(1, 30)};
+        try (NutOutputStream output = new NutOutputStream(new FileOutputStream(file))) {
+            NutWriter writer = NutTestWriters.create(output, timebases, 1000);
+            for (int i = 0; i < 100; i++) {
+                // Every 10th frame is larger than mapping chunk
+                byte[] data = new byte[i % 10 == 0 ? 5000 : 300];
+                Arrays.fill(data, (byte) i);
+                writer.writeFrame(new NutFrame(0, i, data, null, null, true, false));
+            }
+            writer.writeFooter();
+        }
+
+        // Small chunks to cross chunk boundaries often
+        try (NutInputStream input = new NutInputStream(FileChannel.open(file.toPath()), 4096)) {
+            NutReader reader = new NutReader(input);
+            reader.setSliceFrameData(true);
+
+            List<NutFrame> frames = new ArrayList<>();
+            NutFrame frame;
+            while ((frame = reader.readFrame()) != null) {
+                if (!frame.eor) {
+                    frames.add(frame);
+                }
+            }
+
+            Assert.assertEquals(100, frames.size());
+            // Slices must stay valid after subsequent reads
+            for (int i = 0; i < frames.size(); i++) {
+                ByteBuffer buffer = frames.get(i).buffer;
+                Assert.assertTrue(buffer.isReadOnly());
+                Assert.assertEquals(i % 10 == 0 ? 5000 : 300, buffer.remaining());
+                Assert.assertEquals((byte) i, buffer.get(buffer.position()));
+                Assert.assertEquals((byte) i, buffer.get(buffer.limit() - 1));
+            }
+
+            reader.seek(0, 42);
+            frame = reader.readFrame();
+            Assert.assertTrue(frame.pts <= 42 && frame.pts > 30);
+        }
+    }
+
+    @Test
+    public void framesAreSkippedToTimestamp() throws Exception {
+        Rational[] timebases = {new Rational(1, 30), new Rational(1, 44100)};
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NutWriter writer = NutTestWriters.create(new NutOutputStream(output), timebases, Short.MAX_VALUE);
+        for (int i = 0; i < 300; i++) {
+            writer.writeFrame(new NutFrame(0, i, new byte[1000], null, null, true, false));
+            writer.writeFrame(new NutFrame(1, i * 1470, new byte[100], null, null, true, false));
+        }
+        writer.writeFooter();
+
+        // Non-seekable input, buffer is smaller than skipped data
+        InputStream input = new FilterInputStream(new ByteArrayInputStream(output.toByteArray())) {};
+        NutReader reader = new NutReader(new NutInputStream(input, 256, false));
+
+        // 5 seconds in audio timebase
+        Assert.assertTrue(reader.skipTo(1, 5 * 44100));
+        NutFrame frame = reader.readFrame();
+        Assert.assertEquals(0, frame.streamId);
+        Assert.assertEquals(150, frame.pts);
+        Assert.assertEquals(1000, frame.data.length);
+
+        frame = reader.readFrame();
+        Assert.assertEquals(1, frame.streamId);
+        Assert.assertEquals(150 * 1470, frame.pts);
+
+        // Frame found by skipTo is kept till it's read
+        Assert.assertTrue(reader.skipTo(0, 200));
+        Assert.assertTrue(reader.skipTo(0, 200));
+        Assert.assertEquals(200, reader.readFrame().pts);
+
+        Assert.assertFalse(reader.skipTo(0, 1000));
+        Assert.assertNull(reader.readFrame());
+    }
+
+    private static void assertChecksumMismatch(byte[] data, String what) throws Exception {
+        try {
+            readAllFrames(data);
+            Assert.fail("Checksum mismatch must be detected");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Checksum mismatch in " + what + " "));
+        }
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= data.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + pattern.length), pattern)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Pattern not found");
+    }
+
+    private static int readAllFrames(byte[] data) throws Exception {
+        // Small buffer to calculate checksums across buffer refills
+        NutReader reader = new NutReader(new NutInputStream(new ByteArrayInputStream(data), 64, false));
+        reader.setVerifyChecksums(true);
+
+        int count = 0;
+        while (reader.readFrame() != null) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -5,6 +5,12 @@ import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 
 public class NutStreamTest {
     private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
@@ -84,6 +90,146 @@ public class NutStreamTest {
         }
     }
 
+    @Test
+    public void readAcrossBufferRefills() throws Exception {
+        byte[] payload = new byte[100];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+
+        output.writeValue(0x7ABCDEF012L);
+        output.writeLong(0x1122334455667788L);
+        output.writeVariableBytes(payload);
+        output.writeBytes(new byte[]{1, 2, 3});
+        output.writeCString("Jaffree");
+        output.writeValue(42);
+        output.close();
+        byte[] data = outputStream.toByteArray();
+
+        NutInputStream input = new NutInputStream(new ByteArrayInputStream(data), 8, false);
+        Assert.assertEquals(0x7ABCDEF012L, input.readValue());
+        Assert.assertEquals(0x1122334455667788L, input.readLong());
+        Assert.assertArrayEquals(payload, input.readVariableBytes());
+
+        ByteBuffer slice = input.readSlice(3);
+        Assert.assertEquals(3, slice.remaining());
+        Assert.assertEquals(1, slice.get(0));
+        Assert.assertEquals(3, slice.get(2));
+
+        Assert.assertEquals("Jaffree", input.readCString());
+        Assert.assertEquals(42, input.readValue());
+        Assert.assertEquals(data.length, input.getPosition());
+        Assert.assertFalse(input.hasMoreData());
+        Assert.assertEquals(-1, input.readValue());
+    }
+
+    @Test
+    public void seekBackwardsAfterLargeRead() throws Exception {
+        File file = File.createTempFile("nut", ".bin");
+        file.deleteOnExit();
+        byte[] data = new byte[300];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Files.write(file.toPath(), data);
+
+        try (NutInputStream input = new NutInputStream(new FileInputStream(file), 64, false)) {
+            Assert.assertEquals(0, input.readByte());
+            // Read past the buffer directly to destination, like a large frame
+            byte[] frame = new byte[100];
+            Assert.assertTrue(input.readBytes(frame, 100));
+            Assert.assertEquals(100, frame[99]);
+            Assert.assertEquals(101, input.getPosition());
+
+            input.seek(50);
+            Assert.assertEquals(50, input.readByte());
+            input.seek(100);
+            Assert.assertEquals(100, input.readByte());
+        }
+    }
+
+    @Test
+    public void mappedFileIsReadAcrossChunks() throws Exception {
+        File file = File.createTempFile("nut", ".bin");
+        file.deleteOnExit();
+        byte[] data = new byte[300];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Files.write(file.toPath(), data);
+
+        try (NutInputStream input = new NutInputStream(FileChannel.open(file.toPath()), 64)) {
+            Assert.assertTrue(input.isSeekable());
+            Assert.assertEquals(300, input.size());
+
+            // Slice inside a chunk is a view of the mapping, it stays valid after subsequent reads
+            input.skipBytes(60);
+            ByteBuffer slice = input.readSlice(10);
+            Assert.assertEquals(70, input.readBytes(10)[0]);
+            Assert.assertArrayEquals(new byte[]{60, 61, 62, 63, 64, 65, 66, 67, 68, 69}, copyOf(slice));
+
+            // Slice larger than a chunk is copied
+            ByteBuffer large = input.readSlice(100);
+            Assert.assertEquals(100, large.remaining());
+            Assert.assertEquals(80, large.get(large.position()));
+            Assert.assertEquals(179, large.get(large.limit() - 1) & 0xFF);
+
+            input.seek(250);
+            Assert.assertEquals(250, input.readByte());
+            input.skipBytes(48);
+            Assert.assertEquals(299 & 0xFF, input.readByte());
+            Assert.assertFalse(input.hasMoreData());
+        }
+    }
+
+    @Test
+    public void channelOutputIsSameAsStreamOutput() throws Exception {
+        File file = File.createTempFile("nut", ".bin");
+        file.deleteOnExit();
+
+        NutOutputStream fileOutput = new NutOutputStream(new FileOutputStream(file), 16);
+        writeChecksummedPacket(output);
+        writeChecksummedPacket(fileOutput);
+        output.close();
+        fileOutput.close();
+
+        Assert.assertArrayEquals(outputStream.toByteArray(), Files.readAllBytes(file.toPath()));
+        Assert.assertEquals(file.length(), fileOutput.getPosition());
+    }
+
+    @Test
+    public void appendedFileIsNotSeekable() throws Exception {
+        File file = File.createTempFile("nut", ".bin");
+        file.deleteOnExit();
+
+        try (NutOutputStream fileOutput = new NutOutputStream(new FileOutputStream(file))) {
+            Assert.assertTrue(fileOutput.isSeekable());
+            fileOutput.writeLong(42);
+        }
+        try (NutOutputStream fileOutput = new NutOutputStream(new FileOutputStream(file, true))) {
+            // Position of written bytes in file isn't known
+            Assert.assertFalse(fileOutput.isSeekable());
+        }
+        Assert.assertFalse(output.isSeekable());
+    }
+
+    private static void writeChecksummedPacket(NutOutputStream output) throws Exception {
+        output.resetCrc32();
+        output.writeLong(NutConst.SYNCPOINT_STARTCODE);
+        output.writeValue(1000);
+        output.writeCrc32();
+        output.resetCrc32();
+        output.writeBytes(new byte[100]);
+        output.writeValue(0x7ABCDEF012L);
+        output.writeCrc32();
+    }
+
+
+    private static byte[] copyOf(ByteBuffer buffer) {
+        byte[] result = new byte[buffer.remaining()];
+        buffer.duplicate().get(result);
+        return result;
+    }
 
     private static long assertIncreasedPosition(long prevPosition, NutInputStream input) {
         Assert.assertTrue(input.getPosition() > prevPosition);
@@ -0,0 +1,42 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+
+import java.util.EnumSet;
+
+/**
+ * Creates NutWriters for tests: every stream is USER_DATA stream with its own timebase,
+ * all frames are written with the same frame code.
+ */
+final class NutTestWriters {
+    private NutTestWriters() {
+    }
+
+    /**
+     * @param output      output
+     * @param timebases   timebases, one per stream
+     * @param maxDistance max distance between syncpoints, small value makes syncpoints appear every few frames
+     * @return writer with headers set
+     */
+    static NutWriter create(NutOutputStream output, Rational[] timebases, long maxDistance) {
+        NutWriter writer = new NutWriter(output);
+
+        FrameCode[] frameCodes = new FrameCode[256];
+        frameCodes[0] = FrameCode.INVALID;
+        frameCodes[1] = new FrameCode(EnumSet.of(FrameCode.Flag.CODED_FLAGS), 0, 1, 0, 0, 0, 0, 0);
+        for (int i = 2; i < frameCodes.length; i++) {
+            frameCodes[i] = FrameCode.INVALID;
+        }
+
+        StreamHeader[] streamHeaders = new StreamHeader[timebases.length];
+        for (int i = 0; i < timebases.length; i++) {
+            streamHeaders[i] = new StreamHeader(i, StreamHeader.Type.USER_DATA, new byte[]{'T', 'E', 'S', 'T'}, i, 0,
+                    60_000, 0, EnumSet.noneOf(StreamHeader.Flag.class), new byte[0], null, null);
+        }
+
+        writer.setMainHeader(timebases.length, maxDistance, timebases, frameCodes);
+        writer.setStreamHeaders(streamHeaders);
+        writer.setInfos(new Info[0]);
+        return writer;
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+public class NutWriterTest {
+
+    @Test
+    public void framesOfDifferentTimebasesAreReordered() throws Exception {
+        Rational[] timebases = {new Rational(1, 30), new Rational(1, 44100)};
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NutWriter writer = NutTestWriters.create(new NutOutputStream(output), timebases, Short.MAX_VALUE);
+        writer.setFrameOrderingBufferMillis(500);
+
+        // video is produced ahead of audio by 100 millis
+        for (int i = 0; i < 30; i++) {
+            writer.writeFrame(new NutFrame(0, i, new byte[]{1}, null, null, true, false));
+            if (i >= 3) {
+                writer.writeFrame(new NutFrame(1, (i - 3) * 1470, new byte[]{2, 2}, null, null, true, false));
+            }
+        }
+        writer.writeFooter();
+
+        NutReader reader = new NutReader(new NutInputStream(new ByteArrayInputStream(output.toByteArray())));
+        NutFrame frame;
+        Rational lastTimestamp = Rational.ZERO;
+        int count = 0;
+        while ((frame = reader.readFrame()) != null) {
+            if (frame.eor) {
+                continue;
+            }
+            Rational timestamp = timebases[frame.streamId].multiply(frame.pts);
+            Assert.assertFalse(timestamp.lessThan(lastTimestamp));
+            lastTimestamp = timestamp;
+            count++;
+        }
+
+        Assert.assertEquals(30 + 27, count);
+    }
+
+    @Test
+    public void frameOrderingBufferIsLimitedBySize() throws Exception {
+        Rational[] timebases = {new Rational(1, 30)};
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        NutWriter writer = NutTestWriters.create(new NutOutputStream(output), timebases, Short.MAX_VALUE);
+        writer.setFrameOrderingBufferMillis(10_000);
+        writer.setFrameOrderingBufferMaxBytes(350);
+
+        for (int i = 0; i < 30; i++) {
+            writer.writeFrame(new NutFrame(0, i, new byte[100], null, null, true, false));
+        }
+        writer.writeFooter();
+
+        Assert.assertEquals(400, writer.getPeakBufferedBytes());
+        Assert.assertEquals(4, writer.getPeakBufferedFrames());
+        Assert.assertEquals(27, writer.getForcedFlushCount());
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+public class ParallelNutReaderTest {
+
+    @Test
+    public void partitionsAreReadInParallelAndMergedInOrder() throws Exception {
+        File file = File.createTempFile("parallel", ".nut");
+        file.deleteOnExit();
+
+        // Frame data contains syncpoint startcode, it must not be taken for a syncpoint
+        byte[] data = new byte[300];
+        ByteBuffer.wrap(data).putLong(100, NutConst.SYNCPOINT_STARTCODE);
+
+        Rational[] timebases = {new Rational(1, 30), new Rational(1, 44100)};
+        try (NutOutputStream output = new NutOutputStream(new FileOutputStream(file))) {
+            NutWriter writer = NutTestWriters.create(output, timebases, 1000);
+            for (int i = 0; i < 300; i++) {
+                writer.writeFrame(new NutFrame(0, i, data, null, null, true, false));
+                writer.writeFrame(new NutFrame(1, i * 1470L, new byte[100], null, null, true, false));
+            }
+            writer.writeFooter();
+        }
+
+        List<String> expected;
+        try (NutInputStream input = NutInputStream.map(FileChannel.open(file.toPath()))) {
+            expected = readFrames(new NutReader(input));
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            ParallelNutReader reader = new ParallelNutReader(channel);
+            long[] partitions = reader.split(8);
+            Assert.assertEquals(8, partitions.length);
+            for (int i = 1; i < partitions.length; i++) {
+                Assert.assertTrue(partitions[i] > partitions[i - 1]);
+            }
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            List<String> actual = reader.read(8, pool,
+                    new ParallelNutReader.PartitionReader<List<String>>() {
+                        @Override
+                        public List<String> read(NutReader reader) throws IOException {
+                            reader.setVerifyChecksums(true);
+                            return readFrames(reader);
+                        }
+                    },
+                    new ParallelNutReader.Merger<List<String>>() {
+                        @Override
+                        public List<String> merge(List<String> first, List<String> second) {
+                            first.addAll(second);
+                            return first;
+                        }
+                    });
+            pool.shutdown();
+
+            Assert.assertEquals(expected.size(), actual.size());
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    private static List<String> readFrames(NutReader reader) throws IOException {
+        List<String> result = new ArrayList<>();
+        NutFrame frame;
+        while ((frame = reader.readFrame()) != null) {
+            result.add(frame.streamId + ":" + frame.pts + ":" + frame.data.length);
+        }
+        return result;
+    }
+}
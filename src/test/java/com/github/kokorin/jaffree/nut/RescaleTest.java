@@ -0,0 +1,91 @@
+package com.github.kokorin.jaffree.nut;
+
+import com.github.kokorin.jaffree.Rational;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Random;
+
+public class RescaleTest {
+
+    @Test
+    public void rescaleMatchesBigIntegerArithmetic() {
+        Random random = new Random(42);
+        long[] specials = {0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE + 1, Integer.MAX_VALUE, 1L << 40};
+
+        for (int i = 0; i < 100_000; i++) {
+            long a = i < 50 ? specials[i % specials.length] : random.nextLong() >> random.nextInt(64);
+            long b = random.nextLong() >> random.nextInt(64);
+            long c = Math.max(1, Math.abs(random.nextLong() >> random.nextInt(64)));
+
+            for (Rescale.Rounding rounding : Rescale.Rounding.values()) {
+                BigInteger expected = expected(a, b, c, rounding);
+                if (expected.bitLength() > 63) {
+                    try {
+                        Rescale.rescale(a, b, c, rounding);
+                        Assert.fail("Overflow expected: " + a + " * " + b + " / " + c);
+                    } catch (ArithmeticException e) {
+                        // expected
+                    }
+                } else {
+                    Assert.assertEquals(a + " * " + b + " / " + c + " " + rounding,
+                            expected.longValue(), Rescale.rescale(a, b, c, rounding));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundingOfHalves() {
+        Assert.assertEquals(2, Rescale.rescale(3, 1, 2, Rescale.Rounding.NEAR_INF));
+        Assert.assertEquals(-2, Rescale.rescale(-3, 1, 2, Rescale.Rounding.NEAR_INF));
+        Assert.assertEquals(1, Rescale.rescale(3, 1, 2, Rescale.Rounding.ZERO));
+        Assert.assertEquals(-2, Rescale.rescale(-3, 1, 2, Rescale.Rounding.DOWN));
+        Assert.assertEquals(-1, Rescale.rescale(-3, 1, 2, Rescale.Rounding.UP));
+        Assert.assertEquals(Long.MIN_VALUE, Rescale.rescale(Long.MIN_VALUE, 3, 3, Rescale.Rounding.ZERO));
+    }
+
+    @Test
+    public void timestampsAreConvertedWithoutOverflow() {
+        Rational from = new Rational(1, 90_000);
+        Rational to = new Rational(1, 1_000_000_007);
+        long pts = 90_000L * 3600 * 24 * 365;
+
+        // pts * 1_000_000_007 overflows long, but the result doesn't
+        Assert.assertEquals(1_000_000_007L * 3600 * 24 * 365, Rescale.rescale(pts, from, to));
+        Assert.assertEquals(1_000_000_007L * 3600 * 24 * 365, Util.convertTimestamp(pts, from, to));
+    }
+
+    @Test
+    public void timestampsAreComparedExactly() {
+        Rational video = new Rational(1001, 30000);
+        Rational audio = new Rational(1, 48000);
+
+        // 30000 video frames last 1001 seconds, exactly 48048000 audio samples
+        Assert.assertEquals(0, Rescale.compare(30_000, video, 48_048_000, audio));
+        Assert.assertEquals(-1, Rescale.compare(30_000, video, 48_048_001, audio));
+        Assert.assertEquals(1, Rescale.compare(30_000, video, 48_047_999, audio));
+        Assert.assertEquals(-1, Rescale.compare(-1, video, 0, audio));
+        Assert.assertEquals(1, Rescale.compare(Long.MAX_VALUE, video, Long.MAX_VALUE, audio));
+    }
+
+    private static BigInteger expected(long a, long b, long c, Rescale.Rounding rounding) {
+        BigDecimal product = new BigDecimal(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)));
+        BigDecimal divisor = new BigDecimal(BigInteger.valueOf(c));
+        switch (rounding) {
+            case ZERO:
+                return product.divide(divisor, 0, RoundingMode.DOWN).toBigInteger();
+            case INF:
+                return product.divide(divisor, 0, RoundingMode.UP).toBigInteger();
+            case DOWN:
+                return product.divide(divisor, 0, RoundingMode.FLOOR).toBigInteger();
+            case UP:
+                return product.divide(divisor, 0, RoundingMode.CEILING).toBigInteger();
+            default:
+                return product.divide(divisor, 0, RoundingMode.HALF_UP).toBigInteger();
+        }
+    }
+}
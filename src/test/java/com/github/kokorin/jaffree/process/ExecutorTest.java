@@ -0,0 +1,148 @@
+package com.github.kokorin.jaffree.process;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ExecutorTest {
+
+    @Test
+    public void pooledThreadIsRenamedDuringTask() throws Exception {
+        ExecutorService pool = HelperExecutors.newBoundedPool(1);
+        final AtomicReference<String> threadName = new AtomicReference<>();
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+
+        Executor executor = new Executor("ctx", pool);
+        executor.execute("first", new Runnable() {
+            @Override
+            public void run() {
+                threadName.set(Thread.currentThread().getName());
+                thread.set(Thread.currentThread());
+            }
+        });
+        waitForStop(executor);
+
+        Assert.assertEquals("ctx-first", threadName.get());
+        Assert.assertNotEquals("ctx-first", thread.get().getName());
+        pool.shutdown();
+    }
+
+    @Test
+    public void exceptionIsCollectedAndStarterInterrupted() throws Exception {
+        ExecutorService pool = HelperExecutors.newBoundedPool(2);
+        Executor executor = new Executor(null, pool);
+        executor.execute("failing", new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("expected");
+            }
+        });
+
+        try {
+            Thread.sleep(10_000);
+            Assert.fail("Starter thread must be interrupted");
+        } catch (InterruptedException e) {
+            // expected
+        }
+
+        waitForStop(executor);
+        Assert.assertNotNull(executor.getException());
+        Assert.assertEquals("expected", executor.getException().getCause().getMessage());
+        pool.shutdown();
+    }
+
+    @Test
+    public void stopInterruptsOnlyRunningTasks() throws Exception {
+        ExecutorService pool = HelperExecutors.newBoundedPool(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+
+        Executor executor = new Executor(null, pool);
+        executor.execute("blocking", new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                }
+            }
+        });
+
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.stop();
+        waitForStop(executor);
+        Assert.assertTrue(interrupted.get());
+
+        final AtomicBoolean leaked = new AtomicBoolean(true);
+        Executor another = new Executor(null, pool);
+        another.execute("next", new Runnable() {
+            @Override
+            public void run() {
+                leaked.set(Thread.currentThread().isInterrupted());
+            }
+        });
+        waitForStop(another);
+        Assert.assertFalse(leaked.get());
+        pool.shutdown();
+    }
+
+    @Test
+    public void saturatedPoolStartsDedicatedThread() throws Exception {
+        ExecutorService pool = HelperExecutors.newBoundedPool(1);
+        final CountDownLatch bothRunning = new CountDownLatch(2);
+        Runnable waiting = new Runnable() {
+            @Override
+            public void run() {
+                bothRunning.countDown();
+                try {
+                    bothRunning.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+
+        Executor executor = new Executor(null, pool);
+        executor.execute("first", waiting);
+        executor.execute("second", waiting);
+
+        Assert.assertTrue(bothRunning.await(5, TimeUnit.SECONDS));
+        waitForStop(executor);
+        Assert.assertNull(executor.getException());
+        pool.shutdown();
+    }
+
+    @Test
+    public void awaitStopReturnsWhenLastTaskFinishes() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        Executor executor = new Executor(null);
+        executor.execute("waiting", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        Assert.assertFalse(executor.awaitStop(50, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(executor.isRunning());
+
+        release.countDown();
+        Assert.assertTrue(executor.awaitStop(5, TimeUnit.SECONDS));
+        Assert.assertFalse(executor.isRunning());
+    }
+
+    private static void waitForStop(Executor executor) throws InterruptedException {
+        Assert.assertTrue(executor.awaitStop(5, TimeUnit.SECONDS));
+    }
+}
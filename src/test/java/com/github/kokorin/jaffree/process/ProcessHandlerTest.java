@@ -0,0 +1,159 @@
+package com.github.kokorin.jaffree.process;
+
+import com.github.kokorin.jaffree.OS;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Uses POSIX shell instead of ffmpeg to test process interaction.
+ */
+public class ProcessHandlerTest {
+
+    @Before
+    public void setUp() {
+        Assume.assumeFalse(OS.IS_WINDOWS);
+    }
+
+    @Test
+    public void execute() {
+        final AtomicReference<ProcessTimings> timings = new AtomicReference<>();
+
+        String result = shell("echo hello")
+                .setTimingsListener(new ProcessTimingsListener() {
+                    @Override
+                    public void onTimings(ProcessTimings processTimings) {
+                        timings.set(processTimings);
+                    }
+                })
+                .execute();
+
+        Assert.assertEquals("hello", result);
+        Assert.assertNotNull(timings.get());
+        Assert.assertTrue(timings.get().getRunNanos() > 0);
+        Assert.assertTrue(timings.get().getCompletionNanos() >= 0);
+        // Completion must not be delayed by polling
+        Assert.assertTrue(timings.get().getCompletionMillis() < 100);
+    }
+
+    @Test
+    public void executeAsync() throws Exception {
+        ExecutorService completion = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<String> future = shell("echo hello").executeAsync(completion);
+            Assert.assertEquals("hello", future.get(10, TimeUnit.SECONDS));
+        } finally {
+            completion.shutdown();
+        }
+    }
+
+    @Test
+    public void executeAsyncWithNonZeroStatus() throws Exception {
+        CompletableFuture<String> future = shell("echo hello; exit 3").executeAsync(null);
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Non-zero status must fail the future");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("non-zero status: 3"));
+        }
+    }
+
+    @Test
+    public void executeAsyncWithFailingHelper() throws Exception {
+        CompletableFuture<String> future = shell("exec sleep 60")
+                .setRunnables(Collections.<Runnable>singletonList(new Runnable() {
+                    @Override
+                    public void run() {
+                        throw new RuntimeException("helper failed");
+                    }
+                }))
+                .executeAsync(null);
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Helper failure must fail the future");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause().getMessage().contains("helper threads"));
+        }
+        Assert.assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void cancelStopsProcess() throws Exception {
+        DestroyingStopper stopper = new DestroyingStopper();
+        CompletableFuture<String> future = shell("exec sleep 60")
+                .setStopper(stopper)
+                .executeAsync(null);
+
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(stopper.forceStopped);
+        Assert.assertTrue(stopper.process.waitFor(10, TimeUnit.SECONDS));
+        try {
+            future.get();
+            Assert.fail("Future must be cancelled");
+        } catch (CancellationException e) {
+            // expected
+        }
+    }
+
+    private static ProcessHandler<String> shell(String script) {
+        return new ProcessHandler<String>(Paths.get("sh"), null)
+                .setStdOutReader(new FirstLineReader())
+                .setArguments(Arrays.asList("-c", script));
+    }
+
+    private static class DestroyingStopper implements Stopper {
+        private volatile Process process;
+        private volatile boolean forceStopped;
+
+        @Override
+        public void graceStop() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void forceStop() {
+            forceStopped = true;
+            process.destroy();
+        }
+
+        @Override
+        public void setProcess(Process process) {
+            this.process = process;
+        }
+    }
+
+    private static class FirstLineReader implements StdReader<String> {
+        @Override
+        public String read(InputStream stdOut) {
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(stdOut, StandardCharsets.UTF_8));
+                String result = reader.readLine();
+                while (reader.readLine() != null) {
+                    // drain
+                }
+                return result;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}